@@ -1,9 +1,12 @@
 package org.olafneumann.commons.javafx;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.net.URI;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Properties;
+import java.util.ResourceBundle;
+
+import javax.annotation.Nullable;
 
 import javafx.application.Application;
 import javafx.application.HostServices;
@@ -24,6 +27,9 @@ public abstract class AbstractWindowController {
 
 	private HostServices hostServices;
 
+	@Nullable
+	private UpdateDispatcher updateDispatcher = null;
+
 	/**
 	 * Set the {@link Application}'s {@link HostServices} so the window has
 	 * immediate access to it.
@@ -62,6 +68,20 @@ public abstract class AbstractWindowController {
 		return hostServices;
 	}
 
+	/**
+	 * Return a dispatcher for updating this window from background threads. Use it
+	 * instead of {@link javafx.application.Platform#runLater(Runnable)} if updates
+	 * arrive at a high rate.
+	 *
+	 * @return the dispatcher of this window
+	 */
+	protected synchronized UpdateDispatcher getUpdateDispatcher() {
+		if (updateDispatcher == null) {
+			updateDispatcher = new UpdateDispatcher();
+		}
+		return updateDispatcher;
+	}
+
 	/**
 	 * Opens a file denoted be the given URI
 	 *
@@ -90,21 +110,59 @@ public abstract class AbstractWindowController {
 
 	/**
 	 * Returns a property object that is extracted from a property file named ofter
-	 * the controller class.
+	 * the controller class. The file is only read once per controller class;
+	 * every call returns a new copy of the cached properties. Use
+	 * {@link #getPropertyMap()} or {@link #getProperty(String)} in order to avoid
+	 * the copy.
 	 *
-	 * @return the properties loaded.
+	 * @return the properties loaded. If there is no property file the returned
+	 *         object is empty.
 	 */
 	protected Properties getProperties() {
 		final Properties properties = new Properties();
-		try (InputStream stream
-				= getClass().getResourceAsStream(FXMLWindowLoader.getName(getClass()) + ".properties")) {
-			properties.load(stream);
-		} catch (@SuppressWarnings("unused") final IOException ignore) {
-			// do nothing
-		}
+		properties.putAll(getPropertyMap());
 		return properties;
 	}
 
+	/**
+	 * Returns the properties from the property file named after the controller
+	 * class. The file is only read once per controller class.
+	 *
+	 * @return an immutable map containing the properties. If there is no property
+	 *         file the returned map is empty.
+	 */
+	protected Map<String, String> getPropertyMap() {
+		return getPropertyMap(Locale.ROOT);
+	}
+
+	/**
+	 * Returns the properties from the property files named after the controller
+	 * class and the given locale. The files are resolved like the ones of a
+	 * {@link ResourceBundle}: the values of <code>Name_de_DE.properties</code>
+	 * override the values of <code>Name_de.properties</code>, which override the
+	 * values of <code>Name.properties</code>. The files are only read once per
+	 * controller class and locale.
+	 *
+	 * @param locale the locale to resolve the property files for
+	 * @return an immutable map containing the properties
+	 */
+	protected Map<String, String> getPropertyMap(final Locale locale) {
+		return ControllerProperties.get(getClass(), locale);
+	}
+
+	/**
+	 * Returns a single property from the property file named after the controller
+	 * class.
+	 *
+	 * @param key the key of the property
+	 * @return the value of the property or <code>null</code> if there is no such
+	 *         property
+	 */
+	@Nullable
+	protected String getProperty(final String key) {
+		return getPropertyMap().get(key);
+	}
+
 	/**
 	 * Method that is called when the controller is initialized by JavaFX.<br>
 	 * The implementation in {@link AbstractWindowController} does nothing so it can
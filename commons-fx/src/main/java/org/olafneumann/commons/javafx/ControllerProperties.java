@@ -0,0 +1,80 @@
+package org.olafneumann.commons.javafx;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache for the property files named after controller classes. Every file is
+ * read at most once per controller class and locale; missing files are cached
+ * as empty properties. The returned maps are immutable, so they can be read
+ * from any thread without locking.
+ *
+ * @author Olaf Neumann
+ *
+ */
+final class ControllerProperties {
+	private static final ResourceBundle.Control CONTROL
+			= ResourceBundle.Control.getControl(ResourceBundle.Control.FORMAT_PROPERTIES);
+
+	private static final ClassValue<Map<Locale, Map<String, String>>> PROPERTIES
+			= new ClassValue<Map<Locale, Map<String, String>>>() {
+				@Override
+				protected Map<Locale, Map<String, String>> computeValue(final Class<?> type) {
+					return new ConcurrentHashMap<>();
+				}
+			};
+
+	/**
+	 * Returns the properties of the given controller class. The properties are
+	 * resolved like the ones of a {@link ResourceBundle}: values of the file for
+	 * the most specific locale (e.g. <code>Main_de_DE.properties</code>) override
+	 * the values of more general files (e.g. <code>Main_de.properties</code> and
+	 * <code>Main.properties</code>).
+	 *
+	 * @param controllerClass the controller class
+	 * @param locale          the locale to resolve the files for. Use
+	 *                        {@link Locale#ROOT} to only read the file without
+	 *                        locale suffix.
+	 * @return an immutable map containing the properties
+	 */
+	static Map<String, String> get(final Class<?> controllerClass, final Locale locale) {
+		return PROPERTIES.get(controllerClass).computeIfAbsent(locale, key -> load(controllerClass, key));
+	}
+
+	private static Map<String, String> load(final Class<?> controllerClass, final Locale locale) {
+		final String name = FXMLWindowLoader.getName(controllerClass);
+		final List<Locale> candidates = CONTROL.getCandidateLocales(name, locale);
+		final Map<String, String> properties = new HashMap<>();
+		// from the most general to the most specific file, so that specific values win
+		for (int i = candidates.size() - 1; i >= 0; i -= 1) {
+			read(controllerClass, CONTROL.toBundleName(name, candidates.get(i)) + ".properties", properties);
+		}
+		return Collections.unmodifiableMap(properties);
+	}
+
+	private static void read(final Class<?> controllerClass, final String filename, final Map<String, String> target) {
+		try (InputStream stream = controllerClass.getResourceAsStream(filename)) {
+			if (stream != null) {
+				final Properties properties = new Properties();
+				properties.load(stream);
+				for (final String key : properties.stringPropertyNames()) {
+					target.put(key, properties.getProperty(key));
+				}
+			}
+		} catch (@SuppressWarnings("unused") final IOException ignore) {
+			// do nothing
+		}
+	}
+
+	private ControllerProperties() {
+		throw new RuntimeException();
+	}
+}
@@ -0,0 +1,163 @@
+package org.olafneumann.commons.javafx;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.olafneumann.commons.javafx.WindowLoadListener.Resource;
+
+import javafx.fxml.FXMLLoader;
+import javafx.util.Callback;
+
+/**
+ * Cache for everything that is needed to load the FXML file of a controller
+ * class more than once:
+ * <ul>
+ * <li>the raw bytes of the FXML file, so the resource is read only once</li>
+ * <li>a class loader that remembers the classes (and the missing classes)
+ * looked up by the {@link FXMLLoader} while resolving the imports of the FXML
+ * file</li>
+ * <li>a controller factory that remembers the constructors of the
+ * controllers</li>
+ * </ul>
+ * The controller classes are weakly referenced and the cached values do not
+ * reference them or their class loaders strongly, so the cache does not prevent
+ * unloading them. Constructors are only softly referenced and looked up again
+ * after the garbage collector cleared them.
+ *
+ * @author Olaf Neumann
+ *
+ */
+final class FXMLTemplates {
+	private static final Map<Class<?>, SoftReference<Constructor<?>>> CONSTRUCTORS
+			= Collections.synchronizedMap(new WeakHashMap<>());
+
+	private static final Callback<Class<?>, Object> CONTROLLER_FACTORY = type -> {
+		try {
+			return getConstructor(type).newInstance();
+		} catch (final InstantiationException | IllegalAccessException | InvocationTargetException e) {
+			throw new RuntimeException("Unable to create controller: " + type.getName(), e);
+		}
+	};
+
+	/** Results of the class lookups of the {@link CachingClassLoader}s */
+	private static final Map<Class<?>, Map<String, Object>> CLASSES
+			= Collections.synchronizedMap(new WeakHashMap<>());
+
+	private static final Map<Class<?>, byte[]> FXML = Collections.synchronizedMap(new WeakHashMap<>());
+
+	private static Constructor<?> getConstructor(final Class<?> type) {
+		final SoftReference<Constructor<?>> reference = CONSTRUCTORS.get(type);
+		Constructor<?> constructor = reference == null ? null : reference.get();
+		if (constructor == null) {
+			try {
+				constructor = type.getConstructor();
+			} catch (final NoSuchMethodException e) {
+				throw new RuntimeException("Controller has no public default constructor: " + type.getName(), e);
+			}
+			CONSTRUCTORS.put(type, new SoftReference<>(constructor));
+		}
+		return constructor;
+	}
+
+	/**
+	 * Returns a supplier for the content of the FXML file of the given controller
+	 * class. The file is read only once.
+	 *
+	 * @param controllerClass the controller class
+	 * @return a supplier returning a new stream on the FXML file's content
+	 */
+	static Supplier<InputStream> getFxml(final Class<?> controllerClass) {
+		final byte[] cached = FXML.get(controllerClass);
+		FXMLWindowLoader.getWindowLoadListener().onCacheAccess(controllerClass, Resource.FXML, cached != null);
+		final byte[] fxml = cached != null ? cached : readFxml(controllerClass);
+		FXML.put(controllerClass, fxml);
+		return () -> new ByteArrayInputStream(fxml);
+	}
+
+	private static byte[] readFxml(final Class<?> controllerClass) {
+		try (InputStream stream = FXMLWindowLoader.getFxmlInputStream(controllerClass)) {
+			return readAll(stream);
+		} catch (final IOException e) {
+			throw new RuntimeException("Unable to load window FXML.", e);
+		}
+	}
+
+	/**
+	 * Creates a new {@link FXMLLoader} that uses the cached classes and
+	 * constructors for the given controller class.
+	 *
+	 * @param controllerClass the controller class
+	 * @return the new loader
+	 */
+	static FXMLLoader createLoader(final Class<?> controllerClass) {
+		final FXMLLoader loader = new FXMLLoader();
+		loader.setClassLoader(new CachingClassLoader(controllerClass.getClassLoader(),
+				CLASSES.computeIfAbsent(controllerClass, key -> new ConcurrentHashMap<>())));
+		loader.setControllerFactory(CONTROLLER_FACTORY);
+		return loader;
+	}
+
+	private static byte[] readAll(final InputStream stream) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[8192];
+		int read;
+		while ((read = stream.read(buffer)) >= 0) {
+			out.write(buffer, 0, read);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * The {@link FXMLLoader} tries every import of an FXML file for every element
+	 * type, so most lookups end up in a {@link ClassNotFoundException}. This class
+	 * loader remembers the result of every lookup. Found classes are weakly
+	 * referenced, as the lookups outlive the loader.
+	 */
+	private static final class CachingClassLoader extends ClassLoader {
+		private static final Object NOT_FOUND = new Object();
+
+		private final Map<String, Object> classes;
+
+		private CachingClassLoader(final ClassLoader parent, final Map<String, Object> classes) {
+			super(parent);
+			this.classes = classes;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		protected Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
+			final Object cached = classes.get(name);
+			if (cached == NOT_FOUND) {
+				throw new ClassNotFoundException(name);
+			} else if (cached != null) {
+				final Class<?> clazz = (Class<?>) ((WeakReference<?>) cached).get();
+				if (clazz != null) {
+					return clazz;
+				}
+			}
+			try {
+				final Class<?> clazz = super.loadClass(name, resolve);
+				classes.put(name, new WeakReference<>(clazz));
+				return clazz;
+			} catch (final ClassNotFoundException e) {
+				classes.put(name, NOT_FOUND);
+				throw e;
+			}
+		}
+	}
+
+	private FXMLTemplates() {
+		throw new RuntimeException();
+	}
+}
@@ -1,15 +1,27 @@
 package org.olafneumann.commons.javafx;
 
-import static org.olafneumann.commons.javafx.Constants.ICON_SIZES;
-
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import java.util.function.Function;
 import java.util.function.IntFunction;
 import java.util.function.Supplier;
-import java.util.stream.IntStream;
 
+import javax.annotation.Nullable;
+
+import org.olafneumann.commons.javafx.WindowLoadListener.Phase;
+import org.olafneumann.commons.javafx.WindowLoadListener.Resource;
+
+import javafx.application.Platform;
+import javafx.event.EventHandler;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
@@ -17,6 +29,7 @@ import javafx.scene.image.Image;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import javafx.stage.StageStyle;
+import javafx.stage.WindowEvent;
 
 /**
  * A generic loader for JavaFX windows.
@@ -32,6 +45,32 @@ public abstract class FXMLWindowLoader {
 	 */
 	private static final String EXT_FXML = ".fxml";
 
+	/** Executor for loading windows in the background */
+	private static final Executor BACKGROUND_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+		final Thread thread = new Thread(runnable, "FXMLWindowLoader");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/** Listener that does nothing */
+	private static final WindowLoadListener NO_LISTENER = new WindowLoadListener() {
+		@Override
+		public void onPhase(final Class<?> controllerClass, final Phase phase, final long nanos) {
+			// do nothing
+		}
+
+		@Override
+		public void onCacheAccess(final Class<?> controllerClass, final Resource resource, final boolean hit) {
+			// do nothing
+		}
+	};
+
+	/** Listener informed about loaded windows */
+	private static volatile WindowLoadListener listener = NO_LISTENER;
+
+	/** Windows that have been built in advance */
+	private static final Map<Class<?>, WindowPool> PREBUILT_WINDOWS = new ConcurrentHashMap<>();
+
 	/**
 	 * Load a window with default settings. This method does a lot of magic:
 	 * <ul>
@@ -53,9 +92,8 @@ public abstract class FXMLWindowLoader {
 	 * @return the newly create controller instance
 	 */
 	public static <T> T load(final Class<T> controllerClass, final Stage stage) {
-		return load(stage, () -> getFxmlInputStream(controllerClass, getNameWithPath(controllerClass) + EXT_FXML),
-				size -> getResourceAsStream(controllerClass,
-						String.format(getNameWithPath(controllerClass) + "_%s.png", size)));
+		final long requested = System.nanoTime();
+		return attach(stage, parse(controllerClass), requested);
 	}
 
 	/**
@@ -82,7 +120,8 @@ public abstract class FXMLWindowLoader {
 	 *                        {@link Class#getResourceAsStream(String)} will be
 	 *                        called on <code>controllerClass</code> in order to
 	 *                        load an icon. If the an icon cannot be loaded it will
-	 *                        be discarded.
+	 *                        be discarded. Loaded icons are cached, so opening the
+	 *                        same window again will reuse them.
 	 * @return
 	 */
 	public static <T> T load(final Class<T> controllerClass,
@@ -90,7 +129,7 @@ public abstract class FXMLWindowLoader {
 			final String fxmlFileName,
 			final String iconFileFormat) {
 		return load(stage, () -> controllerClass.getResourceAsStream(fxmlFileName),
-				size -> getResourceAsStream(controllerClass, String.format(iconFileFormat, size)));
+				IconCache.getIcons(controllerClass, iconFileFormat));
 	}
 
 	/**
@@ -116,29 +155,233 @@ public abstract class FXMLWindowLoader {
 	public static <T> T load(final Stage stage,
 			final Supplier<InputStream> fxmlInputStreamProvider,
 			final IntFunction<InputStream> iconProvider) {
+		return load(stage, fxmlInputStreamProvider, IconCache.loadIcons(iconProvider));
+	}
+
+	private static <T> T load(final Stage stage,
+			final Supplier<InputStream> fxmlInputStreamProvider,
+			final List<Image> icons) {
+		final long requested = System.nanoTime();
+		return attach(stage, parse(fxmlInputStreamProvider, icons), requested);
+	}
+
+	/**
+	 * Load a window asynchronously. This method does the same as
+	 * {@link #load(Class, Stage)}, but parses the FXML file, creates the nodes and
+	 * decodes the icons in a background thread. So the UI keeps responding while
+	 * heavy windows are being loaded.<br>
+	 * The {@link FXMLLoader} creates the controller and calls its
+	 * <code>initialize()</code> method in the background thread as well, so it
+	 * must not access any live scene graph or stage. Only attaching the scene to
+	 * the stage and setting up {@link AbstractWindowController}s take place on the
+	 * JavaFX Application Thread.
+	 *
+	 * @param <T>             the type of the controller class
+	 * @param controllerClass the controller class to control the window
+	 * @param stage           the stage to use for the scene
+	 * @return a future that will be completed with the newly created controller
+	 *         instance on the JavaFX Application Thread
+	 */
+	public static <T> CompletableFuture<T> loadAsync(final Class<T> controllerClass, final Stage stage) {
+		return loadAsync(controllerClass, stage, BACKGROUND_EXECUTOR);
+	}
+
+	/**
+	 * Load a window asynchronously. This method does the same as
+	 * {@link #load(Class, Stage)}, but parses the FXML file, creates the nodes and
+	 * decodes the icons using the given executor. The controller's
+	 * <code>initialize()</code> method is called by the executor as well. Only
+	 * attaching the scene to the stage and setting up
+	 * {@link AbstractWindowController}s take place on the JavaFX Application
+	 * Thread.
+	 *
+	 * @param <T>             the type of the controller class
+	 * @param controllerClass the controller class to control the window
+	 * @param stage           the stage to use for the scene
+	 * @param executor        the executor to load the window with
+	 * @return a future that will be completed with the newly created controller
+	 *         instance on the JavaFX Application Thread
+	 */
+	public static <T> CompletableFuture<T> loadAsync(final Class<T> controllerClass,
+			final Stage stage,
+			final Executor executor) {
+		final long requested = System.nanoTime();
+		return CompletableFuture.supplyAsync(() -> FXMLWindowLoader.<T>parse(controllerClass), executor)
+				.thenApplyAsync(window -> attach(stage, window, requested), Platform::runLater);
+	}
+
+	/**
+	 * Load a window asynchronously. This method does the same as
+	 * {@link #load(Stage, Supplier, IntFunction)}, but reads the FXML definition,
+	 * creates the nodes and decodes the icons using the given executor. The
+	 * controller's <code>initialize()</code> method is called by the executor as
+	 * well. Only attaching the scene to the stage and setting up
+	 * {@link AbstractWindowController}s take place on the JavaFX Application
+	 * Thread.
+	 *
+	 * @param <T>                     the type of the controller class
+	 * @param stage                   the stage to use for the scene
+	 * @param fxmlInputStreamProvider a supplier that returns an {@link InputStream}
+	 *                                to read the FXML definition for the UI from
+	 * @param iconProvider            a function that turns the size information
+	 *                                into an {@link InputStream} to read image data
+	 *                                from
+	 * @param executor                the executor to load the window with
+	 * @return a future that will be completed with the controller instance
+	 *         controlling the newly created window on the JavaFX Application Thread
+	 */
+	public static <T> CompletableFuture<T> loadAsync(final Stage stage,
+			final Supplier<InputStream> fxmlInputStreamProvider,
+			final IntFunction<InputStream> iconProvider,
+			final Executor executor) {
+		final long requested = System.nanoTime();
+		return CompletableFuture
+				.supplyAsync(() -> FXMLWindowLoader.<T>parse(fxmlInputStreamProvider, IconCache.loadIcons(iconProvider)),
+						executor)
+				.thenApplyAsync(window -> attach(stage, window, requested), Platform::runLater);
+	}
+
+	/**
+	 * Keep a number of windows prebuilt in the background, so that loading one of
+	 * them does not need to parse the FXML file at all. Every time a prebuilt
+	 * window is used, a new one is built in the background.<br>
+	 * Prebuilt windows are fully initialized by the {@link FXMLLoader} in a
+	 * background thread, including the call of the controller's
+	 * <code>initialize()</code> method, but not yet attached to a stage. Only use
+	 * this for controllers whose <code>initialize()</code> method does not need the
+	 * JavaFX Application Thread.
+	 *
+	 * @param controllerClass the controller class of the windows to prebuild
+	 * @param count           the number of windows to keep prebuilt. Use
+	 *                        <code>0</code> to discard all prebuilt windows.
+	 */
+	public static void setPrebuiltWindowCount(final Class<?> controllerClass, final int count) {
+		if (count < 0) {
+			throw new IllegalArgumentException("The count must not be negative, but is " + count);
+		}
+		if (count == 0) {
+			PREBUILT_WINDOWS.remove(controllerClass);
+		} else {
+			PREBUILT_WINDOWS.computeIfAbsent(controllerClass, WindowPool::new).setCount(count);
+		}
+	}
+
+	private static <T> LoadedWindow<T> parse(final Class<T> controllerClass) {
+		final WindowPool pool = PREBUILT_WINDOWS.get(controllerClass);
+		if (pool != null) {
+			@SuppressWarnings("unchecked")
+			final LoadedWindow<T> window = (LoadedWindow<T>) pool.take();
+			listener.onCacheAccess(controllerClass, Resource.PREBUILT_WINDOW, window != null);
+			if (window != null) {
+				return window;
+			}
+		}
+		return build(controllerClass);
+	}
+
+	private static <T> LoadedWindow<T> build(final Class<T> controllerClass) {
+		return parse(FXMLTemplates.createLoader(controllerClass), FXMLTemplates.getFxml(controllerClass),
+				IconCache.getIcons(controllerClass, getIconFileFormat(controllerClass)));
+	}
+
+	/**
+	 * Build a window in the current thread and keep it until the next window of
+	 * the given controller class is loaded.
+	 *
+	 * @param controllerClass the controller class of the window to build
+	 */
+	static void prebuild(final Class<?> controllerClass) {
+		final LoadedWindow<?> window = build(controllerClass);
+		PREBUILT_WINDOWS.compute(controllerClass, (key, pool) -> {
+			final WindowPool result = pool == null ? new WindowPool(key) : pool;
+			result.add(window);
+			return result;
+		});
+	}
+
+	/**
+	 * Parse the FXML definition of a window. This method does not touch any live
+	 * scene graph and may be called from any thread. Note that the
+	 * {@link FXMLLoader} calls the controller's <code>initialize()</code> method in
+	 * the calling thread.
+	 */
+	private static <T> LoadedWindow<T> parse(final Supplier<InputStream> fxmlInputStreamProvider,
+			final List<Image> icons) {
+		return parse(new FXMLLoader(), fxmlInputStreamProvider, icons);
+	}
+
+	private static <T> LoadedWindow<T> parse(final FXMLLoader loader,
+			final Supplier<InputStream> fxmlInputStreamProvider,
+			final List<Image> icons) {
 		// Load window information
-		final FXMLLoader loader = new FXMLLoader();
+		final long start = System.nanoTime();
 		Parent root;
 		try (InputStream stream = fxmlInputStreamProvider.get()) {
 			root = loader.load(stream);
 		} catch (final IOException e) {
 			throw new RuntimeException("Unable to load window FXML.", e);
 		}
+		final T controller = loader.getController();
+		if (controller != null) {
+			listener.onPhase(controller.getClass(), Phase.FXML, System.nanoTime() - start);
+		}
+		return new LoadedWindow<>(root, controller, icons);
+	}
 
+	/**
+	 * Attach a parsed window to a stage. This method has to be called on the JavaFX
+	 * Application Thread.
+	 */
+	private static <T> T attach(final Stage stage, final LoadedWindow<T> window, final long requested) {
 		// Create and set up the window
-		final Scene scene = new Scene(root);
+		final long start = System.nanoTime();
+		final Scene scene = new Scene(window.root);
 		stage.setScene(scene);
-		final T controller = loader.getController();
+		final T controller = window.controller;
 		if (controller instanceof AbstractWindowController) {
 			initAbstractWindowController((AbstractWindowController) controller, stage);
 		}
 
-		IntStream.of(ICON_SIZES)
-				.mapToObj(i -> (Supplier<InputStream>) () -> iconProvider.apply(i))
-				.forEach(supplier -> addIcon(stage, supplier));
+		stage.getIcons().addAll(window.icons);
+		if (controller != null) {
+			listener.onPhase(controller.getClass(), Phase.ATTACH, System.nanoTime() - start);
+			if (listener != NO_LISTENER) {
+				addFirstShownListener(stage, controller.getClass(), requested);
+			}
+		}
 		return controller;
 	}
 
+	private static void addFirstShownListener(final Stage stage, final Class<?> controllerClass, final long requested) {
+		stage.addEventHandler(WindowEvent.WINDOW_SHOWN, new EventHandler<WindowEvent>() {
+			@Override
+			public void handle(final WindowEvent event) {
+				stage.removeEventHandler(WindowEvent.WINDOW_SHOWN, this);
+				listener.onPhase(controllerClass, Phase.FIRST_SHOWN, System.nanoTime() - requested);
+			}
+		});
+	}
+
+	/**
+	 * Set a listener that will be informed about all windows loaded by this class.
+	 * Use {@link WindowLoadMetrics} to collect statistics about how long it takes
+	 * to open windows.
+	 *
+	 * @param windowLoadListener the listener to inform or <code>null</code> to
+	 *                           remove the current listener
+	 */
+	public static void setWindowLoadListener(@Nullable final WindowLoadListener windowLoadListener) {
+		listener = windowLoadListener == null ? NO_LISTENER : windowLoadListener;
+	}
+
+	/**
+	 * @return the listener to inform about loaded windows. This method never
+	 *         returns <code>null</code>.
+	 */
+	static WindowLoadListener getWindowLoadListener() {
+		return listener;
+	}
+
 	/**
 	 * Generate a common name from the given class name. This name is expected to be
 	 * used for FXML file names.
@@ -154,7 +397,19 @@ public abstract class FXMLWindowLoader {
 		return name;
 	}
 
-	private static <T> String getNameWithPath(final Class<T> controllerClass) {
+	/**
+	 * Removes all icons that have been loaded by this class from the cache. The
+	 * icons will be loaded again when they are needed for the next time.
+	 */
+	public static void clearIconCache() {
+		IconCache.clear();
+	}
+
+	static String getIconFileFormat(final Class<?> controllerClass) {
+		return getNameWithPath(controllerClass) + "_%s.png";
+	}
+
+	static <T> String getNameWithPath(final Class<T> controllerClass) {
 		final String name = getName(controllerClass);
 		final String path = controllerClass.getPackage().getName() + "/";
 		return path + name;
@@ -184,24 +439,57 @@ public abstract class FXMLWindowLoader {
 		return controller;
 	}
 
+	/**
+	 * Create a child window to the current window asynchronously. The FXML file is
+	 * parsed, the controller is created and initialized and the icons are decoded
+	 * in a background thread. The controller's <code>initialize()</code> method
+	 * must therefore not access any live scene graph. The stage is created on the
+	 * JavaFX Application Thread afterwards.
+	 *
+	 * @param <T>             The type of the window's controller
+	 * @param controllerClass the controller class to attach to the window
+	 * @param owner           the owner of the window to be created (for modality)
+	 * @param title           the text to be shown as the window's title
+	 * @param stageStyle      defines the type of window to show
+	 * @param modality        defines the window's modality
+	 * @return a future that will be completed with the instance of the window's
+	 *         controller on the JavaFX Application Thread
+	 */
+	public static <T> CompletableFuture<T> createWindowAsync(final Class<T> controllerClass,
+			final Stage owner,
+			final String title,
+			final StageStyle stageStyle,
+			final Modality modality) {
+		final long requested = System.nanoTime();
+		return CompletableFuture.supplyAsync(() -> FXMLWindowLoader.<T>parse(controllerClass), BACKGROUND_EXECUTOR)
+				.thenApplyAsync(window -> {
+					final Stage stage = new Stage(stageStyle);
+					stage.initModality(modality);
+					stage.initOwner(owner);
+					stage.setTitle(title);
+					return attach(stage, window, requested);
+				}, Platform::runLater);
+	}
+
 	private static void initAbstractWindowController(final AbstractWindowController atc, final Stage stage) {
 		atc.setStage(stage);
-		stage.setOnShowing(atc::onShowing);
-		stage.setOnShown(atc::onShown);
+		stage.setOnShowing(event -> {
+			final long start = System.nanoTime();
+			atc.onShowing(event);
+			listener.onPhase(atc.getClass(), Phase.SHOWING, System.nanoTime() - start);
+		});
+		stage.setOnShown(event -> {
+			final long start = System.nanoTime();
+			atc.onShown(event);
+			listener.onPhase(atc.getClass(), Phase.SHOWN, System.nanoTime() - start);
+		});
 		stage.setOnCloseRequest(atc::onCloseRequest);
 		stage.setOnHiding(atc::onHiding);
 		stage.setOnHidden(atc::onHidden);
 	}
 
-	private static void addIcon(final Stage stage, final Supplier<InputStream> iconInputStreamSupplier) {
-		try (InputStream stream = iconInputStreamSupplier.get()) {
-			if (stream != null) {
-				final Image image = new Image(stream);
-				stage.getIcons().add(image);
-			}
-		} catch (@SuppressWarnings("unused") final IOException ignore) {
-			// do nothing
-		}
+	static InputStream getFxmlInputStream(final Class<?> controllerClass) {
+		return getFxmlInputStream(controllerClass, getNameWithPath(controllerClass) + EXT_FXML);
 	}
 
 	private static <T> InputStream getFxmlInputStream(final Class<T> controllerClass, final String filename) {
@@ -212,4 +500,82 @@ public abstract class FXMLWindowLoader {
 	private static InputStream getResourceAsStream(final Class<?> relativClass, final String path) {
 		return relativClass.getClassLoader().getResourceAsStream(path);
 	}
+
+	/**
+	 * The result of parsing the FXML definition of a window that has not yet been
+	 * attached to a stage.
+	 */
+	private static final class LoadedWindow<T> {
+		private final Parent root;
+
+		private final T controller;
+
+		private final List<Image> icons;
+
+		private LoadedWindow(final Parent root, final T controller, final List<Image> icons) {
+			this.root = root;
+			this.controller = controller;
+			this.icons = icons;
+		}
+	}
+
+	/**
+	 * A number of windows of the same controller class that have been built in
+	 * advance.
+	 */
+	private static final class WindowPool {
+		private final Class<?> controllerClass;
+
+		private final Queue<LoadedWindow<?>> windows = new ConcurrentLinkedQueue<>();
+
+		private int count = 0;
+
+		private int building = 0;
+
+		private WindowPool(final Class<?> controllerClass) {
+			this.controllerClass = controllerClass;
+		}
+
+		private synchronized void setCount(final int count) {
+			this.count = count;
+			while (windows.size() > count) {
+				windows.poll();
+			}
+			refill();
+		}
+
+		private void add(final LoadedWindow<?> window) {
+			windows.add(window);
+		}
+
+		@Nullable
+		private LoadedWindow<?> take() {
+			final LoadedWindow<?> window = windows.poll();
+			if (window != null) {
+				refill();
+			}
+			// a pool filled by prebuild(...) only is not needed anymore once it is empty
+			PREBUILT_WINDOWS.computeIfPresent(controllerClass, (key, pool) -> pool == this && isUnused() ? null : pool);
+			return window;
+		}
+
+		private synchronized boolean isUnused() {
+			return count == 0 && building == 0 && windows.isEmpty();
+		}
+
+		private synchronized void refill() {
+			while (windows.size() + building < count) {
+				building += 1;
+				CompletableFuture.runAsync(() -> {
+					try {
+						windows.add(build(controllerClass));
+					} finally {
+						synchronized (this) {
+							building -= 1;
+						}
+					}
+				}, BACKGROUND_EXECUTOR);
+			}
+		}
+	}
 }
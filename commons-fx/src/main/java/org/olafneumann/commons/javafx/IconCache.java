@@ -0,0 +1,99 @@
+package org.olafneumann.commons.javafx;
+
+import static org.olafneumann.commons.javafx.Constants.ICON_SIZES;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+
+import org.olafneumann.commons.javafx.WindowLoadListener.Phase;
+import org.olafneumann.commons.javafx.WindowLoadListener.Resource;
+
+import javafx.scene.image.Image;
+
+/**
+ * Cache for decoded window icons. For every class loader and icon file format
+ * the list of icons that could be loaded is kept, so that neither the decoding
+ * of found icons nor the lookup of missing icons is repeated when the same
+ * window is opened again.<br>
+ * The icons are only softly referenced and will be loaded again after the
+ * garbage collector cleared them. Class loaders are weakly referenced, so the
+ * cache does not prevent unloading them.
+ *
+ * @author Olaf Neumann
+ *
+ */
+final class IconCache {
+	private static final Map<ClassLoader, Map<String, SoftReference<List<Image>>>> ICONS
+			= Collections.synchronizedMap(new WeakHashMap<>());
+
+	/**
+	 * Returns the icons of all sizes in {@link Constants#ICON_SIZES} that can be
+	 * found for the given format.
+	 *
+	 * @param relativeClass  the class whose class loader is used to load the icons
+	 * @param iconFileFormat a format to generate the icons' filenames from their
+	 *                       sizes
+	 * @return the icons found; the list may be empty but is never
+	 *         <code>null</code>
+	 */
+	static List<Image> getIcons(final Class<?> relativeClass, final String iconFileFormat) {
+		final ClassLoader classLoader = relativeClass.getClassLoader();
+		final Map<String, SoftReference<List<Image>>> icons
+				= ICONS.computeIfAbsent(classLoader, key -> new ConcurrentHashMap<>());
+		final long start = System.nanoTime();
+		final SoftReference<List<Image>> reference = icons.get(iconFileFormat);
+		List<Image> images = reference == null ? null : reference.get();
+		final boolean hit = images != null;
+		if (!hit) {
+			// concurrent callers might decode the same icons, but that is cheaper than
+			// blocking them
+			images = loadIcons(size -> classLoader.getResourceAsStream(String.format(iconFileFormat, size)));
+			icons.put(iconFileFormat, new SoftReference<>(images));
+		}
+		final WindowLoadListener listener = FXMLWindowLoader.getWindowLoadListener();
+		listener.onCacheAccess(relativeClass, Resource.ICONS, hit);
+		listener.onPhase(relativeClass, Phase.ICONS, System.nanoTime() - start);
+		return images;
+	}
+
+	/**
+	 * Loads the icons of all sizes in {@link Constants#ICON_SIZES} without using
+	 * the cache.
+	 *
+	 * @param iconProvider a function that turns the size information into an
+	 *                     {@link InputStream} to read image data from
+	 * @return the icons found
+	 */
+	static List<Image> loadIcons(final IntFunction<InputStream> iconProvider) {
+		final List<Image> images = new ArrayList<>();
+		for (final int size : ICON_SIZES) {
+			try (InputStream stream = iconProvider.apply(size)) {
+				if (stream != null) {
+					images.add(new Image(stream));
+				}
+			} catch (@SuppressWarnings("unused") final IOException ignore) {
+				// do nothing
+			}
+		}
+		return Collections.unmodifiableList(images);
+	}
+
+	/**
+	 * Removes all icons from the cache.
+	 */
+	static void clear() {
+		ICONS.clear();
+	}
+
+	private IconCache() {
+		throw new RuntimeException();
+	}
+}
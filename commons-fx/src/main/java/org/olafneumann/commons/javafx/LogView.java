@@ -0,0 +1,542 @@
+package org.olafneumann.commons.javafx;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import javax.annotation.Nullable;
+
+import org.olafneumann.files.CompoundRecordIndex;
+import org.olafneumann.files.LineType;
+import org.olafneumann.files.LinesReader;
+
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableListBase;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
+
+/**
+ * A view for log files of any size. Opening a file only starts indexing the
+ * byte offsets of its compound lines in a background thread; rows become
+ * visible while the index grows. Only the rows that are actually displayed are
+ * read from the file, in a background thread as well, and only a limited
+ * number of them is kept in memory.<br>
+ * Lines are combined into compound lines the same way
+ * {@link LinesReader#compoundLines(Predicate)} does. Optionally compound lines
+ * can be grouped the same way {@link LinesReader#groups(Predicate, Function, Function)}
+ * does; then every row shows one group.<br>
+ * The items of this view are managed by the view itself and must not be
+ * replaced.
+ *
+ * @author Olaf Neumann
+ *
+ */
+public class LogView extends ListView<String> {
+	/** Number of rows whose text is kept in memory */
+	private static final int CACHE_SIZE = 1000;
+
+	/** Minimum time between two updates of the number of rows while indexing */
+	private static final long PUBLISH_INTERVAL_NANOS = 100_000_000L;
+
+	/** Text shown for a row until it has been read from the file */
+	private static final String LOADING_ROW = "Loading...";
+
+	/** Number of threads reading rows for all views */
+	private static final int READ_THREADS = 2;
+
+	/**
+	 * Maximum number of rows waiting to be read per view. When scrolling fast,
+	 * rows requested earlier have been scrolled out of view, so the oldest ones
+	 * are dropped.
+	 */
+	private static final int MAX_REQUESTED_ROWS = 200;
+
+	/**
+	 * Indexes files, one thread per view. Idle threads terminate, so views that
+	 * are thrown away do not keep any threads.
+	 */
+	private static final ExecutorService INDEX_EXECUTOR = Executors.newCachedThreadPool(LogView::newThread);
+
+	/**
+	 * Reads rows for all views. Every view has at most one task queued, which
+	 * reads its requested rows one after another.
+	 */
+	private static final ExecutorService READ_EXECUTOR = createReadExecutor();
+
+	private final ReadOnlyBooleanWrapper indexing = new ReadOnlyBooleanWrapper(this, "indexing", false);
+
+	@Nullable
+	private Session session = null;
+
+	private static Thread newThread(final Runnable runnable) {
+		final Thread thread = new Thread(runnable, "LogView");
+		thread.setDaemon(true);
+		return thread;
+	}
+
+	private static ExecutorService createReadExecutor() {
+		final ThreadPoolExecutor executor = new ThreadPoolExecutor(READ_THREADS, READ_THREADS, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(), LogView::newThread);
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * Create an empty log view.
+	 */
+	public LogView() {
+		setPlaceholder(new Label("No file opened"));
+	}
+
+	/**
+	 * Show the given file with one row per line.
+	 *
+	 * @param path    the file to show
+	 * @param charset the charset of the file
+	 * @throws IOException if the file cannot be opened
+	 */
+	public void open(final Path path, final Charset charset) throws IOException {
+		open(path, charset, line -> false);
+	}
+
+	/**
+	 * Show the given file with one row per compound line.
+	 *
+	 * @param path                 the file to show
+	 * @param charset              the charset of the file
+	 * @param appendToPreviousLine whether of not to concatenate the tested line
+	 *                             with the previous one
+	 * @throws IOException if the file cannot be opened
+	 */
+	public void open(final Path path, final Charset charset, final Predicate<String> appendToPreviousLine)
+			throws IOException {
+		open(new Session(path, charset, appendToPreviousLine, null));
+	}
+
+	/**
+	 * Show the given file with one row per group of compound lines. Groups are
+	 * determined the same way {@link LinesReader#groups(Predicate, Function, Function)}
+	 * does and are shown in the order they are finished.
+	 *
+	 * @param path                 the file to show
+	 * @param charset              the charset of the file
+	 * @param appendToPreviousLine whether of not to concatenate the tested line
+	 *                             with the previous one
+	 * @param determineGroup       determine the group id of the tested line
+	 * @param determineEntryType   determine the type of the tested line
+	 * @throws IOException if the file cannot be opened
+	 */
+	public void open(final Path path,
+			final Charset charset,
+			final Predicate<String> appendToPreviousLine,
+			final Function<String, ?> determineGroup,
+			final Function<String, LineType> determineEntryType) throws IOException {
+		open(new Session(path, charset, appendToPreviousLine, new Grouping(determineGroup, determineEntryType)));
+	}
+
+	private void open(final Session newSession) {
+		close();
+		session = newSession;
+		setItems(newSession.rows);
+		setPlaceholder(new Label("Loading..."));
+		indexing.set(true);
+		newSession.indexed = CompletableFuture.runAsync(newSession::index, INDEX_EXECUTOR);
+	}
+
+	/**
+	 * Stop showing the current file and release all of its resources.
+	 */
+	public void close() {
+		final Session oldSession = session;
+		if (oldSession != null) {
+			session = null;
+			oldSession.closed = true;
+			// wait for the indexing to stop before closing the reader
+			oldSession.indexed.whenComplete((result, error) -> oldSession.close());
+			setItems(FXCollections.observableArrayList());
+			setPlaceholder(new Label("No file opened"));
+			indexing.set(false);
+		}
+	}
+
+	/**
+	 * @return a property that is <code>true</code> while the current file is
+	 *         being indexed
+	 */
+	public ReadOnlyBooleanProperty indexingProperty() {
+		return indexing.getReadOnlyProperty();
+	}
+
+	/**
+	 * @return <code>true</code> while the current file is being indexed
+	 */
+	public boolean isIndexing() {
+		return indexing.get();
+	}
+
+	/**
+	 * A file shown by the view.
+	 */
+	private final class Session {
+		private final LinesReader reader;
+
+		private final CompoundRecordIndex index;
+
+		@Nullable
+		private final Grouping grouping;
+
+		private final Rows rows = new Rows(this);
+
+		private final Map<Integer, String> cache = new LinkedHashMap<Integer, String>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<Integer, String> eldest) {
+				return size() > CACHE_SIZE;
+			}
+		};
+
+		/** Rows that are being read in the background */
+		private final Set<Integer> loading = new HashSet<>();
+
+		/** Rows waiting to be read, the most recently requested first */
+		private final Deque<Integer> requested = new ArrayDeque<>();
+
+		/** Whether a task reading the requested rows is queued or running */
+		private boolean reading = false;
+
+		private volatile boolean closed = false;
+
+		/** Completed when the indexing has stopped */
+		private CompletableFuture<Void> indexed = CompletableFuture.completedFuture(null);
+
+		private long lastPublish = System.nanoTime();
+
+		private Session(final Path path,
+				final Charset charset,
+				final Predicate<String> appendToPreviousLine,
+				@Nullable final Grouping grouping) throws IOException {
+			reader = new LinesReader(path, charset);
+			index = new CompoundRecordIndex(reader, appendToPreviousLine);
+			this.grouping = grouping;
+		}
+
+		/**
+		 * Build the index. Runs in the background thread.
+		 */
+		private void index() {
+			try {
+				index.update((recordIndex, text) -> {
+					if (closed) {
+						throw new CancellationException();
+					}
+					if (grouping != null) {
+						grouping.add(recordIndex, text);
+					}
+					if (System.nanoTime() - lastPublish > PUBLISH_INTERVAL_NANOS) {
+						lastPublish = System.nanoTime();
+						publish();
+					}
+				});
+				if (grouping != null) {
+					grouping.finish();
+				}
+				publish();
+				Platform.runLater(() -> {
+					if (session == this) {
+						setPlaceholder(new Label("The file is empty"));
+						indexing.set(false);
+					}
+				});
+			} catch (@SuppressWarnings("unused") final CancellationException ignore) {
+				// the view has been closed
+			} catch (final IOException | RuntimeException e) {
+				Platform.runLater(() -> {
+					if (session == this) {
+						setPlaceholder(new Label("Unable to read the file: " + e));
+						indexing.set(false);
+					}
+				});
+			}
+		}
+
+		private void publish() {
+			final int size = grouping == null ? index.size() : grouping.size();
+			Platform.runLater(() -> rows.grow(size));
+		}
+
+		/**
+		 * Returns the text of a row. If the row has not been read yet, it is read in
+		 * the background and a placeholder is returned until then. Runs in the JavaFX
+		 * Application Thread.
+		 */
+		private String getText(final int row) {
+			final String text = cache.get(row);
+			if (text != null) {
+				return text;
+			}
+			if (loading.add(row)) {
+				request(row);
+			}
+			return LOADING_ROW;
+		}
+
+		private void request(final int row) {
+			final Integer dropped;
+			synchronized (requested) {
+				requested.addFirst(row);
+				dropped = requested.size() > MAX_REQUESTED_ROWS ? requested.removeLast() : null;
+				if (!reading) {
+					reading = true;
+					READ_EXECUTOR.execute(this::readRequested);
+				}
+			}
+			if (dropped != null) {
+				loading.remove(dropped);
+				// in case the row is still visible, its cell will request it again
+				Platform.runLater(() -> {
+					if (session == this) {
+						rows.update(dropped);
+					}
+				});
+			}
+		}
+
+		/**
+		 * Reads the requested rows, the most recently requested first. Runs in a
+		 * background thread.
+		 */
+		private void readRequested() {
+			while (!closed) {
+				final int row;
+				synchronized (requested) {
+					if (requested.isEmpty()) {
+						reading = false;
+						return;
+					}
+					row = requested.removeFirst();
+				}
+				load(row);
+			}
+		}
+
+		/**
+		 * Reads the text of a row. Runs in a background thread.
+		 */
+		private void load(final int row) {
+			String text;
+			try {
+				text = grouping == null ? index.read(row) : readGroup(grouping.get(row));
+			} catch (final IOException e) {
+				text = "Unable to read the file: " + e;
+			}
+			final String loaded = text;
+			Platform.runLater(() -> {
+				if (session == this) {
+					loading.remove(row);
+					cache.put(row, loaded);
+					rows.update(row);
+				}
+			});
+		}
+
+		private String readGroup(final int[] records) throws IOException {
+			final StringBuilder sb = new StringBuilder();
+			for (final int record : records) {
+				if (sb.length() > 0) {
+					sb.append(System.lineSeparator());
+				}
+				sb.append(index.read(record));
+			}
+			return sb.toString();
+		}
+
+		private void close() {
+			try {
+				reader.close();
+			} catch (@SuppressWarnings("unused") final IOException ignore) {
+				// do nothing
+			}
+		}
+	}
+
+	/**
+	 * The rows of a {@link Session}. The list only knows the number of rows; their
+	 * texts are read when they are requested.
+	 */
+	private static final class Rows extends ObservableListBase<String> {
+		private final Session session;
+
+		private int size = 0;
+
+		private Rows(final Session session) {
+			this.session = session;
+		}
+
+		private void grow(final int newSize) {
+			if (newSize > size) {
+				beginChange();
+				nextAdd(size, newSize);
+				size = newSize;
+				endChange();
+			}
+		}
+
+		/**
+		 * Informs the listeners that the text of a row is available.
+		 */
+		private void update(final int index) {
+			if (index < size) {
+				beginChange();
+				nextSet(index, LOADING_ROW);
+				endChange();
+			}
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public String get(final int index) {
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			}
+			return session.getText(index);
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+
+	/**
+	 * Groups the compound lines using the same rules as
+	 * {@link LinesReader#groups(Predicate, Function, Function)}. Groups are stored
+	 * as the numbers of their compound lines in primitive arrays: the records of
+	 * all finished groups one after another and the start of each group.
+	 */
+	private static final class Grouping {
+		private final Function<String, ?> determineGroup;
+
+		private final Function<String, LineType> determineEntryType;
+
+		private final Map<Object, IntArray> openGroups = new HashMap<>();
+
+		/** Records of the finished groups, guarded by this */
+		private final IntArray records = new IntArray();
+
+		/** Index of the first record of each finished group, guarded by this */
+		private final IntArray groupStarts = new IntArray();
+
+		/** Number of the next compound line to add */
+		private int nextRecord = 0;
+
+		private Grouping(final Function<String, ?> determineGroup, final Function<String, LineType> determineEntryType) {
+			this.determineGroup = Objects.requireNonNull(determineGroup);
+			this.determineEntryType = Objects.requireNonNull(determineEntryType);
+		}
+
+		private void add(final int record, final String text) {
+			if (record < nextRecord) {
+				// compound line has been read again
+				return;
+			}
+			nextRecord = record + 1;
+
+			final Object groupId = determineGroup.apply(text);
+			final LineType lineType = determineEntryType.apply(text);
+			IntArray group = openGroups.get(groupId);
+			if (group == null || lineType == LineType.Start) {
+				if (group != null) {
+					finish(group);
+				}
+				group = new IntArray();
+				openGroups.put(groupId, group);
+			}
+			group.add(record);
+			if (lineType == LineType.End) {
+				openGroups.remove(groupId);
+				finish(group);
+			}
+		}
+
+		private synchronized void finish(final IntArray group) {
+			groupStarts.add(records.size());
+			records.addAll(group);
+		}
+
+		private void finish() {
+			for (final IntArray group : openGroups.values()) {
+				finish(group);
+			}
+			openGroups.clear();
+		}
+
+		private synchronized int size() {
+			return groupStarts.size();
+		}
+
+		private synchronized int[] get(final int index) {
+			final int end = index + 1 < groupStarts.size() ? groupStarts.get(index + 1) : records.size();
+			return records.copyOfRange(groupStarts.get(index), end);
+		}
+	}
+
+	/**
+	 * A growable array of <code>int</code> values.
+	 */
+	private static final class IntArray {
+		private int[] values = new int[4];
+
+		private int size = 0;
+
+		private void add(final int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size] = value;
+			size += 1;
+		}
+
+		private void addAll(final IntArray other) {
+			if (size + other.size > values.length) {
+				values = Arrays.copyOf(values, Math.max(size * 2, size + other.size));
+			}
+			System.arraycopy(other.values, 0, values, size, other.size);
+			size += other.size;
+		}
+
+		private int get(final int index) {
+			return values[index];
+		}
+
+		private int size() {
+			return size;
+		}
+
+		private int[] copyOfRange(final int from, final int to) {
+			return Arrays.copyOfRange(values, from, to);
+		}
+	}
+}
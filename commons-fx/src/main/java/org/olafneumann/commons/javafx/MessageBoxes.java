@@ -1,7 +1,5 @@
 package org.olafneumann.commons.javafx;
 
-import java.io.PrintWriter;
-import java.io.StringWriter;
 import java.util.Optional;
 
 import javax.annotation.Nullable;
@@ -10,7 +8,6 @@ import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
 import javafx.scene.control.ButtonType;
 import javafx.scene.control.Label;
-import javafx.scene.control.TextArea;
 import javafx.scene.control.TextInputDialog;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.Priority;
@@ -187,27 +184,25 @@ public final class MessageBoxes {
 		alert.setHeaderText(text);
 		alert.setContentText(message);
 
-		// Create expandable Exception.
-		final StringWriter sw = new StringWriter();
-		final PrintWriter pw = new PrintWriter(sw);
-		throwable.printStackTrace(pw);
-		final String exceptionText = sw.toString();
-
+		// Create expandable Exception. The stack trace is formatted when the user
+		// expands the details for the first time.
 		final Label label = new Label("The stacktrace for this exception:");
 
-		final TextArea textArea = new TextArea(exceptionText);
-		textArea.setEditable(false);
-		textArea.setWrapText(true);
-
-		textArea.setMaxWidth(Double.MAX_VALUE);
-		textArea.setMaxHeight(Double.MAX_VALUE);
-		GridPane.setVgrow(textArea, Priority.ALWAYS);
-		GridPane.setHgrow(textArea, Priority.ALWAYS);
+		final StackTraceView stackTraceView = new StackTraceView();
+		stackTraceView.setMaxWidth(Double.MAX_VALUE);
+		stackTraceView.setMaxHeight(Double.MAX_VALUE);
+		GridPane.setVgrow(stackTraceView, Priority.ALWAYS);
+		GridPane.setHgrow(stackTraceView, Priority.ALWAYS);
+		alert.getDialogPane().expandedProperty().addListener((observable, oldValue, expanded) -> {
+			if (expanded) {
+				stackTraceView.load(throwable);
+			}
+		});
 
 		final GridPane expContent = new GridPane();
 		expContent.setMaxWidth(Double.MAX_VALUE);
 		expContent.add(label, 0, 0);
-		expContent.add(textArea, 0, 1);
+		expContent.add(stackTraceView, 0, 1);
 
 		// Set expandable Exception into the dialog pane.
 		alert.getDialogPane().setExpandableContent(expContent);
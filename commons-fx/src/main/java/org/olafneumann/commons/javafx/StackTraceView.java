@@ -0,0 +1,228 @@
+package org.olafneumann.commons.javafx;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import javax.annotation.Nullable;
+
+import javafx.application.Platform;
+import javafx.scene.control.ContextMenu;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.MenuItem;
+import javafx.scene.input.Clipboard;
+import javafx.scene.input.ClipboardContent;
+import javafx.scene.input.MouseButton;
+
+/**
+ * A virtualized view of the stack trace of a {@link Throwable}. The stack trace
+ * is structured the same way as {@link Throwable#printStackTrace()} does,
+ * including the folding of frames in common with the enclosing trace into
+ * "... N more". Every cause and suppressed exception can be collapsed and
+ * expanded by clicking its header.<br>
+ * The texts of all rows are formatted in a background thread when
+ * {@link #load(Throwable)} is called for the first time, and only the visible
+ * rows are rendered. Collapsing or expanding a section only removes or inserts
+ * the rows of that section.
+ *
+ * @author Olaf Neumann
+ *
+ */
+final class StackTraceView extends ListView<StackTraceView.Row> {
+	private static final String CAPTION_CAUSE = "Caused by: ";
+
+	private static final String CAPTION_SUPPRESSED = "Suppressed: ";
+
+	private boolean loading = false;
+
+	StackTraceView() {
+		setPlaceholder(new Label("Loading stack trace..."));
+		setCellFactory(view -> new RowCell());
+	}
+
+	/**
+	 * Format the stack trace of the given throwable in the background and show it
+	 * afterwards. Only the first call of this method has an effect.
+	 *
+	 * @param throwable the throwable to show
+	 */
+	void load(final Throwable throwable) {
+		if (loading) {
+			return;
+		}
+		loading = true;
+
+		final MenuItem copy = new MenuItem("Copy stack trace");
+		copy.setOnAction(event -> {
+			final StringWriter sw = new StringWriter();
+			throwable.printStackTrace(new PrintWriter(sw));
+			final ClipboardContent content = new ClipboardContent();
+			content.putString(sw.toString());
+			Clipboard.getSystemClipboard().setContent(content);
+		});
+		setContextMenu(new ContextMenu(copy));
+
+		CompletableFuture.supplyAsync(() -> format(throwable))
+				.whenComplete((result, error) -> Platform.runLater(() -> {
+					if (error != null) {
+						setPlaceholder(new Label("Unable to format the stack trace: " + error));
+					} else {
+						getItems().setAll(result);
+					}
+				}));
+	}
+
+	/**
+	 * Split the stack trace of the given throwable into sections the same way
+	 * {@link Throwable#printStackTrace()} prints it.
+	 *
+	 * @param throwable the throwable to format
+	 * @return the rows of all sections, one section for the throwable and each of
+	 *         its causes and suppressed exceptions
+	 */
+	private static List<Row> format(final Throwable throwable) {
+		final List<Section> sections = new ArrayList<>();
+		final Set<Throwable> dejaVu = Collections.newSetFromMap(new IdentityHashMap<>());
+		format(sections, throwable, new StackTraceElement[0], "", "", dejaVu);
+
+		final List<Row> rows = new ArrayList<>();
+		for (final Section section : sections) {
+			rows.add(section.header);
+			rows.addAll(section.rows);
+		}
+		return rows;
+	}
+
+	private static void format(final List<Section> sections,
+			final Throwable throwable,
+			final StackTraceElement[] enclosingTrace,
+			final String caption,
+			final String prefix,
+			final Set<Throwable> dejaVu) {
+		if (!dejaVu.add(throwable)) {
+			sections.add(new Section(prefix + caption + "[CIRCULAR REFERENCE: " + throwable + "]", prefix,
+					new StackTraceElement[0], 0));
+			return;
+		}
+
+		// compute the number of frames in common with the enclosing trace
+		final StackTraceElement[] trace = throwable.getStackTrace();
+		int m = trace.length - 1;
+		int n = enclosingTrace.length - 1;
+		while (m >= 0 && n >= 0 && trace[m].equals(enclosingTrace[n])) {
+			m -= 1;
+			n -= 1;
+		}
+		final StackTraceElement[] frames = new StackTraceElement[m + 1];
+		System.arraycopy(trace, 0, frames, 0, frames.length);
+		sections.add(new Section(prefix + caption + throwable, prefix, frames, trace.length - 1 - m));
+
+		for (final Throwable suppressed : throwable.getSuppressed()) {
+			format(sections, suppressed, trace, CAPTION_SUPPRESSED, prefix + "\t", dejaVu);
+		}
+		final Throwable cause = throwable.getCause();
+		if (cause != null) {
+			format(sections, cause, trace, CAPTION_CAUSE, prefix, dejaVu);
+		}
+	}
+
+	/**
+	 * The part of a stack trace belonging to a single throwable.
+	 */
+	private static final class Section {
+		private Row header;
+
+		/** The rows below the header, shown if the section is expanded */
+		private final List<Row> rows;
+
+		private boolean expanded = true;
+
+		private Section(final String header,
+				final String prefix,
+				final StackTraceElement[] frames,
+				final int framesInCommon) {
+			this.header = new Row(this, header);
+			final List<Row> frameRows = new ArrayList<>(frames.length + 1);
+			for (final StackTraceElement frame : frames) {
+				frameRows.add(new Row(null, prefix + "\tat " + frame));
+			}
+			if (framesInCommon != 0) {
+				frameRows.add(new Row(null, prefix + "\t... " + framesInCommon + " more"));
+			}
+			rows = Collections.unmodifiableList(frameRows);
+		}
+
+		private boolean isCollapsible() {
+			return !rows.isEmpty();
+		}
+
+		/**
+		 * Collapse or expand this section by removing or inserting its rows.
+		 *
+		 * @param items       the rows of the view
+		 * @param headerIndex the index of this section's header in the rows
+		 */
+		private void toggle(final List<Row> items, final int headerIndex) {
+			expanded = !expanded;
+			// replace the header, so its cell shows the new state
+			header = new Row(this, header.text);
+			items.set(headerIndex, header);
+			if (expanded) {
+				items.addAll(headerIndex + 1, rows);
+			} else {
+				items.subList(headerIndex + 1, headerIndex + 1 + rows.size()).clear();
+			}
+		}
+	}
+
+	/**
+	 * A single row of the view.
+	 */
+	static final class Row {
+		@Nullable
+		private final Section section;
+
+		/** The text to show with tabs replaced by spaces */
+		private final String text;
+
+		private Row(@Nullable final Section section, final String text) {
+			this.section = section;
+			this.text = text.replace("\t", "    ");
+		}
+	}
+
+	private final class RowCell extends ListCell<Row> {
+		private RowCell() {
+			setOnMouseClicked(event -> {
+				// ignore the context menu and clicks that ended a drag, e.g. selecting rows
+				if (event.getButton() != MouseButton.PRIMARY || !event.isStillSincePress()) {
+					return;
+				}
+				final Row row = getItem();
+				if (row != null && row.section != null && row.section.isCollapsible()) {
+					row.section.toggle(getListView().getItems(), getIndex());
+				}
+			});
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		protected void updateItem(final Row row, final boolean empty) {
+			super.updateItem(row, empty);
+			if (empty || row == null) {
+				setText(null);
+			} else if (row.section != null && row.section.isCollapsible()) {
+				setText((row.section.expanded ? "- " : "+ ") + row.text);
+			} else {
+				setText(row.text);
+			}
+		}
+	}
+}
@@ -0,0 +1,264 @@
+package org.olafneumann.commons.javafx;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+
+/**
+ * Dispatches updates from background threads to the JavaFX Application Thread.
+ * Instead of one {@link Platform#runLater(Runnable)} per update, all updates
+ * are collected and applied once per pulse by an {@link AnimationTimer}. Updates
+ * are coalesced before they are applied:
+ * <ul>
+ * <li>of several updates submitted for the same key using
+ * {@link #submit(Object, Runnable)} only the last one is applied</li>
+ * <li>all items added to the same list using {@link #add(ObservableList, Object)}
+ * or {@link #addAll(ObservableList, Collection)} are added by a single
+ * {@link ObservableList#addAll(Collection)}</li>
+ * <li>of several calls to {@link #setAll(ObservableList, Collection)} for the
+ * same list only the last one is applied, combined with all items added
+ * afterwards</li>
+ * </ul>
+ * Updates are applied in the order their keys have been submitted first. If
+ * applying the updates of a pulse takes longer than the frame budget, the
+ * remaining updates are applied in the next pulse. The timer only runs while
+ * there are updates to apply.<br>
+ * All methods of this class may be called from any thread.
+ *
+ * @author Olaf Neumann
+ *
+ */
+public final class UpdateDispatcher {
+	/** Default time to spend applying updates per pulse */
+	private static final long DEFAULT_FRAME_BUDGET_NANOS = 8_000_000L;
+
+	private final long frameBudgetNanos;
+
+	private final Object lock = new Object();
+
+	/** Updates that have not been applied yet. Guarded by {@link #lock}. */
+	private Map<Object, Update> pending = new LinkedHashMap<>();
+
+	/** Whether the timer has been started. Guarded by {@link #lock}. */
+	private boolean running = false;
+
+	private final AnimationTimer timer = new AnimationTimer() {
+		@Override
+		public void handle(final long now) {
+			flush();
+		}
+	};
+
+	/**
+	 * Create a dispatcher spending at most 8 ms per pulse applying updates.
+	 */
+	public UpdateDispatcher() {
+		this(DEFAULT_FRAME_BUDGET_NANOS);
+	}
+
+	/**
+	 * Create a dispatcher.
+	 *
+	 * @param frameBudgetNanos the time in nanoseconds to spend applying updates
+	 *                         per pulse. At least one update is applied per pulse.
+	 */
+	public UpdateDispatcher(final long frameBudgetNanos) {
+		if (frameBudgetNanos <= 0) {
+			throw new IllegalArgumentException("The frame budget must be positive, but is " + frameBudgetNanos);
+		}
+		this.frameBudgetNanos = frameBudgetNanos;
+	}
+
+	/**
+	 * Submit an update that replaces all pending updates for the same key.
+	 *
+	 * @param key    the key identifying what is updated, e.g. a label or a
+	 *               property
+	 * @param update the update to apply on the JavaFX Application Thread
+	 */
+	public void submit(final Object key, final Runnable update) {
+		enqueue(new Key(key, false), new Replace(update));
+	}
+
+	/**
+	 * Add an item to a list. All items added to the same list during one pulse
+	 * will be added at once.
+	 *
+	 * @param <T>  the type of the list's items
+	 * @param list the list to add to
+	 * @param item the item to add
+	 */
+	public <T> void add(final ObservableList<T> list, final T item) {
+		final List<T> items = new ArrayList<>(1);
+		items.add(item);
+		enqueue(new Key(list, true), new ListUpdate<>(list, items, false));
+	}
+
+	/**
+	 * Add items to a list. All items added to the same list during one pulse will
+	 * be added at once.
+	 *
+	 * @param <T>   the type of the list's items
+	 * @param list  the list to add to
+	 * @param items the items to add
+	 */
+	public <T> void addAll(final ObservableList<T> list, final Collection<? extends T> items) {
+		enqueue(new Key(list, true), new ListUpdate<>(list, new ArrayList<>(items), false));
+	}
+
+	/**
+	 * Replace the content of a list. Pending additions to the list are discarded.
+	 *
+	 * @param <T>   the type of the list's items
+	 * @param list  the list to replace the content of
+	 * @param items the new content of the list
+	 */
+	public <T> void setAll(final ObservableList<T> list, final Collection<? extends T> items) {
+		enqueue(new Key(list, true), new ListUpdate<>(list, new ArrayList<>(items), true));
+	}
+
+	private void enqueue(final Key key, final Update update) {
+		synchronized (lock) {
+			pending.merge(key, update, Update::merge);
+			if (!running) {
+				running = true;
+				Platform.runLater(timer::start);
+			}
+		}
+	}
+
+	/**
+	 * Apply the pending updates. Runs in the JavaFX Application Thread.
+	 */
+	private void flush() {
+		final long start = System.nanoTime();
+		final Map<Object, Update> updates;
+		synchronized (lock) {
+			updates = pending;
+			pending = new LinkedHashMap<>();
+		}
+
+		final Iterator<Map.Entry<Object, Update>> iterator = updates.entrySet().iterator();
+		while (iterator.hasNext()) {
+			iterator.next().getValue().apply();
+			iterator.remove();
+			if (System.nanoTime() - start > frameBudgetNanos) {
+				break;
+			}
+		}
+
+		synchronized (lock) {
+			if (!updates.isEmpty()) {
+				// the remaining updates are older than the ones submitted in the meantime
+				for (final Map.Entry<Object, Update> entry : pending.entrySet()) {
+					updates.merge(entry.getKey(), entry.getValue(), Update::merge);
+				}
+				pending = updates;
+			} else if (pending.isEmpty()) {
+				running = false;
+				timer.stop();
+			}
+		}
+	}
+
+	/**
+	 * A pending update.
+	 */
+	private interface Update {
+		void apply();
+
+		/**
+		 * Combine this update with a newer update for the same key.
+		 */
+		Update merge(Update newer);
+	}
+
+	private static final class Replace implements Update {
+		private final Runnable runnable;
+
+		private Replace(final Runnable runnable) {
+			this.runnable = Objects.requireNonNull(runnable);
+		}
+
+		@Override
+		public void apply() {
+			runnable.run();
+		}
+
+		@Override
+		public Update merge(final Update newer) {
+			return newer;
+		}
+	}
+
+	private static final class ListUpdate<T> implements Update {
+		private final ObservableList<T> list;
+
+		private final List<T> items;
+
+		private final boolean replace;
+
+		private ListUpdate(final ObservableList<T> list, final List<T> items, final boolean replace) {
+			this.list = list;
+			this.items = items;
+			this.replace = replace;
+		}
+
+		@Override
+		public void apply() {
+			if (replace) {
+				list.setAll(items);
+			} else {
+				list.addAll(items);
+			}
+		}
+
+		@Override
+		public Update merge(final Update newer) {
+			@SuppressWarnings("unchecked")
+			final ListUpdate<T> newerUpdate = (ListUpdate<T>) newer;
+			if (newerUpdate.replace) {
+				return newerUpdate;
+			}
+			items.addAll(newerUpdate.items);
+			return this;
+		}
+	}
+
+	/**
+	 * Key of pending updates. Lists are compared by identity, so that lists with
+	 * equal content are still different keys; all other keys are compared using
+	 * {@link Object#equals(Object)}.
+	 */
+	private static final class Key {
+		private final Object object;
+
+		private final boolean list;
+
+		private Key(final Object object, final boolean list) {
+			this.object = Objects.requireNonNull(object);
+			this.list = list;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof Key) || ((Key) obj).list != list) {
+				return false;
+			}
+			return list ? ((Key) obj).object == object : ((Key) obj).object.equals(object);
+		}
+
+		@Override
+		public int hashCode() {
+			return list ? System.identityHashCode(object) : object.hashCode();
+		}
+	}
+}
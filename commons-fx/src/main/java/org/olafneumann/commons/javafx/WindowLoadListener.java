@@ -0,0 +1,62 @@
+package org.olafneumann.commons.javafx;
+
+/**
+ * Listener that is informed about the steps {@link FXMLWindowLoader} takes to
+ * load and show a window. Register a listener using
+ * {@link FXMLWindowLoader#setWindowLoadListener(WindowLoadListener)};
+ * {@link WindowLoadMetrics} is an implementation collecting statistics.<br>
+ * Listener methods may be called from any thread and must return quickly.
+ *
+ * @author Olaf Neumann
+ *
+ */
+public interface WindowLoadListener {
+	/**
+	 * The steps of loading and showing a window.
+	 */
+	enum Phase {
+		/** Reading the FXML file and building the nodes */
+		FXML,
+		/** Loading or decoding the icons */
+		ICONS,
+		/** Creating the scene and attaching it and the controller to the stage */
+		ATTACH,
+		/** Calling {@link AbstractWindowController#onShowing(javafx.stage.WindowEvent)} */
+		SHOWING,
+		/** Calling {@link AbstractWindowController#onShown(javafx.stage.WindowEvent)} */
+		SHOWN,
+		/** The time from requesting the window until it has been shown for the first time */
+		FIRST_SHOWN;
+	}
+
+	/**
+	 * The resources that are cached by {@link FXMLWindowLoader}.
+	 */
+	enum Resource {
+		/** The content of an FXML file */
+		FXML,
+		/** The decoded icons of a window */
+		ICONS,
+		/** A window built in advance */
+		PREBUILT_WINDOW;
+	}
+
+	/**
+	 * Called after a phase has been finished.
+	 *
+	 * @param controllerClass the class of the window's controller
+	 * @param phase           the phase that has been finished
+	 * @param nanos           the duration of the phase in nanoseconds
+	 */
+	void onPhase(Class<?> controllerClass, Phase phase, long nanos);
+
+	/**
+	 * Called when a cached resource has been requested.
+	 *
+	 * @param controllerClass the class of the window's controller
+	 * @param resource        the resource requested
+	 * @param hit             <code>true</code> if the resource has been found in
+	 *                        the cache
+	 */
+	void onCacheAccess(Class<?> controllerClass, Resource resource, boolean hit);
+}
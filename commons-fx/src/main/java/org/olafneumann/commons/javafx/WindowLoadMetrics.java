@@ -0,0 +1,147 @@
+package org.olafneumann.commons.javafx;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * A {@link WindowLoadListener} collecting statistics per controller class. The
+ * statistics can be read in-process using {@link #snapshot()} or via JMX after
+ * calling {@link #register()}.
+ *
+ * <pre>
+ * WindowLoadMetrics metrics = new WindowLoadMetrics();
+ * FXMLWindowLoader.setWindowLoadListener(metrics);
+ * metrics.register();
+ * </pre>
+ *
+ * @author Olaf Neumann
+ *
+ */
+public final class WindowLoadMetrics implements WindowLoadListener, WindowLoadMetricsMXBean {
+	/** The name this object is registered with by {@link #register()} */
+	public static final String OBJECT_NAME = "org.olafneumann.commons.javafx:type=WindowLoadMetrics";
+
+	private final Map<Class<?>, ClassMetrics> metrics = new ConcurrentHashMap<>();
+
+	/** {@inheritDoc} */
+	@Override
+	public void onPhase(final Class<?> controllerClass, final Phase phase, final long nanos) {
+		getMetrics(controllerClass).phases[phase.ordinal()].add(nanos);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void onCacheAccess(final Class<?> controllerClass, final Resource resource, final boolean hit) {
+		final ClassMetrics classMetrics = getMetrics(controllerClass);
+		(hit ? classMetrics.hits : classMetrics.misses)[resource.ordinal()].increment();
+	}
+
+	private ClassMetrics getMetrics(final Class<?> controllerClass) {
+		return metrics.computeIfAbsent(controllerClass, key -> new ClassMetrics());
+	}
+
+	/**
+	 * Returns a snapshot of all metrics. The metrics are named
+	 * <ul>
+	 * <li><code>&lt;class&gt;.&lt;phase&gt;.count</code>,
+	 * <code>&lt;class&gt;.&lt;phase&gt;.totalNanos</code> and
+	 * <code>&lt;class&gt;.&lt;phase&gt;.maxNanos</code> for every
+	 * {@link WindowLoadListener.Phase}, e.g.
+	 * <code>com.example.MainController.FIRST_SHOWN.maxNanos</code></li>
+	 * <li><code>&lt;class&gt;.cache.&lt;resource&gt;.hits</code> and
+	 * <code>&lt;class&gt;.cache.&lt;resource&gt;.misses</code> for every
+	 * {@link WindowLoadListener.Resource}</li>
+	 * </ul>
+	 * Only metrics that have been recorded at least once are contained.
+	 *
+	 * @return an immutable, sorted map containing the metrics by name
+	 */
+	public Map<String, Long> snapshot() {
+		final Map<String, Long> snapshot = new TreeMap<>();
+		for (final Map.Entry<Class<?>, ClassMetrics> entry : metrics.entrySet()) {
+			final String prefix = entry.getKey().getName() + ".";
+			final ClassMetrics classMetrics = entry.getValue();
+			for (final Phase phase : Phase.values()) {
+				final Timing timing = classMetrics.phases[phase.ordinal()];
+				final long count = timing.count.sum();
+				if (count > 0) {
+					snapshot.put(prefix + phase + ".count", count);
+					snapshot.put(prefix + phase + ".totalNanos", timing.total.sum());
+					snapshot.put(prefix + phase + ".maxNanos", timing.max.get());
+				}
+			}
+			for (final Resource resource : Resource.values()) {
+				final long hits = classMetrics.hits[resource.ordinal()].sum();
+				final long misses = classMetrics.misses[resource.ordinal()].sum();
+				if (hits + misses > 0) {
+					snapshot.put(prefix + "cache." + resource + ".hits", hits);
+					snapshot.put(prefix + "cache." + resource + ".misses", misses);
+				}
+			}
+		}
+		return Collections.unmodifiableMap(snapshot);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Map<String, Long> getMetrics() {
+		return snapshot();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void reset() {
+		metrics.clear();
+	}
+
+	/**
+	 * Register this object at the platform MBean server using the name
+	 * {@link #OBJECT_NAME}.
+	 *
+	 * @throws JMException if the registration fails, e.g. because another object
+	 *                     has already been registered with the same name
+	 */
+	public void register() throws JMException {
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+	}
+
+	private static final class ClassMetrics {
+		private final Timing[] phases = new Timing[Phase.values().length];
+
+		private final LongAdder[] hits = new LongAdder[Resource.values().length];
+
+		private final LongAdder[] misses = new LongAdder[Resource.values().length];
+
+		private ClassMetrics() {
+			for (int i = 0; i < phases.length; i += 1) {
+				phases[i] = new Timing();
+			}
+			for (int i = 0; i < hits.length; i += 1) {
+				hits[i] = new LongAdder();
+				misses[i] = new LongAdder();
+			}
+		}
+	}
+
+	private static final class Timing {
+		private final LongAdder count = new LongAdder();
+
+		private final LongAdder total = new LongAdder();
+
+		private final AtomicLong max = new AtomicLong();
+
+		private void add(final long nanos) {
+			count.increment();
+			total.add(nanos);
+			max.accumulateAndGet(nanos, Math::max);
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package org.olafneumann.commons.javafx;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link WindowLoadMetrics}.
+ *
+ * @author Olaf Neumann
+ *
+ */
+public interface WindowLoadMetricsMXBean {
+	/**
+	 * Returns a snapshot of all metrics. See {@link WindowLoadMetrics#snapshot()}
+	 * for the names of the metrics.
+	 *
+	 * @return the metrics by name
+	 */
+	Map<String, Long> getMetrics();
+
+	/**
+	 * Discard all metrics collected so far.
+	 */
+	void reset();
+}
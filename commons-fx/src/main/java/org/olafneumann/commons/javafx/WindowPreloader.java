@@ -0,0 +1,234 @@
+package org.olafneumann.commons.javafx;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+
+/**
+ * Warms up windows in the background so that opening them for the first time
+ * is as fast as opening them again. For every controller class the preloader
+ * <ul>
+ * <li>resolves the names of the window's resources</li>
+ * <li>reads the FXML file into the cache</li>
+ * <li>decodes the icons into the cache</li>
+ * <li>builds the window once, which loads all classes needed by the window.
+ * This window will be used by the next call to one of the
+ * {@link FXMLWindowLoader} methods for the controller class.</li>
+ * </ul>
+ * The work is done by daemon threads with minimum priority, so it does not
+ * compete with the JavaFX Application Thread. Start the preloader right after
+ * the application's primary window has been shown or whenever the application
+ * is idle.
+ *
+ * @author Olaf Neumann
+ *
+ */
+public final class WindowPreloader {
+	private final List<Class<?>> controllerClasses;
+
+	private final int threadCount;
+
+	/**
+	 * Create a preloader for the given controller classes.
+	 *
+	 * @param controllerClasses the controller classes of the windows to warm up
+	 */
+	public WindowPreloader(final Class<?>... controllerClasses) {
+		this(Arrays.asList(controllerClasses));
+	}
+
+	/**
+	 * Create a preloader for the given controller classes.
+	 *
+	 * @param controllerClasses the controller classes of the windows to warm up
+	 */
+	public WindowPreloader(final Collection<Class<?>> controllerClasses) {
+		this(controllerClasses, Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+	}
+
+	/**
+	 * Create a preloader for the given controller classes.
+	 *
+	 * @param controllerClasses the controller classes of the windows to warm up
+	 * @param threadCount       the maximum number of threads to warm up windows
+	 *                          concurrently
+	 */
+	public WindowPreloader(final Collection<Class<?>> controllerClasses, final int threadCount) {
+		if (threadCount < 1) {
+			throw new IllegalArgumentException("The thread count must be positive, but is " + threadCount);
+		}
+		this.controllerClasses = Collections.unmodifiableList(new ArrayList<>(controllerClasses));
+		this.threadCount = threadCount;
+	}
+
+	/**
+	 * Start warming up all windows in the background. This method returns
+	 * immediately.
+	 *
+	 * @return a future that will be completed with the timings of all windows in
+	 *         the order of the controller classes once all windows have been warmed
+	 *         up. Windows that failed to warm up do not complete the future
+	 *         exceptionally but report the error in their {@link Timing}.
+	 */
+	public CompletableFuture<List<Timing>> start() {
+		final AtomicInteger threadNumber = new AtomicInteger();
+		final ExecutorService executor
+				= Executors.newFixedThreadPool(Math.min(threadCount, Math.max(1, controllerClasses.size())),
+						runnable -> {
+							final Thread thread = new Thread(runnable,
+									"WindowPreloader-" + threadNumber.incrementAndGet());
+							thread.setDaemon(true);
+							thread.setPriority(Thread.MIN_PRIORITY);
+							return thread;
+						});
+		final List<CompletableFuture<Timing>> timings = new ArrayList<>();
+		for (final Class<?> controllerClass : controllerClasses) {
+			timings.add(CompletableFuture.supplyAsync(() -> warmUp(controllerClass), executor));
+		}
+		executor.shutdown();
+		return CompletableFuture.allOf(timings.toArray(new CompletableFuture<?>[0])).thenApply(ignore -> {
+			final List<Timing> result = new ArrayList<>();
+			for (final CompletableFuture<Timing> timing : timings) {
+				result.add(timing.join());
+			}
+			return Collections.unmodifiableList(result);
+		});
+	}
+
+	private static Timing warmUp(final Class<?> controllerClass) {
+		final long start = System.nanoTime();
+		// the end of every phase that ran; phases that did not run remain 0
+		final long[] ends = new long[4];
+		int phase = 0;
+		try {
+			final String iconFileFormat = FXMLWindowLoader.getIconFileFormat(controllerClass);
+			ends[phase++] = System.nanoTime();
+			FXMLTemplates.getFxml(controllerClass);
+			ends[phase++] = System.nanoTime();
+			IconCache.getIcons(controllerClass, iconFileFormat);
+			ends[phase++] = System.nanoTime();
+			FXMLWindowLoader.prebuild(controllerClass);
+			ends[phase++] = System.nanoTime();
+			return createTiming(controllerClass, start, ends, null);
+		} catch (final RuntimeException | LinkageError e) {
+			// the failed phase took the time until the error
+			ends[phase] = System.nanoTime();
+			return createTiming(controllerClass, start, ends, e);
+		}
+	}
+
+	private static Timing createTiming(final Class<?> controllerClass,
+			final long start,
+			final long[] ends,
+			@Nullable final Throwable error) {
+		final long[] nanos = new long[ends.length];
+		for (int i = 0; i < ends.length && ends[i] != 0; i += 1) {
+			nanos[i] = ends[i] - (i == 0 ? start : ends[i - 1]);
+		}
+		return new Timing(controllerClass, nanos[0], nanos[1], nanos[2], nanos[3], error);
+	}
+
+	/**
+	 * The time needed to warm up a single window.
+	 */
+	public static final class Timing {
+		private final Class<?> controllerClass;
+
+		private final long resourceNanos;
+
+		private final long fxmlNanos;
+
+		private final long iconNanos;
+
+		private final long buildNanos;
+
+		@Nullable
+		private final Throwable error;
+
+		private Timing(final Class<?> controllerClass,
+				final long resourceNanos,
+				final long fxmlNanos,
+				final long iconNanos,
+				final long buildNanos,
+				@Nullable final Throwable error) {
+			this.controllerClass = controllerClass;
+			this.resourceNanos = resourceNanos;
+			this.fxmlNanos = fxmlNanos;
+			this.iconNanos = iconNanos;
+			this.buildNanos = buildNanos;
+			this.error = error;
+		}
+
+		/**
+		 * @return the controller class of the window
+		 */
+		public Class<?> getControllerClass() {
+			return controllerClass;
+		}
+
+		/**
+		 * @return the nanoseconds needed to resolve the names of the window's
+		 *         resources
+		 */
+		public long getResourceNanos() {
+			return resourceNanos;
+		}
+
+		/**
+		 * @return the nanoseconds needed to read the FXML file
+		 */
+		public long getFxmlNanos() {
+			return fxmlNanos;
+		}
+
+		/**
+		 * @return the nanoseconds needed to decode the icons
+		 */
+		public long getIconNanos() {
+			return iconNanos;
+		}
+
+		/**
+		 * @return the nanoseconds needed to build the window
+		 */
+		public long getBuildNanos() {
+			return buildNanos;
+		}
+
+		/**
+		 * @return the total nanoseconds needed to warm up the window
+		 */
+		public long getTotalNanos() {
+			return resourceNanos + fxmlNanos + iconNanos + buildNanos;
+		}
+
+		/**
+		 * @return the error that occurred while warming up the window, if any
+		 */
+		public Optional<Throwable> getError() {
+			return Optional.ofNullable(error);
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public String toString() {
+			return String.format("%s: %d ms (resources: %d ms, FXML: %d ms, icons: %d ms, build: %d ms)%s",
+					controllerClass.getName(),
+					getTotalNanos() / 1_000_000,
+					resourceNanos / 1_000_000,
+					fxmlNanos / 1_000_000,
+					iconNanos / 1_000_000,
+					buildNanos / 1_000_000,
+					error == null ? "" : " failed: " + error);
+		}
+	}
+}
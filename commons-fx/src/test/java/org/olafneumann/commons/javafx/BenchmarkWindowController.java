@@ -0,0 +1,14 @@
+package org.olafneumann.commons.javafx;
+
+import javafx.fxml.FXML;
+import javafx.scene.control.TextField;
+
+@SuppressWarnings("javadoc")
+public class BenchmarkWindowController extends AbstractWindowController {
+	@FXML
+	private TextField filter;
+
+	TextField getFilter() {
+		return filter;
+	}
+}
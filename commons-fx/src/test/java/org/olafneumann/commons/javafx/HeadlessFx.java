@@ -0,0 +1,75 @@
+package org.olafneumann.commons.javafx;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+
+import javafx.application.Platform;
+
+/**
+ * Helpers for running JavaFX code in tests. The tests using this class are
+ * meant to run using the headless Monocle platform, see the
+ * <code>headless</code> profile of this module.
+ */
+@SuppressWarnings("javadoc")
+final class HeadlessFx {
+	/** System property set by the <code>headless</code> profile */
+	static final String PLATFORM_PROPERTY = "glass.platform";
+
+	private static boolean started = false;
+
+	static synchronized void start() throws InterruptedException {
+		if (!started) {
+			final CountDownLatch latch = new CountDownLatch(1);
+			Platform.startup(latch::countDown);
+			latch.await();
+			Platform.setImplicitExit(false);
+			started = true;
+		}
+	}
+
+	/**
+	 * Run the given code on the JavaFX Application Thread and wait for its result.
+	 */
+	static <T> T onFx(final Callable<T> callable) throws InterruptedException, ExecutionException {
+		final CompletableFuture<T> future = new CompletableFuture<>();
+		Platform.runLater(() -> {
+			try {
+				future.complete(callable.call());
+			} catch (final Exception | Error e) {
+				future.completeExceptionally(e);
+			}
+		});
+		return future.get();
+	}
+
+	/**
+	 * Run the given code several times and print the median and 90th percentile
+	 * of the durations.
+	 *
+	 * @return the median duration in nanoseconds
+	 */
+	static long measure(final String name, final int warmUps, final int iterations, final Callable<?> callable)
+			throws Exception {
+		for (int i = 0; i < warmUps; i += 1) {
+			callable.call();
+		}
+		final long[] durations = new long[iterations];
+		for (int i = 0; i < iterations; i += 1) {
+			final long start = System.nanoTime();
+			callable.call();
+			durations[i] = System.nanoTime() - start;
+		}
+		Arrays.sort(durations);
+		final long median = durations[iterations / 2];
+		System.out.println(String.format("%s: median %d us, p90 %d us (%d iterations)", name, median / 1000,
+				durations[iterations * 9 / 10] / 1000, iterations));
+		return median;
+	}
+
+	private HeadlessFx() {
+		throw new RuntimeException();
+	}
+}
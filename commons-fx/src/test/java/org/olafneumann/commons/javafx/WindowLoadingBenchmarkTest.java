@@ -0,0 +1,116 @@
+package org.olafneumann.commons.javafx;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import javafx.scene.control.Alert;
+import javafx.scene.control.ListView;
+import javafx.scene.layout.GridPane;
+import javafx.stage.Modality;
+import javafx.stage.Stage;
+import javafx.stage.StageStyle;
+
+/**
+ * Measures the UI helpers of this module. Run with
+ * <code>mvn test -P headless</code> to use the headless Monocle platform, so no
+ * display is needed.
+ */
+@SuppressWarnings("javadoc")
+@EnabledIfSystemProperty(named = HeadlessFx.PLATFORM_PROPERTY, matches = "Monocle")
+public class WindowLoadingBenchmarkTest {
+	private static final int WARM_UPS = 20;
+
+	private static final int ITERATIONS = 100;
+
+	@BeforeAll
+	public static void startFx() throws InterruptedException {
+		HeadlessFx.start();
+	}
+
+	private static String createFxml(final int nodes) {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		sb.append("<?import javafx.scene.control.*?>\n<?import javafx.scene.layout.*?>\n");
+		sb.append("<VBox xmlns:fx=\"http://javafx.com/fxml/1\">\n");
+		for (int i = 0; i < nodes; i += 1) {
+			sb.append(i % 2 == 0 ? "<Label text=\"label " : "<Button text=\"button ").append(i).append("\" />\n");
+		}
+		sb.append("</VBox>\n");
+		return sb.toString();
+	}
+
+	private static Throwable createThrowable(final int depth, final int frames) {
+		Throwable throwable = null;
+		for (int i = 0; i < depth; i += 1) {
+			throwable = recurse(frames, "failure " + i, throwable);
+		}
+		return throwable;
+	}
+
+	private static Throwable recurse(final int frames, final String message, final Throwable cause) {
+		return frames <= 0 ? new IllegalStateException(message, cause) : recurse(frames - 1, message, cause);
+	}
+
+	@Test
+	public void speed_createWindow() throws Exception {
+		final Stage owner = HeadlessFx.onFx(Stage::new);
+		HeadlessFx.measure("createWindow", WARM_UPS, ITERATIONS, () -> HeadlessFx.onFx(() -> {
+			final BenchmarkWindowController controller = FXMLWindowLoader.createWindow(
+					BenchmarkWindowController.class, owner, "Benchmark", StageStyle.DECORATED, Modality.NONE);
+			assertThat(controller.getFilter()).isNotNull();
+			assertThat(controller.getStage().getIcons()).hasSize(3);
+			return controller;
+		}));
+	}
+
+	@Test
+	public void speed_icons() throws Exception {
+		final String format = FXMLWindowLoader.getIconFileFormat(BenchmarkWindowController.class);
+		final ClassLoader classLoader = BenchmarkWindowController.class.getClassLoader();
+		HeadlessFx.measure("icons (decoded)", WARM_UPS, ITERATIONS, () -> {
+			assertThat(IconCache.loadIcons(size -> classLoader.getResourceAsStream(String.format(format, size))))
+					.hasSize(3);
+			return null;
+		});
+		HeadlessFx.measure("icons (cached)", WARM_UPS, ITERATIONS, () -> {
+			assertThat(IconCache.getIcons(BenchmarkWindowController.class, format)).hasSize(3);
+			return null;
+		});
+	}
+
+	@Test
+	public void speed_fxmlSizes() throws Exception {
+		for (final int nodes : new int[] { 10, 100, 1000 }) {
+			final byte[] fxml = createFxml(nodes).getBytes(StandardCharsets.UTF_8);
+			HeadlessFx.measure("FXML with " + nodes + " nodes", WARM_UPS, ITERATIONS / 4, () -> HeadlessFx.onFx(() -> {
+				final Stage stage = new Stage();
+				FXMLWindowLoader.load(stage, () -> new ByteArrayInputStream(fxml), size -> null);
+				assertThat(stage.getScene().getRoot().getChildrenUnmodifiable()).hasSize(nodes);
+				return stage;
+			}));
+		}
+	}
+
+	@Test
+	public void speed_errorDialog() throws Exception {
+		for (final int depth : new int[] { 1, 10, 100 }) {
+			final Throwable throwable = createThrowable(depth, 200);
+			HeadlessFx.measure("error dialog with " + depth + " causes", WARM_UPS, ITERATIONS / 4,
+					() -> HeadlessFx.onFx(() -> {
+						final Alert alert = MessageBoxes.createMessageBoxError(Optional.empty(), "Error", "message",
+								throwable);
+						alert.getDialogPane().setExpanded(true);
+						final GridPane content = (GridPane) alert.getDialogPane().getExpandableContent();
+						assertThat(content.getChildren().get(1)).isInstanceOf(ListView.class);
+						return alert;
+					}));
+		}
+	}
+}
@@ -30,6 +30,16 @@ abstract class AbstractIterator<T> implements Iterator<T> {
 		}
 	}
 
+	/**
+	 * Determines whether an item has already been read by {@link #hasNext()} but
+	 * not yet been returned by {@link #next()}.
+	 *
+	 * @return <code>true</code> if an item is pending
+	 */
+	boolean isItemPending() {
+		return next != null;
+	}
+
 	/**
 	 * Reads the next item from to be returned to the caller.
 	 *
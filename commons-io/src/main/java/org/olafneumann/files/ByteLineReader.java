@@ -0,0 +1,274 @@
+package org.olafneumann.files;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Reads lines directly from bytes and keeps track of the byte offset of every
+ * line. The bytes are read from a {@link ByteSource}, usually a
+ * {@link FileChannel} using positional reads only, so several readers may share
+ * the same channel.<br>
+ * The reader does its own buffering and does not use any locks or
+ * <code>synchronized</code> blocks, so it does not block the carrier threads of
+ * virtual threads. As a consequence instances must not be shared between
+ * threads.<br>
+ * Line terminators are the same as for
+ * {@link java.io.BufferedReader#readLine()}: <code>\n</code>, <code>\r</code>
+ * or <code>\r\n</code>. Because lines are split on the byte level only
+ * charsets that encode these characters as single bytes (e.g. UTF-8,
+ * ISO-8859-1 or US-ASCII) are supported.
+ *
+ * @author noxone
+ *
+ */
+final class ByteLineReader implements LineSource {
+	private static final byte LF = '\n';
+
+	private static final byte CR = '\r';
+
+	private static final byte[] CRLF = { CR, LF };
+
+	private static final char REPLACEMENT = '\uFFFD';
+
+	private final ByteSource source;
+
+	private final Charset charset;
+
+	private final ByteBuffer buffer;
+
+	/** Byte offset of the first byte in the buffer */
+	private long bufferStart;
+
+	/** Byte offset of the line read last */
+	private long lineStart = -1;
+
+	/** Bytes of a line spanning more than one buffer */
+	private byte[] lineBytes = new byte[256];
+
+	private boolean skipLF = false;
+
+	private boolean endOfInput = false;
+
+	/**
+	 * Creates a new reader.
+	 *
+	 * @param channel    the channel to read from
+	 * @param charset    the charset to use for decoding
+	 * @param position   the byte offset to start reading at
+	 * @param bufferSize the number of bytes to read at once
+	 * @throws IllegalArgumentException if the charset is not supported
+	 */
+	ByteLineReader(final FileChannel channel, final Charset charset, final long position, final int bufferSize) {
+		this(channel::read, charset, position, bufferSize);
+	}
+
+	/**
+	 * Creates a new reader for an {@link InputStream}. The reported byte offsets
+	 * are relative to the current position of the stream.
+	 *
+	 * @param in         the stream to read from
+	 * @param charset    the charset to use for decoding
+	 * @param bufferSize the number of bytes to read at once
+	 * @throws IllegalArgumentException if the charset is not supported
+	 */
+	ByteLineReader(final InputStream in, final Charset charset, final int bufferSize) {
+		this((buffer, position) -> {
+			final int read = in.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+			if (read > 0) {
+				buffer.position(buffer.position() + read);
+			}
+			return read;
+		}, charset, 0, bufferSize);
+	}
+
+	private ByteLineReader(final ByteSource source, final Charset charset, final long position, final int bufferSize) {
+		checkCharset(charset);
+		this.source = source;
+		this.charset = charset;
+		this.bufferStart = position;
+		buffer = ByteBuffer.allocate(bufferSize);
+		buffer.limit(0);
+	}
+
+	/**
+	 * Checks whether the given charset can be split into lines on the byte level.
+	 *
+	 * @param charset the charset to check
+	 * @throws IllegalArgumentException if the charset is not supported
+	 */
+	static void checkCharset(final Charset charset) {
+		if (!isSupported(charset)) {
+			throw new IllegalArgumentException(
+					"Charset " + charset.name() + " does not encode line terminators as single bytes.");
+		}
+	}
+
+	/**
+	 * Determines whether the given charset can be split into lines on the byte
+	 * level.
+	 *
+	 * @param charset the charset to check
+	 * @return <code>true</code> if the charset is supported
+	 */
+	static boolean isSupported(final Charset charset) {
+		return Arrays.equals("\r\n".getBytes(charset), CRLF);
+	}
+
+	/**
+	 * Returns the byte offset of the next byte to be read.
+	 *
+	 * @return the byte offset
+	 */
+	long getPosition() {
+		return bufferStart + buffer.position();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public long getLineStart() {
+		return lineStart;
+	}
+
+	private boolean fill() throws IOException {
+		if (endOfInput) {
+			return false;
+		}
+		bufferStart += buffer.limit();
+		buffer.clear();
+		final int read = source.read(buffer, bufferStart);
+		buffer.flip();
+		if (read < 0) {
+			endOfInput = true;
+			return false;
+		}
+		return true;
+	}
+
+	private boolean hasRemaining() throws IOException {
+		while (!buffer.hasRemaining()) {
+			if (!fill()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void skipPendingLF() throws IOException {
+		if (skipLF) {
+			skipLF = false;
+			if (hasRemaining() && buffer.get(buffer.position()) == LF) {
+				buffer.position(buffer.position() + 1);
+			}
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String readLine() throws IOException {
+		skipPendingLF();
+		lineStart = getPosition();
+		int length = 0;
+		while (hasRemaining()) {
+			final byte[] array = buffer.array();
+			final int start = buffer.position();
+			final int limit = buffer.limit();
+			int index = start;
+			while (index < limit && array[index] != LF && array[index] != CR) {
+				index += 1;
+			}
+
+			if (index < limit) {
+				skipLF = array[index] == CR;
+				buffer.position(index + 1);
+				if (length == 0) {
+					return decode(array, start, index - start);
+				}
+				length = append(array, start, index - start, length);
+				return decode(lineBytes, 0, length);
+			}
+
+			length = append(array, start, limit - start, length);
+			buffer.position(limit);
+		}
+		if (getPosition() == lineStart) {
+			return null;
+		}
+		return decode(lineBytes, 0, length);
+	}
+
+	/**
+	 * Decodes the given bytes. Like {@link java.io.InputStreamReader} with a
+	 * {@link java.nio.charset.CharsetDecoder} malformed input will be reported.
+	 */
+	private String decode(final byte[] bytes, final int offset, final int length)
+			throws CharacterCodingException {
+		final String line = new String(bytes, offset, length, charset);
+		if (line.indexOf(REPLACEMENT) >= 0) {
+			// The replacement character might be part of the input or denote malformed
+			// input. Only in the latter case decoding fails.
+			charset.newDecoder().decode(ByteBuffer.wrap(bytes, offset, length));
+		}
+		return line;
+	}
+
+	/**
+	 * Skips the remainder of the current line without decoding it.
+	 *
+	 * @return <code>false</code> if the end of input has been reached before
+	 *         anything could be skipped
+	 * @throws IOException if something on the input fails
+	 */
+	boolean skipLine() throws IOException {
+		skipPendingLF();
+		lineStart = getPosition();
+		while (hasRemaining()) {
+			final byte[] array = buffer.array();
+			final int limit = buffer.limit();
+			int index = buffer.position();
+			while (index < limit && array[index] != LF && array[index] != CR) {
+				index += 1;
+			}
+
+			if (index < limit) {
+				skipLF = array[index] == CR;
+				buffer.position(index + 1);
+				return true;
+			}
+			buffer.position(limit);
+		}
+		return getPosition() != lineStart;
+	}
+
+	private int append(final byte[] source, final int offset, final int count, final int length) {
+		final int newLength = length + count;
+		if (newLength > lineBytes.length) {
+			lineBytes = Arrays.copyOf(lineBytes, Math.max(newLength, lineBytes.length * 2));
+		}
+		System.arraycopy(source, offset, lineBytes, length, count);
+		return newLength;
+	}
+
+	/**
+	 * A source of bytes.
+	 */
+	@FunctionalInterface
+	interface ByteSource {
+		/**
+		 * Reads bytes into the given buffer.
+		 *
+		 * @param buffer   the buffer to put the bytes into
+		 * @param position the byte offset of the first byte to read. Sources that do
+		 *                 not support random access may ignore this value as bytes
+		 *                 are always requested consecutively.
+		 * @return the number of bytes read or <code>-1</code> if the end of input has
+		 *         been reached
+		 * @throws IOException if an I/O error occurs
+		 */
+		int read(ByteBuffer buffer, long position) throws IOException;
+	}
+}
@@ -0,0 +1,120 @@
+package org.olafneumann.files;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * A position inside a file read by a {@link LinesReader} that can be used to
+ * continue reading after a restart. A checkpoint contains the byte offset of
+ * the next compound line to read and the byte offsets of the compound lines of
+ * all groups that have been started but not yet returned.<br>
+ * Checkpoints are created using {@link LinesReader#checkpoint()} and used by
+ * {@link LinesReader#LinesReader(java.nio.file.Path, java.nio.charset.Charset, Checkpoint)}.
+ * Use {@link #write(DataOutput)} and {@link #read(DataInput)} to persist them.
+ *
+ * @author noxone
+ *
+ */
+public final class Checkpoint {
+	private static final int VERSION = 1;
+
+	private final long position;
+
+	private final List<long[]> openGroups;
+
+	@Nullable
+	private final long[] pendingGroup;
+
+	Checkpoint(final long position, final List<long[]> openGroups, @Nullable final long[] pendingGroup) {
+		this.position = position;
+		this.openGroups = Collections.unmodifiableList(openGroups);
+		this.pendingGroup = pendingGroup;
+	}
+
+	/**
+	 * @return the byte offset of the next compound line to read
+	 */
+	public long getPosition() {
+		return position;
+	}
+
+	/**
+	 * @return the byte offsets of the compound lines of each group that has been
+	 *         started but not yet finished
+	 */
+	List<long[]> getOpenGroups() {
+		return openGroups;
+	}
+
+	/**
+	 * @return the byte offsets of the compound lines of a finished group that has
+	 *         not yet been returned to the caller
+	 */
+	@Nullable
+	long[] getPendingGroup() {
+		return pendingGroup;
+	}
+
+	/**
+	 * Writes this checkpoint.
+	 *
+	 * @param out the output to write to
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void write(final DataOutput out) throws IOException {
+		out.writeInt(VERSION);
+		out.writeLong(position);
+		out.writeInt(openGroups.size());
+		for (final long[] offsets : openGroups) {
+			writeOffsets(out, offsets);
+		}
+		out.writeBoolean(pendingGroup != null);
+		if (pendingGroup != null) {
+			writeOffsets(out, pendingGroup);
+		}
+	}
+
+	private static void writeOffsets(final DataOutput out, final long[] offsets) throws IOException {
+		out.writeInt(offsets.length);
+		for (final long offset : offsets) {
+			out.writeLong(offset);
+		}
+	}
+
+	/**
+	 * Reads a checkpoint written by {@link #write(DataOutput)}.
+	 *
+	 * @param in the input to read from
+	 * @return the checkpoint
+	 * @throws IOException if an I/O error occurs or the input does not contain a
+	 *                     checkpoint
+	 */
+	public static Checkpoint read(final DataInput in) throws IOException {
+		final int version = in.readInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported checkpoint version: " + version);
+		}
+		final long position = in.readLong();
+		final int groupCount = in.readInt();
+		final List<long[]> openGroups = new ArrayList<>(groupCount);
+		for (int i = 0; i < groupCount; i += 1) {
+			openGroups.add(readOffsets(in));
+		}
+		final long[] pendingGroup = in.readBoolean() ? readOffsets(in) : null;
+		return new Checkpoint(position, openGroups, pendingGroup);
+	}
+
+	private static long[] readOffsets(final DataInput in) throws IOException {
+		final long[] offsets = new long[in.readInt()];
+		for (int i = 0; i < offsets.length; i += 1) {
+			offsets[i] = in.readLong();
+		}
+		return offsets;
+	}
+}
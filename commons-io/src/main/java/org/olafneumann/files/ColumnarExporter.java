@@ -0,0 +1,342 @@
+package org.olafneumann.files;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Exports the compound lines and groups of a file to a binary columnar file
+ * that can be read using {@link ColumnarFile}. Instead of the text of the
+ * compound lines only their position in the file, their group and optionally
+ * some extracted fields are stored. All strings (group ids and field values)
+ * are dictionary encoded.<br>
+ * Groups are determined the same way as
+ * {@link LinesReader#groups(Predicate, Function, Function)} does.
+ *
+ * @author noxone
+ *
+ */
+public class ColumnarExporter {
+	/** Magic number at the end of each columnar file */
+	static final int MAGIC = 0x4C524331; // "LRC1"
+
+	/** Type of columns containing <code>int</code> values */
+	static final byte TYPE_INT = 1;
+
+	/** Type of columns containing <code>long</code> values */
+	static final byte TYPE_LONG = 2;
+
+	/** Name of the dictionary for group ids */
+	static final String KEY_DICTIONARY = "key";
+
+	private final Predicate<String> appendToPreviousLine;
+
+	private final Function<String, ?> determineGroup;
+
+	private final Function<String, LineType> determineEntryType;
+
+	private final Map<String, Function<String, ?>> fields = new LinkedHashMap<>();
+
+	/**
+	 * Creates a new exporter.
+	 *
+	 * @param appendToPreviousLine whether of not to concatenate the tested line
+	 *                             with the previous one
+	 * @param determineGroup       determine the group id of the tested line
+	 * @param determineEntryType   determine the type of the tested line
+	 */
+	public ColumnarExporter(final Predicate<String> appendToPreviousLine,
+			final Function<String, ?> determineGroup,
+			final Function<String, LineType> determineEntryType) {
+		this.appendToPreviousLine = Objects.requireNonNull(appendToPreviousLine);
+		this.determineGroup = Objects.requireNonNull(determineGroup);
+		this.determineEntryType = Objects.requireNonNull(determineEntryType);
+	}
+
+	/**
+	 * Adds a field that will be extracted from every compound line and stored as
+	 * dictionary encoded column. Extracted values are converted using
+	 * {@link String#valueOf(Object)}; <code>null</code> values are stored as
+	 * missing value.
+	 *
+	 * @param name      the name of the field
+	 * @param extractor the function extracting the field's value
+	 * @return this exporter
+	 */
+	public ColumnarExporter addField(final String name, final Function<String, ?> extractor) {
+		if (KEY_DICTIONARY.equals(name) || fields.containsKey(name)) {
+			throw new IllegalArgumentException("Field name already in use: " + name);
+		}
+		fields.put(name, Objects.requireNonNull(extractor));
+		return this;
+	}
+
+	/**
+	 * Reads all compound lines of the given reader and writes them to the target
+	 * file. The reader has to be created for a file. Reading the compound lines
+	 * does not affect the other streams of the reader.
+	 *
+	 * @param reader the reader to export
+	 * @param target the file to write
+	 * @throws IOException if an I/O error occurs reading or writing
+	 */
+	public void export(final LinesReader reader, final Path target) throws IOException {
+		final Path directory = target.toAbsolutePath().getParent();
+		final List<ColumnWriter> columns = new ArrayList<>();
+		try {
+			final ColumnWriter recordStart = createColumn(columns, directory, "record.start", TYPE_LONG);
+			final ColumnWriter recordEnd = createColumn(columns, directory, "record.end", TYPE_LONG);
+			final ColumnWriter recordLines = createColumn(columns, directory, "record.lines", TYPE_INT);
+			final ColumnWriter recordKey = createColumn(columns, directory, "record.key", TYPE_INT);
+			final List<ColumnWriter> fieldColumns = new ArrayList<>();
+			for (final String name : fields.keySet()) {
+				fieldColumns.add(createColumn(columns, directory, "field." + name, TYPE_INT));
+			}
+			final ColumnWriter groupKey = createColumn(columns, directory, "group.key", TYPE_INT);
+			final ColumnWriter groupStart = createColumn(columns, directory, "group.start", TYPE_LONG);
+			final ColumnWriter groupEnd = createColumn(columns, directory, "group.end", TYPE_LONG);
+			final ColumnWriter groupRecords = createColumn(columns, directory, "group.records", TYPE_INT);
+			final ColumnWriter groupLines = createColumn(columns, directory, "group.lines", TYPE_INT);
+
+			final Dictionary keys = new Dictionary(KEY_DICTIONARY);
+			final List<Dictionary> fieldDictionaries = new ArrayList<>();
+			for (final String name : fields.keySet()) {
+				fieldDictionaries.add(new Dictionary(name));
+			}
+			final List<Function<String, ?>> extractors = new ArrayList<>(fields.values());
+
+			final Map<Object, OpenGroup> openGroups = new HashMap<>();
+			long recordCount = 0;
+			long groupCount = 0;
+			final Iterator<CompoundRecord> records = reader.compoundRecordsIterator(appendToPreviousLine);
+			while (records.hasNext()) {
+				final CompoundRecord record = records.next();
+				final String text = record.getText();
+				final Object groupId = determineGroup.apply(text);
+				final LineType lineType = determineEntryType.apply(text);
+				final int key = keys.encode(groupId);
+
+				recordStart.writeLong(record.getStart());
+				recordEnd.writeLong(record.getEnd());
+				recordLines.writeInt(record.getLineCount());
+				recordKey.writeInt(key);
+				for (int i = 0; i < extractors.size(); i += 1) {
+					fieldColumns.get(i).writeInt(fieldDictionaries.get(i).encode(extractors.get(i).apply(text)));
+				}
+				recordCount += 1;
+
+				// same grouping rules as the GroupedIterator
+				OpenGroup group = openGroups.get(groupId);
+				if (group == null || lineType == LineType.Start) {
+					if (group != null) {
+						group.write(groupKey, groupStart, groupEnd, groupRecords, groupLines);
+						groupCount += 1;
+					}
+					group = new OpenGroup(key, record.getStart());
+					openGroups.put(groupId, group);
+				}
+				group.add(record);
+				if (lineType == LineType.End) {
+					openGroups.remove(groupId);
+					group.write(groupKey, groupStart, groupEnd, groupRecords, groupLines);
+					groupCount += 1;
+				}
+			}
+			for (final OpenGroup group : openGroups.values()) {
+				group.write(groupKey, groupStart, groupEnd, groupRecords, groupLines);
+				groupCount += 1;
+			}
+
+			final List<Dictionary> dictionaries = new ArrayList<>();
+			dictionaries.add(keys);
+			dictionaries.addAll(fieldDictionaries);
+			write(target, columns, dictionaries, recordCount, groupCount);
+		} finally {
+			for (final ColumnWriter column : columns) {
+				column.delete();
+			}
+		}
+	}
+
+	private static ColumnWriter createColumn(final List<ColumnWriter> columns,
+			final Path directory,
+			final String name,
+			final byte type) throws IOException {
+		final ColumnWriter column = new ColumnWriter(name, type, Files.createTempFile(directory, "column", ".tmp"));
+		columns.add(column);
+		return column;
+	}
+
+	/**
+	 * Writes the final file: all columns one after another followed by a footer
+	 * describing the columns and containing the dictionaries.
+	 */
+	private static void write(final Path target,
+			final List<ColumnWriter> columns,
+			final List<Dictionary> dictionaries,
+			final long recordCount,
+			final long groupCount) throws IOException {
+		try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			final long[] offsets = new long[columns.size()];
+			for (int i = 0; i < columns.size(); i += 1) {
+				offsets[i] = channel.position();
+				columns.get(i).transferTo(channel);
+			}
+
+			final long footerOffset = channel.position();
+			final DataOutputStream out
+					= new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+			out.writeLong(recordCount);
+			out.writeLong(groupCount);
+			out.writeInt(columns.size());
+			for (int i = 0; i < columns.size(); i += 1) {
+				final ColumnWriter column = columns.get(i);
+				out.writeUTF(column.name);
+				out.writeByte(column.type);
+				out.writeLong(offsets[i]);
+				out.writeLong(column.rows);
+			}
+			out.writeInt(dictionaries.size());
+			for (final Dictionary dictionary : dictionaries) {
+				out.writeUTF(dictionary.name);
+				out.writeInt(dictionary.values.size());
+				for (final String value : dictionary.values) {
+					final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+					out.writeInt(bytes.length);
+					out.write(bytes);
+				}
+			}
+			out.writeLong(footerOffset);
+			out.writeInt(MAGIC);
+			out.flush();
+		}
+	}
+
+	private static final class OpenGroup {
+		private final int key;
+
+		private final long start;
+
+		private long end;
+
+		private int records = 0;
+
+		private int lines = 0;
+
+		private OpenGroup(final int key, final long start) {
+			this.key = key;
+			this.start = start;
+		}
+
+		private void add(final CompoundRecord record) {
+			end = record.getEnd();
+			records += 1;
+			lines += record.getLineCount();
+		}
+
+		private void write(final ColumnWriter keyColumn,
+				final ColumnWriter startColumn,
+				final ColumnWriter endColumn,
+				final ColumnWriter recordsColumn,
+				final ColumnWriter linesColumn) throws IOException {
+			keyColumn.writeInt(key);
+			startColumn.writeLong(start);
+			endColumn.writeLong(end);
+			recordsColumn.writeInt(records);
+			linesColumn.writeInt(lines);
+		}
+	}
+
+	private static final class Dictionary {
+		private final String name;
+
+		private final Map<String, Integer> codes = new HashMap<>();
+
+		private final List<String> values = new ArrayList<>();
+
+		private Dictionary(final String name) {
+			this.name = name;
+		}
+
+		private int encode(final Object value) {
+			if (value == null) {
+				return -1;
+			}
+			return codes.computeIfAbsent(String.valueOf(value), string -> {
+				values.add(string);
+				return values.size() - 1;
+			});
+		}
+	}
+
+	/**
+	 * Buffers the values of one column in a temporary file.
+	 */
+	private static final class ColumnWriter implements Closeable {
+		private final String name;
+
+		private final byte type;
+
+		private final Path file;
+
+		private final DataOutputStream out;
+
+		private long rows = 0;
+
+		private ColumnWriter(final String name, final byte type, final Path file) throws IOException {
+			this.name = name;
+			this.type = type;
+			this.file = file;
+			out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024));
+		}
+
+		private void writeInt(final int value) throws IOException {
+			out.writeInt(value);
+			rows += 1;
+		}
+
+		private void writeLong(final long value) throws IOException {
+			out.writeLong(value);
+			rows += 1;
+		}
+
+		private void transferTo(final FileChannel target) throws IOException {
+			close();
+			try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+				final long size = source.size();
+				long position = 0;
+				while (position < size) {
+					position += source.transferTo(position, size - position, target);
+				}
+			}
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public void close() throws IOException {
+			out.close();
+		}
+
+		private void delete() throws IOException {
+			close();
+			Files.deleteIfExists(file);
+		}
+	}
+}
@@ -0,0 +1,363 @@
+package org.olafneumann.files;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+/**
+ * Read access to a file written by {@link ColumnarExporter}. All columns are
+ * memory mapped, so queries can scan the primitive values without any parsing.
+ * <br>
+ * The file contains the following columns. Columns named <code>*.key</code>
+ * and <code>field.*</code> contain dictionary codes, <code>-1</code> denotes a
+ * missing value.
+ * <ul>
+ * <li><code>record.start</code>, <code>record.end</code>: byte offsets of each
+ * compound line</li>
+ * <li><code>record.lines</code>: number of lines of each compound line</li>
+ * <li><code>record.key</code>: group id of each compound line</li>
+ * <li><code>field.&lt;name&gt;</code>: extracted fields of each compound
+ * line</li>
+ * <li><code>group.start</code>, <code>group.end</code>: byte offsets of the
+ * first and behind the last compound line of each group</li>
+ * <li><code>group.key</code>: group id of each group</li>
+ * <li><code>group.records</code>, <code>group.lines</code>: number of compound
+ * lines and lines of each group</li>
+ * </ul>
+ * Columns larger than a {@link ByteBuffer} can address are mapped in several
+ * chunks. The index based accessors work for columns of any size, while
+ * {@link #getIntColumn(String)} and {@link #getLongColumn(String)} require
+ * the column to fit into a single buffer.
+ *
+ * @author noxone
+ *
+ */
+public final class ColumnarFile implements AutoCloseable {
+	private static final int TRAILER_SIZE = Long.BYTES + Integer.BYTES;
+
+	/**
+	 * The largest number of bytes mapped at once. It is a multiple of
+	 * {@link Long#BYTES}, so no value spans two chunks.
+	 */
+	static final int MAX_CHUNK_SIZE = Integer.MAX_VALUE & ~(Long.BYTES - 1);
+
+	private final FileChannel channel;
+
+	private final long recordCount;
+
+	private final long groupCount;
+
+	private final Map<String, Column> columns = new HashMap<>();
+
+	private final Map<String, List<String>> dictionaries = new HashMap<>();
+
+	private final Map<String, Map<String, Integer>> dictionaryCodes = new HashMap<>();
+
+	/**
+	 * Opens a file written by {@link ColumnarExporter}.
+	 *
+	 * @param path the file to open
+	 * @throws IOException if an I/O error occurs or the file is not a valid
+	 *                     columnar file
+	 */
+	public ColumnarFile(final Path path) throws IOException {
+		this(path, MAX_CHUNK_SIZE);
+	}
+
+	ColumnarFile(final Path path, final int chunkSize) throws IOException {
+		if (chunkSize <= 0 || chunkSize % Long.BYTES != 0) {
+			throw new IllegalArgumentException("The chunk size must be a positive multiple of 8: " + chunkSize);
+		}
+		channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			final long size = channel.size();
+			if (size < TRAILER_SIZE) {
+				throw new IOException("Not a columnar file: " + path);
+			}
+			final ByteBuffer trailer = channel.map(MapMode.READ_ONLY, size - TRAILER_SIZE, TRAILER_SIZE);
+			final long footerOffset = trailer.getLong();
+			if (trailer.getInt() != ColumnarExporter.MAGIC || footerOffset < 0 || footerOffset > size - TRAILER_SIZE) {
+				throw new IOException("Not a columnar file: " + path);
+			}
+
+			final ByteBuffer footer = channel.map(MapMode.READ_ONLY, footerOffset, size - TRAILER_SIZE - footerOffset);
+			recordCount = footer.getLong();
+			groupCount = footer.getLong();
+			final int columnCount = footer.getInt();
+			for (int i = 0; i < columnCount; i += 1) {
+				final String name = readString(footer);
+				final byte type = footer.get();
+				final long offset = footer.getLong();
+				final long rows = footer.getLong();
+				final long bytes = rows * (type == ColumnarExporter.TYPE_LONG ? Long.BYTES : Integer.BYTES);
+				if (rows < 0 || offset < 0 || bytes < 0 || offset + bytes > footerOffset) {
+					throw new IOException("Not a columnar file: " + path);
+				}
+				columns.put(name, new Column(type, map(offset, bytes, chunkSize), chunkSize));
+			}
+			final int dictionaryCount = footer.getInt();
+			for (int i = 0; i < dictionaryCount; i += 1) {
+				final String name = readString(footer);
+				final int valueCount = footer.getInt();
+				final List<String> values = new ArrayList<>(valueCount);
+				final Map<String, Integer> codes = new HashMap<>();
+				for (int code = 0; code < valueCount; code += 1) {
+					final byte[] bytes = new byte[footer.getInt()];
+					footer.get(bytes);
+					final String value = new String(bytes, StandardCharsets.UTF_8);
+					values.add(value);
+					codes.put(value, code);
+				}
+				dictionaries.put(name, Collections.unmodifiableList(values));
+				dictionaryCodes.put(name, codes);
+			}
+		} catch (final IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	private ByteBuffer[] map(final long offset, final long bytes, final int chunkSize) throws IOException {
+		final ByteBuffer[] chunks = new ByteBuffer[(int) Math.max(1, (bytes + chunkSize - 1) / chunkSize)];
+		for (int i = 0; i < chunks.length; i += 1) {
+			final long chunkOffset = (long) i * chunkSize;
+			chunks[i] = channel.map(MapMode.READ_ONLY, offset + chunkOffset, Math.min(chunkSize, bytes - chunkOffset));
+		}
+		return chunks;
+	}
+
+	private static String readString(final ByteBuffer buffer) {
+		final byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+		buffer.get(bytes);
+		// written by DataOutput.writeUTF, which is identical to UTF-8 for all
+		// characters but \0 and supplementary characters
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * @return the number of compound lines stored in this file
+	 */
+	public long getRecordCount() {
+		return recordCount;
+	}
+
+	/**
+	 * @return the number of groups stored in this file
+	 */
+	public long getGroupCount() {
+		return groupCount;
+	}
+
+	/**
+	 * @return the names of all columns of this file
+	 */
+	public List<String> getColumnNames() {
+		return Collections.unmodifiableList(new ArrayList<>(columns.keySet()));
+	}
+
+	private Column getColumn(final String name, final byte type) {
+		final Column column = columns.get(name);
+		if (column == null || column.type != type) {
+			throw new IllegalArgumentException("No column of the requested type: " + name);
+		}
+		return column;
+	}
+
+	private ByteBuffer getBuffer(final String name, final byte type) {
+		final Column column = getColumn(name, type);
+		if (column.chunks.length > 1) {
+			throw new IllegalStateException(
+					"Column " + name + " is too large for a single buffer, use the index based accessors");
+		}
+		return column.chunks[0].duplicate();
+	}
+
+	/**
+	 * Returns a view of a column containing <code>int</code> values.
+	 *
+	 * @param name the name of the column
+	 * @return a new {@link IntBuffer} on the column's values
+	 * @throws IllegalArgumentException if there is no such column
+	 * @throws IllegalStateException    if the column is too large for a single
+	 *                                  buffer
+	 */
+	public IntBuffer getIntColumn(final String name) {
+		return getBuffer(name, ColumnarExporter.TYPE_INT).asIntBuffer();
+	}
+
+	/**
+	 * Returns a view of a column containing <code>long</code> values.
+	 *
+	 * @param name the name of the column
+	 * @return a new {@link LongBuffer} on the column's values
+	 * @throws IllegalArgumentException if there is no such column
+	 * @throws IllegalStateException    if the column is too large for a single
+	 *                                  buffer
+	 */
+	public LongBuffer getLongColumn(final String name) {
+		return getBuffer(name, ColumnarExporter.TYPE_LONG).asLongBuffer();
+	}
+
+	/**
+	 * Returns the values of a dictionary. The index of a value in the returned list
+	 * is its code.
+	 *
+	 * @param name the name of the dictionary. Use <code>key</code> for group ids
+	 *             and the field's name for fields.
+	 * @return the values of the dictionary
+	 * @throws IllegalArgumentException if there is no such dictionary
+	 */
+	public List<String> getDictionary(final String name) {
+		final List<String> dictionary = dictionaries.get(name);
+		if (dictionary == null) {
+			throw new IllegalArgumentException("No such dictionary: " + name);
+		}
+		return dictionary;
+	}
+
+	/**
+	 * Returns the code of a value in a dictionary. Queries should use this code to
+	 * scan the corresponding column instead of decoding every value.
+	 *
+	 * @param name  the name of the dictionary
+	 * @param value the value to look up
+	 * @return the code or <code>-1</code> if the value is not contained
+	 * @throws IllegalArgumentException if there is no such dictionary
+	 */
+	public int getCode(final String name, final String value) {
+		getDictionary(name);
+		return dictionaryCodes.get(name).getOrDefault(value, -1);
+	}
+
+	@Nullable
+	private String decode(final String dictionary, final int code) {
+		return code < 0 ? null : getDictionary(dictionary).get(code);
+	}
+
+	/**
+	 * @param index the index of the compound line
+	 * @return the byte offset of the compound line
+	 */
+	public long getRecordStart(final long index) {
+		return columns.get("record.start").getLong(index);
+	}
+
+	/**
+	 * @param index the index of the compound line
+	 * @return the byte offset behind the compound line
+	 */
+	public long getRecordEnd(final long index) {
+		return columns.get("record.end").getLong(index);
+	}
+
+	/**
+	 * @param index the index of the compound line
+	 * @return the number of lines of the compound line
+	 */
+	public int getRecordLineCount(final long index) {
+		return columns.get("record.lines").getInt(index);
+	}
+
+	/**
+	 * @param index the index of the compound line
+	 * @return the group id of the compound line
+	 */
+	@Nullable
+	public String getRecordKey(final long index) {
+		return decode(ColumnarExporter.KEY_DICTIONARY, columns.get("record.key").getInt(index));
+	}
+
+	/**
+	 * @param field the name of the field
+	 * @param index the index of the compound line
+	 * @return the extracted value of the field
+	 */
+	@Nullable
+	public String getRecordField(final String field, final long index) {
+		return decode(field, getColumn("field." + field, ColumnarExporter.TYPE_INT).getInt(index));
+	}
+
+	/**
+	 * @param index the index of the group
+	 * @return the group id of the group
+	 */
+	@Nullable
+	public String getGroupKey(final long index) {
+		return decode(ColumnarExporter.KEY_DICTIONARY, columns.get("group.key").getInt(index));
+	}
+
+	/**
+	 * @param index the index of the group
+	 * @return the byte offset of the first compound line of the group
+	 */
+	public long getGroupStart(final long index) {
+		return columns.get("group.start").getLong(index);
+	}
+
+	/**
+	 * @param index the index of the group
+	 * @return the byte offset behind the last compound line of the group
+	 */
+	public long getGroupEnd(final long index) {
+		return columns.get("group.end").getLong(index);
+	}
+
+	/**
+	 * @param index the index of the group
+	 * @return the number of compound lines of the group
+	 */
+	public int getGroupRecordCount(final long index) {
+		return columns.get("group.records").getInt(index);
+	}
+
+	/**
+	 * @param index the index of the group
+	 * @return the number of lines of the group
+	 */
+	public int getGroupLineCount(final long index) {
+		return columns.get("group.lines").getInt(index);
+	}
+
+	private static final class Column {
+		private final byte type;
+
+		private final ByteBuffer[] chunks;
+
+		private final int chunkSize;
+
+		Column(final byte type, final ByteBuffer[] chunks, final int chunkSize) {
+			this.type = type;
+			this.chunks = chunks;
+			this.chunkSize = chunkSize;
+		}
+
+		int getInt(final long index) {
+			final long position = index * Integer.BYTES;
+			return chunks[(int) (position / chunkSize)].getInt((int) (position % chunkSize));
+		}
+
+		long getLong(final long index) {
+			final long position = index * Long.BYTES;
+			return chunks[(int) (position / chunkSize)].getLong((int) (position % chunkSize));
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package org.olafneumann.files;
+
+/**
+ * A compound line together with its position in the underlying file.
+ *
+ * @author noxone
+ *
+ */
+final class CompoundRecord {
+	private final String text;
+
+	private final long start;
+
+	private final long end;
+
+	private final int lineCount;
+
+	CompoundRecord(final String text, final long start, final long end, final int lineCount) {
+		this.text = text;
+		this.start = start;
+		this.end = end;
+		this.lineCount = lineCount;
+	}
+
+	/**
+	 * @return the compound line
+	 */
+	String getText() {
+		return text;
+	}
+
+	/**
+	 * @return the byte offset of the first byte of the compound line
+	 */
+	long getStart() {
+		return start;
+	}
+
+	/**
+	 * @return the byte offset behind the compound line including its line
+	 *         terminator
+	 */
+	long getEnd() {
+		return end;
+	}
+
+	/**
+	 * @return the number of lines of the compound line
+	 */
+	int getLineCount() {
+		return lineCount;
+	}
+}
@@ -0,0 +1,222 @@
+package org.olafneumann.files;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+import javax.annotation.Nullable;
+
+/**
+ * An in-memory index of the byte offsets of all compound lines of a file. Using
+ * the index a single compound line can be read by its number without reading
+ * the file up to it.<br>
+ * The index can be extended while the file grows: {@link #update()} only reads
+ * the part of the file that has not been indexed yet. The last compound line
+ * is read again by every update, as lines might have been appended to it.<br>
+ * One thread may update the index while other threads read from it.
+ *
+ * @author noxone
+ *
+ */
+public final class CompoundRecordIndex {
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private static final int READ_BUFFER_SIZE = 8 * 1024;
+
+	private final LinesReader reader;
+
+	private final Predicate<String> appendToPreviousLine;
+
+	/** Byte offsets of the compound lines. Only the first {@link #size} are valid. */
+	private volatile long[] starts = new long[INITIAL_CAPACITY];
+
+	private volatile int size = 0;
+
+	/** Byte offset behind the last indexed compound line */
+	private volatile long end = 0;
+
+	/**
+	 * Whether {@link #starts} is shared with others and has to be copied before
+	 * it is modified. Guarded by <code>this</code>.
+	 */
+	private boolean shared = false;
+
+	/**
+	 * Listener that is informed about every compound line read by
+	 * {@link CompoundRecordIndex#update(RecordListener)}.
+	 */
+	@FunctionalInterface
+	public interface RecordListener {
+		/**
+		 * Called for every compound line added to or replaced in the index.
+		 *
+		 * @param index the number of the compound line
+		 * @param text  the compound line
+		 */
+		void onRecord(int index, String text);
+	}
+
+	/**
+	 * Create an empty index for the file of the given reader. Call
+	 * {@link #update()} to fill it.
+	 *
+	 * @param reader               the reader to index. The reader has to be
+	 *                             created for a file.
+	 * @param appendToPreviousLine whether of not to concatenate the tested line
+	 *                             with the previous one
+	 */
+	public CompoundRecordIndex(final LinesReader reader, final Predicate<String> appendToPreviousLine) {
+		this.reader = Objects.requireNonNull(reader);
+		this.appendToPreviousLine = Objects.requireNonNull(appendToPreviousLine);
+	}
+
+	/**
+	 * Create an index for the file of the given reader that continues an index
+	 * built before. The given offsets are not modified; they are copied as soon
+	 * as the index changes.
+	 *
+	 * @param reader               the reader to index
+	 * @param appendToPreviousLine whether of not to concatenate the tested line
+	 *                             with the previous one
+	 * @param starts               the byte offsets of the compound lines
+	 * @param size                 the number of valid offsets
+	 * @param end                  the byte offset behind the last compound line
+	 */
+	CompoundRecordIndex(final LinesReader reader,
+			final Predicate<String> appendToPreviousLine,
+			final long[] starts,
+			final int size,
+			final long end) {
+		this(reader, appendToPreviousLine);
+		this.starts = starts.length == 0 ? new long[INITIAL_CAPACITY] : starts;
+		this.size = size;
+		this.end = end;
+		shared = true;
+	}
+
+	/**
+	 * Index all compound lines that have been appended to the file since the last
+	 * update.
+	 *
+	 * @return the number of compound lines in the index
+	 * @throws IOException if an I/O error occurs
+	 */
+	public int update() throws IOException {
+		return update(null);
+	}
+
+	/**
+	 * Index all compound lines that have been appended to the file since the last
+	 * update and inform the given listener about every compound line read. If the
+	 * file is smaller than at the last update, the index is rebuilt from scratch.
+	 *
+	 * @param listener the listener to inform or <code>null</code>
+	 * @return the number of compound lines in the index
+	 * @throws IOException if an I/O error occurs
+	 */
+	public synchronized int update(@Nullable final RecordListener listener) throws IOException {
+		if (reader.getFileChannel().size() < end) {
+			size = 0;
+			end = 0;
+		}
+		// the last compound line might have been continued
+		int index = Math.max(0, size - 1);
+		final long position = size == 0 ? 0 : starts[index];
+		final Iterator<CompoundRecord> records = reader.compoundRecordsIterator(appendToPreviousLine, position);
+		while (records.hasNext()) {
+			final CompoundRecord record = records.next();
+			set(index, record.getStart(), record.getEnd());
+			if (listener != null) {
+				listener.onRecord(index, record.getText());
+			}
+			index += 1;
+		}
+		return size;
+	}
+
+	private void set(final int index, final long start, final long recordEnd) {
+		long[] array = starts;
+		if (index >= array.length || shared) {
+			// publish the grown array before the new size
+			array = Arrays.copyOf(array, index >= array.length ? array.length * 2 : array.length);
+			starts = array;
+			shared = false;
+		}
+		array[index] = start;
+		end = recordEnd;
+		size = index + 1;
+	}
+
+	/**
+	 * Returns the byte offsets of the compound lines. The array is shared with
+	 * this index and must not be modified; the index will copy it before it
+	 * changes.
+	 *
+	 * @return the offsets; only the first {@link #size()} values are valid
+	 */
+	synchronized long[] getStarts() {
+		shared = true;
+		return starts;
+	}
+
+	/**
+	 * @return the number of compound lines in the index
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the byte offset up to which the file has been indexed
+	 */
+	public long getIndexedLength() {
+		return end;
+	}
+
+	/**
+	 * @param index the number of the compound line
+	 * @return the byte offset of the compound line
+	 * @throws IndexOutOfBoundsException if there is no such compound line
+	 */
+	public long getStart(final int index) {
+		checkIndex(index, size);
+		return starts[index];
+	}
+
+	/**
+	 * @param index the number of the compound line
+	 * @return the byte offset behind the compound line including its line
+	 *         terminator
+	 * @throws IndexOutOfBoundsException if there is no such compound line
+	 */
+	public long getEnd(final int index) {
+		checkIndex(index, size);
+		// read the size again, the index might have grown in the meantime
+		return index + 1 < size ? starts[index + 1] : end;
+	}
+
+	private static void checkIndex(final int index, final int size) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+
+	/**
+	 * Reads a single compound line from the file.
+	 *
+	 * @param index the number of the compound line
+	 * @return the compound line
+	 * @throws IOException               if an I/O error occurs
+	 * @throws IndexOutOfBoundsException if there is no such compound line
+	 */
+	public String read(final int index) throws IOException {
+		final Iterator<CompoundRecord> records
+				= reader.compoundRecordsIterator(appendToPreviousLine, getStart(index), READ_BUFFER_SIZE);
+		if (!records.hasNext()) {
+			throw new IOException("The file has been changed: compound line " + index + " is missing.");
+		}
+		return records.next().getText();
+	}
+}
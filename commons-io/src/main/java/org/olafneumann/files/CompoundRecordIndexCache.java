@@ -0,0 +1,491 @@
+package org.olafneumann.files;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+import javax.annotation.Nullable;
+
+/**
+ * A size-bounded cache of the {@link CompoundRecordIndex}es of files that are
+ * opened again and again. Entries are identified by the file, its charset and
+ * the predicate used to find compound lines (compared using
+ * {@link Object#equals(Object)}, so the same predicate instance should be
+ * used). An entry is valid as long as size, modification time and file key of
+ * the file have not changed. If the file has grown, the cached offsets are
+ * extended by indexing the appended part only. Before that, the file key and a
+ * checksum of the first and the last 4 KB of the indexed part are compared, so
+ * a file that has been replaced, truncated and written again or rewritten at
+ * its beginning or end is indexed again. Other modifications of the indexed
+ * part of a growing file are not detected. If the file has shrunk or has been
+ * modified without growing, it is indexed again as well.
+ * <br>
+ * Optionally the cache keeps pages of decoded compound lines that have been
+ * read using {@link #getRecords(LinesReader, Predicate, int, int)}. Pages only
+ * contain compound lines that cannot change when the file grows.<br>
+ * When the estimated memory of all entries exceeds the limit, the least
+ * recently used entries are removed. All methods may be called from any
+ * thread; files are indexed without holding a lock.
+ *
+ * @author noxone
+ *
+ */
+public final class CompoundRecordIndexCache {
+	/** Estimated memory of a compound line in a page in addition to its characters */
+	private static final int RECORD_OVERHEAD = 48;
+
+	private static final int READ_BUFFER_SIZE = 8 * 1024;
+
+	private static final int MAX_READ_BUFFER_SIZE = 1024 * 1024;
+
+	/** Number of bytes at the beginning and the end of the indexed part checked before extending */
+	private static final int CHECKSUM_SIZE = 4 * 1024;
+
+	private final long maxBytes;
+
+	private final int pageSize;
+
+	/** Offsets and pages in access order. Guarded by <code>this</code>. */
+	private final Map<Object, Cached> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	/** Estimated memory of {@link #entries}. Guarded by <code>this</code>. */
+	private long bytes = 0;
+
+	private long hitCount = 0;
+
+	private long missCount = 0;
+
+	/**
+	 * Creates a cache for offsets only.
+	 *
+	 * @param maxBytes the estimated memory the cache may take
+	 */
+	public CompoundRecordIndexCache(final long maxBytes) {
+		this(maxBytes, 0);
+	}
+
+	/**
+	 * Creates a cache for offsets and pages of decoded compound lines.
+	 *
+	 * @param maxBytes the estimated memory the cache may take
+	 * @param pageSize the number of compound lines per page or <code>0</code> to
+	 *                 not cache any compound lines
+	 */
+	public CompoundRecordIndexCache(final long maxBytes, final int pageSize) {
+		if (maxBytes < 0 || pageSize < 0) {
+			throw new IllegalArgumentException(
+					"Size and page size must not be negative, but are " + maxBytes + " and " + pageSize);
+		}
+		this.maxBytes = maxBytes;
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * Returns an up-to-date index of the file read by the given reader. Only the
+	 * part of the file that has not been indexed before will be read.
+	 *
+	 * @param reader               the reader to index. It must have been created
+	 *                             for a file.
+	 * @param appendToPreviousLine whether of not to concatenate the tested line
+	 *                             with the previous one
+	 * @return the index. It reads the file using the given reader.
+	 * @throws IOException           if an I/O error occurs
+	 * @throws IllegalStateException if the reader has not been created for a file
+	 */
+	public CompoundRecordIndex getIndex(final LinesReader reader, final Predicate<String> appendToPreviousLine)
+			throws IOException {
+		return lookup(reader, appendToPreviousLine).index;
+	}
+
+	private Lookup lookup(final LinesReader reader, final Predicate<String> appendToPreviousLine)
+			throws IOException {
+		final Path path = reader.getPath();
+		if (path == null) {
+			throw new IllegalStateException("This operation is only supported for LinesReaders reading a file.");
+		}
+		final Key key = new Key(path.toAbsolutePath().normalize(), reader.getCharset(), appendToPreviousLine);
+		final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+
+		final Offsets cached;
+		synchronized (this) {
+			cached = (Offsets) entries.get(key);
+			if (cached != null
+					&& cached.isVersion(attributes.size(), attributes.lastModifiedTime(), attributes.fileKey())) {
+				hitCount += 1;
+				return new Lookup(key, cached,
+						new CompoundRecordIndex(reader, appendToPreviousLine, cached.starts, cached.size, cached.end));
+			}
+			missCount += 1;
+		}
+
+		final CompoundRecordIndex index;
+		final boolean extend = cached != null && attributes.size() > cached.fileSize
+				&& Objects.equals(attributes.fileKey(), cached.fileKey) && cached.checksum == checksum(path, cached.end);
+		if (extend) {
+			index = new CompoundRecordIndex(reader, appendToPreviousLine, cached.starts, cached.size, cached.end);
+		} else {
+			index = new CompoundRecordIndex(reader, appendToPreviousLine);
+		}
+		index.update();
+
+		final long[] starts;
+		final int size;
+		final long end;
+		synchronized (index) {
+			starts = index.getStarts();
+			size = index.size();
+			end = index.getIndexedLength();
+		}
+		// if the file is changed in the meantime, the checksum will not match when
+		// extending the offsets
+		final Offsets offsets = new Offsets(starts, size, end, attributes.size(), attributes.lastModifiedTime(),
+				attributes.fileKey(), checksum(path, end));
+		synchronized (this) {
+			if (!extend) {
+				removePages(key);
+			}
+			put(key, offsets);
+		}
+		return new Lookup(key, offsets, index);
+	}
+
+	/**
+	 * Computes a checksum of the first and the last {@link #CHECKSUM_SIZE} bytes
+	 * of the given part of a file.
+	 *
+	 * @param path   the file
+	 * @param length the length of the part starting at the beginning of the file
+	 * @return the checksum or <code>-1</code> if the file is shorter than the part
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static long checksum(final Path path, final long length) throws IOException {
+		final CRC32 crc = new CRC32();
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			final long headLength = Math.min(length, CHECKSUM_SIZE);
+			final long tailStart = Math.max(headLength, length - CHECKSUM_SIZE);
+			if (!update(crc, channel, 0, headLength) || !update(crc, channel, tailStart, length - tailStart)) {
+				return -1;
+			}
+		}
+		return crc.getValue();
+	}
+
+	private static boolean update(final CRC32 crc, final FileChannel channel, final long start, final long length)
+			throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate((int) length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, start + buffer.position()) < 0) {
+				return false;
+			}
+		}
+		crc.update(buffer.array());
+		return true;
+	}
+
+	/**
+	 * Returns a range of compound lines of the file read by the given reader.
+	 * Pages of compound lines that have been read before are taken from the
+	 * cache.
+	 *
+	 * @param reader               the reader to read. It must have been created
+	 *                             for a file.
+	 * @param appendToPreviousLine whether of not to concatenate the tested line
+	 *                             with the previous one
+	 * @param from                 the number of the first compound line
+	 *                             (inclusive)
+	 * @param to                   the number of the last compound line
+	 *                             (exclusive)
+	 * @return the compound lines
+	 * @throws IOException               if an I/O error occurs
+	 * @throws IndexOutOfBoundsException if the range is not within the file
+	 * @throws IllegalStateException     if the reader has not been created for a
+	 *                                   file
+	 */
+	public List<String> getRecords(final LinesReader reader,
+			final Predicate<String> appendToPreviousLine,
+			final int from,
+			final int to) throws IOException {
+		final Lookup lookup = lookup(reader, appendToPreviousLine);
+		final CompoundRecordIndex index = lookup.index;
+		final int size = index.size();
+		if (from < 0 || to > size || from > to) {
+			throw new IndexOutOfBoundsException("Range: " + from + " - " + to + ", Size: " + size);
+		}
+		if (pageSize == 0) {
+			return Arrays.asList(read(reader, appendToPreviousLine, index, from, to));
+		}
+
+		final List<String> records = new ArrayList<>(to - from);
+		for (int page = from / pageSize; page * pageSize < to; page += 1) {
+			final int pageStart = page * pageSize;
+			final String[] texts = getPage(lookup, reader, appendToPreviousLine, page);
+			records.addAll(Arrays.asList(texts)
+					.subList(Math.max(from, pageStart) - pageStart, Math.min(to, pageStart + texts.length) - pageStart));
+		}
+		return records;
+	}
+
+	private String[] getPage(final Lookup lookup,
+			final LinesReader reader,
+			final Predicate<String> appendToPreviousLine,
+			final int page) throws IOException {
+		final PageKey pageKey = new PageKey(lookup.key, page);
+		synchronized (this) {
+			final Page cached = (Page) entries.get(pageKey);
+			if (cached != null) {
+				return cached.texts;
+			}
+		}
+
+		final int pageStart = page * pageSize;
+		final int size = lookup.index.size();
+		final String[] texts
+				= read(reader, appendToPreviousLine, lookup.index, pageStart, Math.min(size, pageStart + pageSize));
+		// the last compound line might be continued when the file grows
+		if (pageStart + texts.length < size) {
+			synchronized (this) {
+				// the file might have been indexed again in the meantime
+				final Offsets current = (Offsets) entries.get(lookup.key);
+				if (current != null && current.isVersion(lookup.offsets.fileSize, lookup.offsets.lastModified,
+						lookup.offsets.fileKey)) {
+					put(pageKey, new Page(texts));
+				}
+			}
+		}
+		return texts;
+	}
+
+	private static String[] read(final LinesReader reader,
+			final Predicate<String> appendToPreviousLine,
+			final CompoundRecordIndex index,
+			final int from,
+			final int to) throws IOException {
+		final String[] texts = new String[to - from];
+		if (texts.length == 0) {
+			return texts;
+		}
+		final Iterator<CompoundRecord> records = reader.compoundRecordsIterator(appendToPreviousLine,
+				index.getStart(from), (int) Math.max(READ_BUFFER_SIZE,
+						Math.min(MAX_READ_BUFFER_SIZE, index.getEnd(to - 1) - index.getStart(from))));
+		for (int i = 0; i < texts.length; i += 1) {
+			if (!records.hasNext()) {
+				throw new IOException("The file has been changed: compound line " + (from + i) + " is missing.");
+			}
+			texts[i] = records.next().getText();
+		}
+		return texts;
+	}
+
+	private void put(final Object key, final Cached value) {
+		final Cached previous = entries.put(key, value);
+		if (previous != null) {
+			bytes -= previous.getBytes();
+		}
+		bytes += value.getBytes();
+
+		while (bytes > maxBytes && !entries.isEmpty()) {
+			final Object eldest = entries.keySet().iterator().next();
+			bytes -= entries.remove(eldest).getBytes();
+			if (eldest instanceof Key) {
+				// pages cannot be validated without the offsets
+				removePages((Key) eldest);
+			}
+		}
+	}
+
+	private void removePages(final Key key) {
+		final Iterator<Map.Entry<Object, Cached>> iterator = entries.entrySet().iterator();
+		while (iterator.hasNext()) {
+			final Map.Entry<Object, Cached> entry = iterator.next();
+			if (entry.getKey() instanceof PageKey && ((PageKey) entry.getKey()).key.equals(key)) {
+				iterator.remove();
+				bytes -= entry.getValue().getBytes();
+			}
+		}
+	}
+
+	/**
+	 * Removes all entries from the cache.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		bytes = 0;
+	}
+
+	/**
+	 * @return the estimated memory taken by the cache in bytes
+	 */
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * @return the number of lookups that found an up-to-date index
+	 */
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * @return the number of lookups that had to read the file
+	 */
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * An index found or created by {@link CompoundRecordIndexCache#lookup(LinesReader, Predicate)}.
+	 */
+	private static final class Lookup {
+		private final Key key;
+
+		/** The offsets the index has been created from */
+		private final Offsets offsets;
+
+		private final CompoundRecordIndex index;
+
+		private Lookup(final Key key, final Offsets offsets, final CompoundRecordIndex index) {
+			this.key = key;
+			this.offsets = offsets;
+			this.index = index;
+		}
+	}
+
+	private interface Cached {
+		long getBytes();
+	}
+
+	/**
+	 * The offsets of a file. The array must not be modified.
+	 */
+	private static final class Offsets implements Cached {
+		private final long[] starts;
+
+		private final int size;
+
+		private final long end;
+
+		private final long fileSize;
+
+		private final FileTime lastModified;
+
+		/** See {@link BasicFileAttributes#fileKey()} */
+		@Nullable
+		private final Object fileKey;
+
+		/** See {@link CompoundRecordIndexCache#checksum(Path, long)} */
+		private final long checksum;
+
+		private Offsets(final long[] starts,
+				final int size,
+				final long end,
+				final long fileSize,
+				final FileTime lastModified,
+				@Nullable final Object fileKey,
+				final long checksum) {
+			this.starts = starts;
+			this.size = size;
+			this.end = end;
+			this.fileSize = fileSize;
+			this.lastModified = lastModified;
+			this.fileKey = fileKey;
+			this.checksum = checksum;
+		}
+
+		/**
+		 * @return whether these offsets belong to the given version of the file
+		 */
+		private boolean isVersion(final long otherFileSize,
+				final FileTime otherLastModified,
+				@Nullable final Object otherFileKey) {
+			return fileSize == otherFileSize && lastModified.equals(otherLastModified)
+					&& Objects.equals(fileKey, otherFileKey);
+		}
+
+		@Override
+		public long getBytes() {
+			return 8L * starts.length;
+		}
+	}
+
+	private static final class Page implements Cached {
+		private final String[] texts;
+
+		private final long bytes;
+
+		private Page(final String[] texts) {
+			this.texts = texts;
+			long sum = 0;
+			for (final String text : texts) {
+				sum += RECORD_OVERHEAD + 2L * text.length();
+			}
+			bytes = sum;
+		}
+
+		@Override
+		public long getBytes() {
+			return bytes;
+		}
+	}
+
+	private static final class Key {
+		private final Path path;
+
+		private final Charset charset;
+
+		private final Predicate<String> appendToPreviousLine;
+
+		private Key(final Path path, final Charset charset, final Predicate<String> appendToPreviousLine) {
+			this.path = path;
+			this.charset = charset;
+			this.appendToPreviousLine = Objects.requireNonNull(appendToPreviousLine);
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			return obj instanceof Key && ((Key) obj).path.equals(path) && ((Key) obj).charset.equals(charset)
+					&& ((Key) obj).appendToPreviousLine.equals(appendToPreviousLine);
+		}
+
+		@Override
+		public int hashCode() {
+			return (path.hashCode() * 31 + charset.hashCode()) * 31 + appendToPreviousLine.hashCode();
+		}
+	}
+
+	private static final class PageKey {
+		private final Key key;
+
+		private final int page;
+
+		private PageKey(final Key key, final int page) {
+			this.key = key;
+			this.page = page;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			return obj instanceof PageKey && ((PageKey) obj).key.equals(key) && ((PageKey) obj).page == page;
+		}
+
+		@Override
+		public int hashCode() {
+			return key.hashCode() * 31 + page;
+		}
+	}
+}
@@ -0,0 +1,229 @@
+package org.olafneumann.files;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collector;
+
+/**
+ * Estimates the frequencies of keys in fixed memory and keeps track of the most
+ * frequent keys (heavy hitters). Frequencies are never underestimated; with a
+ * width of <code>w</code> the overestimation is at most <code>e / w</code> of
+ * the total count with probability <code>1 - e^-depth</code>.<br>
+ * The most frequent keys are kept as candidates together with their estimated
+ * frequency, so the top <code>k</code> keys can be returned without knowing
+ * all keys.<br>
+ * Keys are hashed using {@link Fingerprinter#EXACT} on their string
+ * representation, so sketches of different threads, files or processes can be
+ * combined using {@link #merge(CountMinSketch)} if they have the same
+ * dimensions. Use {@link #collector(int, int, int, Function)} to fill a sketch
+ * from a (parallel) stream. Instances are not thread-safe.
+ *
+ * @author noxone
+ *
+ */
+public final class CountMinSketch {
+	private final int width;
+
+	private final int depth;
+
+	private final long[][] table;
+
+	/** Maximum number of heavy hitters to keep */
+	private final int k;
+
+	/** The heavy hitter candidates and their estimated counts */
+	private final Map<String, Long> candidates = new HashMap<>();
+
+	/** The smallest count of {@link #candidates} */
+	private long minCandidateCount = 0;
+
+	private long total = 0;
+
+	/**
+	 * Creates an empty sketch.
+	 *
+	 * @param width the number of counters per row
+	 * @param depth the number of rows
+	 * @param k     the number of most frequent keys to keep track of
+	 */
+	public CountMinSketch(final int width, final int depth, final int k) {
+		if (width <= 0 || depth <= 0 || k < 0) {
+			throw new IllegalArgumentException(
+					"Width and depth must be positive and k must not be negative: " + width + ", " + depth + ", " + k);
+		}
+		this.width = width;
+		this.depth = depth;
+		this.k = k;
+		table = new long[depth][width];
+	}
+
+	/**
+	 * Creates a collector estimating the frequencies of the keys of the stream's
+	 * elements.
+	 *
+	 * @param <T>   the type of the stream's elements
+	 * @param width the number of counters per row
+	 * @param depth the number of rows
+	 * @param k     the number of most frequent keys to keep track of
+	 * @param key   determine the key of an element, e.g. the group id of a
+	 *              compound line. Elements with a <code>null</code> key are
+	 *              ignored.
+	 * @return the collector
+	 */
+	public static <T> Collector<T, CountMinSketch, CountMinSketch> collector(final int width,
+			final int depth,
+			final int k,
+			final Function<? super T, ?> key) {
+		return Collector.of(() -> new CountMinSketch(width, depth, k), (sketch, element) -> {
+			final Object value = key.apply(element);
+			if (value != null) {
+				sketch.add(value.toString());
+			}
+		}, (left, right) -> {
+			left.merge(right);
+			return left;
+		}, Collector.Characteristics.UNORDERED, Collector.Characteristics.IDENTITY_FINISH);
+	}
+
+	/**
+	 * Counts one occurrence of a key.
+	 *
+	 * @param key the key
+	 */
+	public void add(final String key) {
+		add(key, 1);
+	}
+
+	/**
+	 * Counts occurrences of a key.
+	 *
+	 * @param key   the key
+	 * @param count the number of occurrences
+	 */
+	public void add(final String key, final long count) {
+		if (count <= 0) {
+			throw new IllegalArgumentException("The count must be positive, but is " + count);
+		}
+		final long[] hash = Fingerprinter.EXACT.fingerprint128(key);
+		long estimate = Long.MAX_VALUE;
+		for (int row = 0; row < depth; row += 1) {
+			final int column = column(hash, row);
+			table[row][column] += count;
+			estimate = Math.min(estimate, table[row][column]);
+		}
+		total += count;
+		offer(key, estimate);
+	}
+
+	private int column(final long[] hash, final int row) {
+		return (int) Math.floorMod(hash[0] + row * hash[1], (long) width);
+	}
+
+	/**
+	 * Updates the heavy hitter candidates with the estimated count of a key.
+	 */
+	private void offer(final String key, final long estimate) {
+		if (k == 0) {
+			return;
+		}
+		final Long previous = candidates.get(key);
+		if (previous != null) {
+			candidates.put(key, estimate);
+			if (previous == minCandidateCount) {
+				updateMinCandidateCount();
+			}
+		} else if (candidates.size() < k) {
+			candidates.put(key, estimate);
+			minCandidateCount = candidates.size() == 1 ? estimate : Math.min(minCandidateCount, estimate);
+		} else if (estimate > minCandidateCount) {
+			String minKey = null;
+			for (final Map.Entry<String, Long> entry : candidates.entrySet()) {
+				if (entry.getValue() == minCandidateCount) {
+					minKey = entry.getKey();
+					break;
+				}
+			}
+			candidates.remove(minKey);
+			candidates.put(key, estimate);
+			updateMinCandidateCount();
+		}
+	}
+
+	private void updateMinCandidateCount() {
+		long min = Long.MAX_VALUE;
+		for (final long count : candidates.values()) {
+			min = Math.min(min, count);
+		}
+		minCandidateCount = min;
+	}
+
+	/**
+	 * Adds all counts of another sketch to this one.
+	 *
+	 * @param other the sketch to add
+	 * @throws IllegalArgumentException if the sketches have different dimensions
+	 */
+	public void merge(final CountMinSketch other) {
+		if (other.width != width || other.depth != depth) {
+			throw new IllegalArgumentException("Cannot merge sketches of different dimensions.");
+		}
+		for (int row = 0; row < depth; row += 1) {
+			for (int column = 0; column < width; column += 1) {
+				table[row][column] += other.table[row][column];
+			}
+		}
+		total += other.total;
+
+		// re-estimate all candidates using the merged counts
+		final List<String> keys = new ArrayList<>(candidates.keySet());
+		keys.addAll(other.candidates.keySet());
+		candidates.clear();
+		for (final String key : keys) {
+			if (!candidates.containsKey(key)) {
+				offer(key, estimate(key));
+			}
+		}
+	}
+
+	/**
+	 * @param key the key
+	 * @return the estimated number of occurrences of the key. The result is never
+	 *         less than the actual number.
+	 */
+	public long estimate(final String key) {
+		final long[] hash = Fingerprinter.EXACT.fingerprint128(key);
+		long estimate = Long.MAX_VALUE;
+		for (int row = 0; row < depth; row += 1) {
+			estimate = Math.min(estimate, table[row][column(hash, row)]);
+		}
+		return estimate;
+	}
+
+	/**
+	 * Returns the most frequent keys found so far with their estimated counts.
+	 *
+	 * @return the keys and counts ordered by descending count; at most
+	 *         <code>k</code> entries
+	 */
+	public Map<String, Long> getTopK() {
+		final List<Map.Entry<String, Long>> entries = new ArrayList<>(candidates.entrySet());
+		entries.sort(Collections.reverseOrder(Map.Entry.comparingByValue()));
+		final Map<String, Long> topK = new LinkedHashMap<>();
+		for (final Map.Entry<String, Long> entry : entries) {
+			topK.put(entry.getKey(), entry.getValue());
+		}
+		return topK;
+	}
+
+	/**
+	 * @return the total number of counted occurrences
+	 */
+	public long getTotal() {
+		return total;
+	}
+}
@@ -0,0 +1,255 @@
+package org.olafneumann.files;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+import javax.annotation.Nullable;
+
+/**
+ * Counts distinct compound lines by their fingerprints. For every fingerprint
+ * only the count and the first compound line (the exemplar) are kept, so
+ * counting distinct stack traces in huge files takes memory proportional to
+ * the number of distinct traces only. Fingerprints are stored in primitive
+ * arrays using open addressing.<br>
+ * Instances are not thread-safe. Counters filled by different threads can be
+ * combined using {@link #merge(FingerprintCounter)}.
+ *
+ * @author noxone
+ *
+ */
+public final class FingerprintCounter {
+	private static final int INITIAL_CAPACITY = 64;
+
+	private final Fingerprinter fingerprinter;
+
+	private long[] fingerprints = new long[INITIAL_CAPACITY];
+
+	/** Count of each slot. Empty slots have a count of 0. */
+	private long[] counts = new long[INITIAL_CAPACITY];
+
+	private String[] exemplars = new String[INITIAL_CAPACITY];
+
+	private int size = 0;
+
+	private long total = 0;
+
+	/**
+	 * Creates an empty counter.
+	 *
+	 * @param fingerprinter the fingerprinter used by {@link #add(String)}
+	 */
+	public FingerprintCounter(final Fingerprinter fingerprinter) {
+		this.fingerprinter = Objects.requireNonNull(fingerprinter);
+	}
+
+	/**
+	 * Counts all compound lines of the given reader. The compound lines are read
+	 * using {@link LinesReader#compoundLinesIterator(Predicate)}.
+	 *
+	 * @param reader               the reader to read
+	 * @param appendToPreviousLine whether of not to concatenate the tested line
+	 *                             with the previous one
+	 * @param fingerprinter        the fingerprinter deciding which compound lines
+	 *                             are considered equal
+	 * @return the counter
+	 */
+	public static FingerprintCounter count(final LinesReader reader,
+			final Predicate<String> appendToPreviousLine,
+			final Fingerprinter fingerprinter) {
+		final FingerprintCounter counter = new FingerprintCounter(fingerprinter);
+		final Iterator<String> iterator = reader.compoundLinesIterator(appendToPreviousLine);
+		while (iterator.hasNext()) {
+			counter.add(iterator.next());
+		}
+		return counter;
+	}
+
+	/**
+	 * Counts a compound line. As the result tells whether the compound line is
+	 * new, this method can be used to remove duplicates from a sequential stream:
+	 * <code>stream.filter(counter::add)</code>
+	 *
+	 * @param text the compound line
+	 * @return <code>true</code> if no compound line with the same fingerprint has
+	 *         been counted before
+	 */
+	public boolean add(final String text) {
+		return add(fingerprinter.fingerprint(text), 1, text);
+	}
+
+	/**
+	 * Counts a fingerprint.
+	 *
+	 * @param fingerprint the fingerprint to count
+	 * @param count       the number of occurrences to add
+	 * @param exemplar    the text to keep if the fingerprint has not been counted
+	 *                    before
+	 * @return <code>true</code> if the fingerprint has not been counted before
+	 */
+	public boolean add(final long fingerprint, final long count, final String exemplar) {
+		if (count <= 0) {
+			throw new IllegalArgumentException("The count must be positive, but is " + count);
+		}
+		total += count;
+		int slot = slot(fingerprint);
+		if (counts[slot] != 0) {
+			counts[slot] += count;
+			return false;
+		}
+		if ((size + 1) * 2 > counts.length) {
+			grow();
+			slot = slot(fingerprint);
+		}
+		fingerprints[slot] = fingerprint;
+		counts[slot] = count;
+		exemplars[slot] = exemplar;
+		size += 1;
+		return true;
+	}
+
+	/**
+	 * Adds all counts of another counter to this one. Exemplars of this counter
+	 * are kept.
+	 *
+	 * @param other the counter to add
+	 */
+	public void merge(final FingerprintCounter other) {
+		if (other == this) {
+			throw new IllegalArgumentException("A counter cannot be merged with itself.");
+		}
+		for (int slot = 0; slot < other.counts.length; slot += 1) {
+			if (other.counts[slot] != 0) {
+				add(other.fingerprints[slot], other.counts[slot], other.exemplars[slot]);
+			}
+		}
+	}
+
+	/**
+	 * Returns the slot containing the fingerprint or the empty slot it would have
+	 * to be put in.
+	 */
+	private int slot(final long fingerprint) {
+		final int mask = counts.length - 1;
+		int slot = (int) (fingerprint ^ fingerprint >>> 32) & mask;
+		while (counts[slot] != 0 && fingerprints[slot] != fingerprint) {
+			slot = slot + 1 & mask;
+		}
+		return slot;
+	}
+
+	private void grow() {
+		final long[] oldFingerprints = fingerprints;
+		final long[] oldCounts = counts;
+		final String[] oldExemplars = exemplars;
+		fingerprints = new long[oldCounts.length * 2];
+		counts = new long[oldCounts.length * 2];
+		exemplars = new String[oldCounts.length * 2];
+		for (int i = 0; i < oldCounts.length; i += 1) {
+			if (oldCounts[i] != 0) {
+				final int slot = slot(oldFingerprints[i]);
+				fingerprints[slot] = oldFingerprints[i];
+				counts[slot] = oldCounts[i];
+				exemplars[slot] = oldExemplars[i];
+			}
+		}
+	}
+
+	/**
+	 * @return the number of distinct fingerprints
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of counted compound lines
+	 */
+	public long getTotal() {
+		return total;
+	}
+
+	/**
+	 * @param fingerprint the fingerprint
+	 * @return how often the fingerprint has been counted
+	 */
+	public long getCount(final long fingerprint) {
+		return counts[slot(fingerprint)];
+	}
+
+	/**
+	 * @param fingerprint the fingerprint
+	 * @return the first compound line counted for the fingerprint or
+	 *         <code>null</code> if the fingerprint has not been counted
+	 */
+	@Nullable
+	public String getExemplar(final long fingerprint) {
+		return exemplars[slot(fingerprint)];
+	}
+
+	/**
+	 * Returns the most frequent fingerprints.
+	 *
+	 * @param limit the maximum number of entries to return
+	 * @return the entries sorted by descending count
+	 */
+	public List<Entry> getMostFrequent(final int limit) {
+		final List<Entry> entries = new ArrayList<>(size);
+		for (int slot = 0; slot < counts.length; slot += 1) {
+			if (counts[slot] != 0) {
+				entries.add(new Entry(fingerprints[slot], counts[slot], exemplars[slot]));
+			}
+		}
+		final Entry[] sorted = entries.toArray(new Entry[0]);
+		Arrays.sort(sorted, Comparator.comparingLong(Entry::getCount).reversed());
+		return Arrays.asList(sorted).subList(0, Math.min(limit, sorted.length));
+	}
+
+	/**
+	 * A fingerprint together with its count and exemplar.
+	 */
+	public static final class Entry {
+		private final long fingerprint;
+
+		private final long count;
+
+		private final String exemplar;
+
+		private Entry(final long fingerprint, final long count, final String exemplar) {
+			this.fingerprint = fingerprint;
+			this.count = count;
+			this.exemplar = exemplar;
+		}
+
+		/**
+		 * @return the fingerprint
+		 */
+		public long getFingerprint() {
+			return fingerprint;
+		}
+
+		/**
+		 * @return how often the fingerprint has been counted
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * @return the first compound line counted for the fingerprint
+		 */
+		public String getExemplar() {
+			return exemplar;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public String toString() {
+			return count + "x " + exemplar;
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package org.olafneumann.files;
+
+/**
+ * Computes fingerprints of compound lines, e.g. of stack traces, so that equal
+ * compound lines can be counted without keeping them in memory. A fingerprint
+ * is a non-cryptographic 64 or 128 bit hash of the text.<br>
+ * {@link #NORMALIZING} ignores the parts of a text that usually differ between
+ * occurrences of the same problem: every word consisting of hexadecimal digits
+ * only and containing at least one decimal digit (numbers, line numbers, hex
+ * addresses, identity hash codes) is treated as the same placeholder. So are
+ * words starting with <code>0x</code>. Line terminators are ignored, so
+ * <code>\r\n</code> and <code>\n</code> result in the same fingerprint.<br>
+ * Texts are hashed in place; no normalized copy of the text is created.
+ *
+ * @author noxone
+ *
+ */
+public enum Fingerprinter {
+	/** Hashes the text as it is */
+	EXACT,
+
+	/** Hashes the text ignoring numbers and hexadecimal values */
+	NORMALIZING;
+
+	private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+
+	private static final long FNV_PRIME = 0x100000001B3L;
+
+	private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+	private static final long MULTIPLIER = 0xC2B2AE3D27D4EB4FL;
+
+	/** Hashed instead of a normalized word */
+	private static final char PLACEHOLDER = '#';
+
+	/**
+	 * Computes the 64 bit fingerprint of a text.
+	 *
+	 * @param text the text to hash
+	 * @return the fingerprint
+	 */
+	public long fingerprint(final CharSequence text) {
+		return fingerprint128(text)[0];
+	}
+
+	/**
+	 * Computes the 128 bit fingerprint of a text. The first value is the same as
+	 * the one returned by {@link #fingerprint(CharSequence)}.
+	 *
+	 * @param text the text to hash
+	 * @return the fingerprint as two longs
+	 */
+	public long[] fingerprint128(final CharSequence text) {
+		final Hash hash = new Hash();
+		if (this == EXACT) {
+			for (int i = 0; i < text.length(); i += 1) {
+				hash.add(text.charAt(i));
+			}
+		} else {
+			hashNormalized(text, hash);
+		}
+		return hash.finish();
+	}
+
+	private static void hashNormalized(final CharSequence text, final Hash hash) {
+		final int length = text.length();
+		int index = 0;
+		while (index < length) {
+			final char c = text.charAt(index);
+			if (!Character.isLetterOrDigit(c)) {
+				if (c != '\r' && c != '\n') {
+					hash.add(c);
+				}
+				index += 1;
+				continue;
+			}
+
+			int end = index + 1;
+			while (end < length && Character.isLetterOrDigit(text.charAt(end))) {
+				end += 1;
+			}
+			if (isVolatile(text, index, end)) {
+				hash.add(PLACEHOLDER);
+			} else {
+				for (int i = index; i < end; i += 1) {
+					hash.add(text.charAt(i));
+				}
+			}
+			index = end;
+		}
+	}
+
+	/**
+	 * Determines whether a word is a number or a hexadecimal value.
+	 */
+	private static boolean isVolatile(final CharSequence text, final int start, final int end) {
+		if (end - start > 2 && text.charAt(start) == '0'
+				&& (text.charAt(start + 1) == 'x' || text.charAt(start + 1) == 'X')) {
+			return isHex(text, start + 2, end);
+		}
+		boolean digit = false;
+		for (int i = start; i < end; i += 1) {
+			final char c = text.charAt(i);
+			digit |= c >= '0' && c <= '9';
+		}
+		return digit && isHex(text, start, end);
+	}
+
+	private static boolean isHex(final CharSequence text, final int start, final int end) {
+		for (int i = start; i < end; i += 1) {
+			final char c = text.charAt(i);
+			if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F')) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Two independent hash lanes: FNV-1a and a multiply-rotate hash. Both are
+	 * finished using the finalizer of MurmurHash3.
+	 */
+	private static final class Hash {
+		private long lane1 = FNV_OFFSET;
+
+		private long lane2 = GOLDEN;
+
+		private long length = 0;
+
+		private void add(final char c) {
+			lane1 = (lane1 ^ c) * FNV_PRIME;
+			lane2 = Long.rotateLeft(lane2 ^ c * MULTIPLIER, 27) * GOLDEN;
+			length += 1;
+		}
+
+		private long[] finish() {
+			final long hash1 = mix(lane1 ^ length);
+			final long hash2 = mix(lane2 ^ hash1);
+			return new long[] { hash1, hash2 };
+		}
+
+		private static long mix(final long value) {
+			long hash = value;
+			hash ^= hash >>> 33;
+			hash *= 0xFF51AFD7ED558CCDL;
+			hash ^= hash >>> 33;
+			hash *= 0xC4CEB9FE1A85EC53L;
+			hash ^= hash >>> 33;
+			return hash;
+		}
+	}
+}
@@ -0,0 +1,211 @@
+package org.olafneumann.files;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A temporary file holding the lines of groups that did not fit into memory
+ * together with their byte offsets. Lines are only appended to the file, so
+ * spilling is sequential I/O. Every call of {@link #write(List, long[], int)}
+ * returns a segment that can be read back using {@link #read(long[], List)}.
+ * Segments that are not needed anymore are removed by
+ * {@link #compact(List)}.<br>
+ * The file is deleted when it is closed.
+ *
+ * @author noxone
+ *
+ */
+final class GroupSpill implements Closeable {
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/** Index of the start position in a segment */
+	private static final int START = 0;
+
+	/** Index of the length in bytes in a segment */
+	private static final int LENGTH = 1;
+
+	/** Index of the number of lines in a segment */
+	private static final int LINE_COUNT = 2;
+
+	/** Index of the number of offsets in a segment */
+	private static final int OFFSET_COUNT = 3;
+
+	private final FileChannel channel;
+
+	private final DataOutputStream out;
+
+	/** Number of bytes written to the file, including the buffered ones */
+	private long size = 0;
+
+	/**
+	 * Creates a new temporary file.
+	 *
+	 * @param directory the directory to create the file in
+	 * @throws IOException if the file cannot be created
+	 */
+	GroupSpill(final Path directory) throws IOException {
+		final Path file = Files.createTempFile(directory, "groups", ".spill");
+		channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+				StandardOpenOption.DELETE_ON_CLOSE);
+		out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+	}
+
+	/**
+	 * Appends lines and their byte offsets to the file. The lines are buffered
+	 * until {@link #flush()} is called.
+	 *
+	 * @param lines       the lines to write
+	 * @param offsets     the byte offsets of the lines
+	 * @param offsetCount the number of valid values of <code>offsets</code>
+	 * @return the segment describing the written lines: start position, length in
+	 *         bytes, number of lines and number of offsets
+	 * @throws IOException if writing fails
+	 */
+	long[] write(final List<String> lines, final long[] offsets, final int offsetCount) throws IOException {
+		final long start = size;
+		for (int i = 0; i < offsetCount; i += 1) {
+			out.writeLong(offsets[i]);
+		}
+		size += (long) Long.BYTES * offsetCount;
+		for (final String line : lines) {
+			final byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+			size += Integer.BYTES + bytes.length;
+		}
+		return new long[] { start, size - start, lines.size(), offsetCount };
+	}
+
+	/**
+	 * Writes all buffered lines to the file.
+	 *
+	 * @throws IOException if writing fails
+	 */
+	void flush() throws IOException {
+		out.flush();
+	}
+
+	/**
+	 * Reads the lines of a segment that has been written and flushed before.
+	 *
+	 * @param segment the segment returned by {@link #write(List, long[], int)}
+	 * @param lines   the list to add the lines to
+	 * @return the byte offsets of the lines
+	 * @throws IOException if reading fails
+	 */
+	long[] read(final long[] segment, final List<String> lines) throws IOException {
+		final ByteBuffer buffer = read(segment[START], (int) segment[LENGTH]);
+		final long[] offsets = new long[(int) segment[OFFSET_COUNT]];
+		buffer.asLongBuffer().get(offsets);
+		buffer.position(Long.BYTES * offsets.length);
+		for (long i = 0; i < segment[LINE_COUNT]; i += 1) {
+			final int length = buffer.getInt();
+			lines.add(new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8));
+			buffer.position(buffer.position() + length);
+		}
+		return offsets;
+	}
+
+	/**
+	 * Reads the byte offsets of a segment without reading its lines.
+	 *
+	 * @param segment the segment returned by {@link #write(List, long[], int)}
+	 * @return the byte offsets of the lines
+	 * @throws IOException if reading fails
+	 */
+	long[] readOffsets(final long[] segment) throws IOException {
+		final long[] offsets = new long[(int) segment[OFFSET_COUNT]];
+		read(segment[START], Long.BYTES * offsets.length).asLongBuffer().get(offsets);
+		return offsets;
+	}
+
+	private ByteBuffer read(final long start, final int length) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(length);
+		long position = start;
+		while (buffer.hasRemaining()) {
+			final int read = channel.read(buffer, position);
+			if (read < 0) {
+				throw new EOFException("Spill file ended unexpectedly.");
+			}
+			position += read;
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * @return the number of bytes written to the file
+	 */
+	long size() {
+		return size;
+	}
+
+	/**
+	 * Removes everything but the given segments from the file by moving them to
+	 * its beginning. The start positions of the segments are updated in place.
+	 * Segments not contained in the given list must not be read afterwards.
+	 *
+	 * @param segments the segments to keep
+	 * @throws IOException if reading or writing fails
+	 */
+	void compact(final List<long[]> segments) throws IOException {
+		out.flush();
+		segments.sort(Comparator.comparingLong(segment -> segment[START]));
+		final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		long target = 0;
+		for (final long[] segment : segments) {
+			// segments are moved towards the beginning, so a chunk is always read
+			// before it is overwritten
+			long source = segment[START];
+			segment[START] = target;
+			for (long remaining = segment[LENGTH]; remaining > 0;) {
+				buffer.clear();
+				buffer.limit((int) Math.min(buffer.capacity(), remaining));
+				final int read = channel.read(buffer, source);
+				if (read < 0) {
+					throw new EOFException("Spill file ended unexpectedly.");
+				}
+				buffer.flip();
+				while (buffer.hasRemaining()) {
+					target += channel.write(buffer, target);
+				}
+				source += read;
+				remaining -= read;
+			}
+		}
+		channel.truncate(target);
+		channel.position(target);
+		size = target;
+	}
+
+	/**
+	 * Discards the content of the file. Segments written before must not be read
+	 * afterwards.
+	 *
+	 * @throws IOException if truncating the file fails
+	 */
+	void clear() throws IOException {
+		out.flush();
+		channel.truncate(0);
+		channel.position(0);
+		size = 0;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
@@ -0,0 +1,160 @@
+package org.olafneumann.files;
+
+import java.util.Arrays;
+import java.util.function.Function;
+import java.util.stream.Collector;
+
+/**
+ * Estimates the number of distinct values in fixed memory, e.g. the number of
+ * distinct threads or group ids of a huge file. With a precision of
+ * <code>p</code> the sketch takes <code>2^p</code> bytes and the standard error
+ * of the estimate is about <code>1.04 / sqrt(2^p)</code>, e.g. 0.8 % for
+ * <code>p = 14</code>.<br>
+ * Values are hashed using {@link Fingerprinter#EXACT} on their string
+ * representation, so sketches of different threads, files or processes can be
+ * combined using {@link #merge(HyperLogLog)} if they have the same precision.
+ * Use {@link #collector(int, Function)} to fill a sketch from a (parallel)
+ * stream. Instances are not thread-safe.
+ *
+ * @author noxone
+ *
+ */
+public final class HyperLogLog {
+	private static final int MIN_PRECISION = 4;
+
+	private static final int MAX_PRECISION = 18;
+
+	private final int precision;
+
+	private final byte[] registers;
+
+	/**
+	 * Creates an empty sketch.
+	 *
+	 * @param precision the number of bits used to choose a register (between 4
+	 *                  and 18)
+	 */
+	public HyperLogLog(final int precision) {
+		if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+			throw new IllegalArgumentException("The precision must be between " + MIN_PRECISION + " and "
+					+ MAX_PRECISION + ", but is " + precision);
+		}
+		this.precision = precision;
+		registers = new byte[1 << precision];
+	}
+
+	/**
+	 * Creates a collector estimating the number of distinct keys of the stream's
+	 * elements.
+	 *
+	 * @param <T>       the type of the stream's elements
+	 * @param precision the number of bits used to choose a register (between 4
+	 *                  and 18)
+	 * @param key       determine the key of an element, e.g. the group id of a
+	 *                  compound line. Elements with a <code>null</code> key are
+	 *                  ignored.
+	 * @return the collector
+	 */
+	public static <T> Collector<T, HyperLogLog, HyperLogLog> collector(final int precision,
+			final Function<? super T, ?> key) {
+		return Collector.of(() -> new HyperLogLog(precision), (sketch, element) -> {
+			final Object value = key.apply(element);
+			if (value != null) {
+				sketch.add(value);
+			}
+		}, (left, right) -> {
+			left.merge(right);
+			return left;
+		}, Collector.Characteristics.UNORDERED, Collector.Characteristics.IDENTITY_FINISH);
+	}
+
+	/**
+	 * Adds a value.
+	 *
+	 * @param value the value; its string representation is hashed
+	 */
+	public void add(final Object value) {
+		addHash(Fingerprinter.EXACT.fingerprint(value.toString()));
+	}
+
+	/**
+	 * Adds a value by its 64 bit hash. The hash must be well distributed.
+	 *
+	 * @param hash the hash of the value
+	 */
+	public void addHash(final long hash) {
+		final int index = (int) (hash >>> Long.SIZE - precision);
+		// the remaining bits with a stop bit, so the rank is at most 64 - p + 1
+		final long remaining = hash << precision | 1L << precision - 1;
+		final byte rank = (byte) (Long.numberOfLeadingZeros(remaining) + 1);
+		if (rank > registers[index]) {
+			registers[index] = rank;
+		}
+	}
+
+	/**
+	 * Adds all values of another sketch to this one.
+	 *
+	 * @param other the sketch to add
+	 * @throws IllegalArgumentException if the sketches have different precisions
+	 */
+	public void merge(final HyperLogLog other) {
+		if (other.precision != precision) {
+			throw new IllegalArgumentException(
+					"Cannot merge sketches of precision " + other.precision + " and " + precision);
+		}
+		for (int i = 0; i < registers.length; i += 1) {
+			if (other.registers[i] > registers[i]) {
+				registers[i] = other.registers[i];
+			}
+		}
+	}
+
+	/**
+	 * @return the estimated number of distinct values
+	 */
+	public long estimate() {
+		final int m = registers.length;
+		double sum = 0;
+		int zeros = 0;
+		for (final byte register : registers) {
+			sum += Math.scalb(1.0, -register);
+			if (register == 0) {
+				zeros += 1;
+			}
+		}
+		final double estimate = alpha(m) * m * m / sum;
+		if (estimate <= 2.5 * m && zeros > 0) {
+			// linear counting is more precise for small cardinalities
+			return Math.round(m * Math.log((double) m / zeros));
+		}
+		return Math.round(estimate);
+	}
+
+	private static double alpha(final int m) {
+		switch (m) {
+		case 16:
+			return 0.673;
+		case 32:
+			return 0.697;
+		case 64:
+			return 0.709;
+		default:
+			return 0.7213 / (1 + 1.079 / m);
+		}
+	}
+
+	/**
+	 * @return the precision of this sketch
+	 */
+	public int getPrecision() {
+		return precision;
+	}
+
+	/**
+	 * Removes all values from this sketch.
+	 */
+	public void clear() {
+		Arrays.fill(registers, (byte) 0);
+	}
+}
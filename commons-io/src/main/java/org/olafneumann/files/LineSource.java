@@ -0,0 +1,34 @@
+package org.olafneumann.files;
+
+import java.io.IOException;
+
+/**
+ * A source of single lines. Implementations may additionally report the byte
+ * offset at which the most recently read line started.
+ *
+ * @author noxone
+ *
+ */
+@FunctionalInterface
+interface LineSource {
+	/**
+	 * Reads the next line without any line termination characters.
+	 *
+	 * @return the next line or <code>null</code> if the end of input has been
+	 *         reached
+	 * @throws IOException if something on the input fails
+	 */
+	String readLine() throws IOException;
+
+	/**
+	 * Returns the byte offset of the line returned by the last call to
+	 * {@link #readLine()}. If that call reached the end of input the offset of the
+	 * end of input is returned.
+	 *
+	 * @return the byte offset or <code>-1</code> if the source does not know about
+	 *         byte offsets
+	 */
+	default long getLineStart() {
+		return -1;
+	}
+}
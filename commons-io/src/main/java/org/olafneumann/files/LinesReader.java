@@ -1,27 +1,39 @@
 package org.olafneumann.files;
 
 import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Random;
 import java.util.Spliterator;
 import java.util.Spliterators;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
+import javax.annotation.Nullable;
+
 /**
  * A reader that is able to collect multiple consecutive to one "item". It is
  * also able to group lines depending on user defined basis.
@@ -33,9 +45,68 @@ public class LinesReader implements AutoCloseable {
 	private static final int BUFFER_SIZE = 1 * 1024 * 1024; // 1 MB
 
 	/**
-	 * The underlying character-input stream.
+	 * Buffer size for reading files. Reading from a {@link FileChannel} does not
+	 * profit from larger buffers the way streams do, and a small buffer keeps many
+	 * concurrently open readers cheap.
 	 */
-	private BufferedReader reader;
+	private static final int FILE_BUFFER_SIZE = 64 * 1024;
+
+	private static final int CHECKPOINT_BUFFER_SIZE = 8 * 1024;
+
+	/**
+	 * The underlying character-input stream. Is <code>null</code> if lines are
+	 * read directly from a file.
+	 */
+	@Nullable
+	private final BufferedReader reader;
+
+	/**
+	 * The source of all lines read by this reader.
+	 */
+	private final LineSource source;
+
+	/**
+	 * The resource providing the lines.
+	 */
+	private final Closeable resource;
+
+	/**
+	 * The file read by this reader if it has been created for a file.
+	 */
+	@Nullable
+	private final Path path;
+
+	/**
+	 * The charset used for decoding, if known.
+	 */
+	@Nullable
+	private final Charset charset;
+
+	/**
+	 * Channel for random access to {@link #path}. Will be opened on first use if
+	 * it is not used to read the lines.
+	 */
+	@Nullable
+	private FileChannel channel = null;
+
+	/**
+	 * Creates checkpoints for the iterator created last.
+	 */
+	@Nullable
+	private Supplier<Checkpoint> checkpointSupplier = null;
+
+	/**
+	 * The checkpoint this reader has been opened at. The group information will be
+	 * used by the first iterator.
+	 */
+	@Nullable
+	private Checkpoint resumeCheckpoint;
+
+	/**
+	 * Temporary files of the groups iterators that spill to disk. They will be
+	 * deleted when this reader is closed.
+	 */
+	private final List<GroupSpill> spills = new ArrayList<>();
 
 	/**
 	 * Creates a new reader.
@@ -46,27 +117,89 @@ public class LinesReader implements AutoCloseable {
 	 */
 	public LinesReader(final BufferedReader reader) {
 		this.reader = Objects.requireNonNull(reader);
+		source = reader::readLine;
+		resource = reader;
+		path = null;
+		charset = null;
+		resumeCheckpoint = null;
 	}
 
 	/**
-	 * Creates a new reader.
+	 * Creates a new reader.<br>
+	 * If the charset encodes line terminators as single bytes (e.g. UTF-8,
+	 * ISO-8859-1) lines will be read directly from the stream's bytes without
+	 * using a {@link BufferedReader}. This reading does not use any locks, so
+	 * many readers can be used concurrently by virtual threads.
 	 *
 	 * @param in      {@link InputStream} object providing the underlying stream
 	 * @param charset the charset to use for decoding
 	 */
 	public LinesReader(final InputStream in, final Charset charset) {
-		this(new BufferedReader(new InputStreamReader(in, charset.newDecoder()), BUFFER_SIZE));
+		path = null;
+		this.charset = charset;
+		resumeCheckpoint = null;
+		resource = Objects.requireNonNull(in);
+		if (ByteLineReader.isSupported(charset)) {
+			reader = null;
+			source = new ByteLineReader(in, charset, BUFFER_SIZE);
+		} else {
+			reader = new BufferedReader(new InputStreamReader(in, charset.newDecoder()), BUFFER_SIZE);
+			source = reader::readLine;
+		}
 	}
 
 	/**
-	 * Creates a new reader.
+	 * Creates a new reader.<br>
+	 * If the charset encodes line terminators as single bytes (e.g. UTF-8,
+	 * ISO-8859-1) lines will be read directly from the file's bytes. This enables
+	 * the reader to know the position of each line, which is required for
+	 * {@link #checkpoint()}.
 	 *
 	 * @param path    the file to read
 	 * @param charset the charset to use for decoding
 	 * @throws IOException if an I/O error occurs opening the file
 	 */
 	public LinesReader(final Path path, final Charset charset) throws IOException {
-		this(Files.newBufferedReader(path, charset));
+		this.path = path;
+		this.charset = charset;
+		resumeCheckpoint = null;
+		if (ByteLineReader.isSupported(charset)) {
+			reader = null;
+			channel = FileChannel.open(path, StandardOpenOption.READ);
+			source = new ByteLineReader(channel, charset, 0, FILE_BUFFER_SIZE);
+			resource = channel;
+		} else {
+			reader = Files.newBufferedReader(path, charset);
+			source = reader::readLine;
+			resource = reader;
+		}
+	}
+
+	/**
+	 * Creates a new reader that continues reading a file at a checkpoint created
+	 * by {@link #checkpoint()}. The first iterator or stream created by this
+	 * reader continues exactly where the iterator the checkpoint has been created
+	 * for stopped. Groups that have not been finished at the checkpoint will be
+	 * restored by reading their compound lines again.<br>
+	 * The file must not have been modified and the reader must be used with the
+	 * same functions as before.
+	 *
+	 * @param path       the file to read
+	 * @param charset    the charset to use for decoding
+	 * @param checkpoint the checkpoint to continue at
+	 * @throws IOException              if an I/O error occurs opening the file
+	 * @throws IllegalArgumentException if the charset does not encode line
+	 *                                  terminators as single bytes
+	 */
+	public LinesReader(final Path path, final Charset charset, final Checkpoint checkpoint) throws IOException {
+		ByteLineReader.checkCharset(charset);
+		this.path = path;
+		this.charset = charset;
+		resumeCheckpoint = Objects.requireNonNull(checkpoint);
+		reader = null;
+		channel = FileChannel.open(path, StandardOpenOption.READ);
+		source = new ByteLineReader(channel, charset, checkpoint.getPosition(), FILE_BUFFER_SIZE);
+		resource = channel;
 	}
 
 	/**
@@ -78,14 +211,78 @@ public class LinesReader implements AutoCloseable {
 		this(file.toPath(), charset);
 	}
 
-	private BufferedReader getBufferedReader() {
-		return reader;
+	/**
+	 * Returns a channel for random access to the file read by this reader. The
+	 * channel will be closed together with this reader.
+	 *
+	 * @return the channel
+	 * @throws IOException           if an I/O error occurs opening the file
+	 * @throws IllegalStateException if this reader has not been created for a file
+	 */
+	synchronized FileChannel getFileChannel() throws IOException {
+		if (path == null) {
+			throw new IllegalStateException("This operation is only supported for LinesReaders reading a file.");
+		}
+		if (channel == null) {
+			channel = FileChannel.open(path, StandardOpenOption.READ);
+		}
+		return channel;
+	}
+
+	/**
+	 * @return the file read by this reader or <code>null</code> if this reader
+	 *         has not been created for a file
+	 */
+	@Nullable
+	Path getPath() {
+		return path;
+	}
+
+	/**
+	 * @return the charset used to decode the lines
+	 */
+	Charset getCharset() {
+		return charset;
+	}
+
+	/**
+	 * @return the number of bytes currently taken by the temporary files of the
+	 *         groups iterators of this reader that spill to disk
+	 */
+	long getSpillSize() {
+		long size = 0;
+		for (final GroupSpill spill : spills) {
+			size += spill.size();
+		}
+		return size;
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public void close() throws IOException {
-		getBufferedReader().close();
+		try {
+			resource.close();
+		} finally {
+			if (channel != null) {
+				channel.close();
+			}
+			for (final GroupSpill spill : spills) {
+				spill.close();
+			}
+			spills.clear();
+		}
+	}
+
+	private static <T> Stream<T> stream(final Iterator<T> iterator) {
+		return StreamSupport.stream(
+				Spliterators.spliterator(iterator, 100, Spliterator.ORDERED | Spliterator.NONNULL),
+				true);
+	}
+
+	private static void checkFraction(final double fraction) {
+		if (fraction < 0 || fraction > 1) {
+			throw new IllegalArgumentException("The fraction must be between 0 and 1, but is " + fraction);
+		}
 	}
 
 	/**
@@ -94,7 +291,47 @@ public class LinesReader implements AutoCloseable {
 	 * @return a {@link Stream} of lines from the underlying reader
 	 */
 	public Stream<String> lines() {
-		return getBufferedReader().lines();
+		if (reader != null) {
+			return reader.lines();
+		}
+		checkpointSupplier = null;
+		final Iterator<String> iterator = new AbstractIterator<String>() {
+			@Override
+			protected String readItem() throws IOException {
+				return source.readLine();
+			}
+		};
+		return StreamSupport
+				.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+	}
+
+	/**
+	 * Creates a checkpoint for the iterator created last by
+	 * {@link #compoundLinesIterator(Predicate)} or
+	 * {@link #groupsIterator(Predicate, Function, Function)}. The checkpoint
+	 * describes the state after the last item returned by {@link Iterator#next()}:
+	 * the position of the next compound line and the compound lines of all groups
+	 * that have not been returned yet. Use
+	 * {@link #LinesReader(Path, Charset, Checkpoint)} to continue reading at the
+	 * checkpoint.<br>
+	 * Streams read ahead in order to process items in parallel. So checkpoints
+	 * should be created while using iterators only.
+	 *
+	 * @return the checkpoint
+	 * @throws IllegalStateException if this reader does not read a file directly
+	 *                               or the iterator does not support checkpoints
+	 */
+	public Checkpoint checkpoint() {
+		if (path == null || !(source instanceof ByteLineReader)) {
+			throw new IllegalStateException("Checkpoints are only supported for LinesReaders reading a file.");
+		}
+		if (checkpointSupplier == null) {
+			if (resumeCheckpoint != null) {
+				return resumeCheckpoint;
+			}
+			return new Checkpoint(((ByteLineReader) source).getPosition(), Collections.emptyList(), null);
+		}
+		return checkpointSupplier.get();
 	}
 
 	/**
@@ -107,31 +344,198 @@ public class LinesReader implements AutoCloseable {
 	 *         by the denoted {@link Predicate}
 	 */
 	public Iterator<String> compoundLinesIterator(final Predicate<String> appendToPreviousLine) {
-		return new CompoundLinesIterator(getBufferedReader(), appendToPreviousLine);
+		final CompoundLinesIterator iterator = new CompoundLinesIterator(source, appendToPreviousLine, false);
+		final long startPosition = getCheckpointStartPosition();
+		checkpointSupplier = () -> new Checkpoint(iterator.getPosition(startPosition), Collections.emptyList(), null);
+		resumeCheckpoint = null;
+		return iterator;
+	}
+
+	private long getCheckpointStartPosition() {
+		return source instanceof ByteLineReader ? ((ByteLineReader) source).getPosition() : -1;
+	}
+
+	/**
+	 * Iterate over the compound lines of the underlying file including their
+	 * position in the file. The iteration is independent of the other iterators of
+	 * this reader.
+	 *
+	 * @param appendToPreviousLine whether of not to concatenate the tested line
+	 *                             with the previous one
+	 * @return an {@link Iterator} of compound records
+	 * @throws IOException           if an I/O error occurs opening the file
+	 * @throws IllegalStateException if this reader has not been created for a file
+	 */
+	Iterator<CompoundRecord> compoundRecordsIterator(final Predicate<String> appendToPreviousLine)
+			throws IOException {
+		return compoundRecordsIterator(appendToPreviousLine, 0);
+	}
+
+	/**
+	 * Iterate over the compound lines of the underlying file including their
+	 * position in the file starting at the given byte offset. If the offset is not
+	 * the start of a compound line reading starts at the next compound line.
+	 *
+	 * @param appendToPreviousLine whether of not to concatenate the tested line
+	 *                             with the previous one
+	 * @param position             the byte offset to start at
+	 * @return an {@link Iterator} of compound records
+	 * @throws IOException           if an I/O error occurs opening the file
+	 * @throws IllegalStateException if this reader has not been created for a file
+	 */
+	Iterator<CompoundRecord> compoundRecordsIterator(final Predicate<String> appendToPreviousLine,
+			final long position) throws IOException {
+		return compoundRecordsIterator(appendToPreviousLine, position, FILE_BUFFER_SIZE);
+	}
+
+	/**
+	 * Iterate over the compound lines of the underlying file including their
+	 * position in the file starting at the given byte offset. If the offset is not
+	 * the start of a compound line reading starts at the next compound line.
+	 *
+	 * @param appendToPreviousLine whether of not to concatenate the tested line
+	 *                             with the previous one
+	 * @param position             the byte offset to start at
+	 * @param bufferSize           the number of bytes to read at once. Use small
+	 *                             values if only few compound lines will be read.
+	 * @return an {@link Iterator} of compound records
+	 * @throws IOException           if an I/O error occurs opening the file
+	 * @throws IllegalStateException if this reader has not been created for a file
+	 */
+	Iterator<CompoundRecord> compoundRecordsIterator(final Predicate<String> appendToPreviousLine,
+			final long position,
+			final int bufferSize) throws IOException {
+		final FileChannel fileChannel = getFileChannel();
+		ByteLineReader.checkCharset(charset);
+		final CompoundLinesIterator lines
+				= openCompoundLines(fileChannel, charset, appendToPreviousLine, position, bufferSize);
+		return new AbstractIterator<CompoundRecord>() {
+			@Override
+			protected CompoundRecord readItem() {
+				if (!lines.hasNext()) {
+					return null;
+				}
+				final String text = lines.next();
+				return new CompoundRecord(text, lines.getRecordStart(), lines.getRecordEnd(),
+						lines.getRecordLineCount());
+			}
+		};
+	}
+
+	/**
+	 * Create an iterator of compound lines reading the given channel starting at
+	 * the first compound line that starts at or behind the given byte offset.
+	 */
+	private static CompoundLinesIterator openCompoundLines(final FileChannel channel,
+			final Charset charset,
+			final Predicate<String> appendToPreviousLine,
+			final long position,
+			final int bufferSize) throws IOException {
+		final ByteLineReader lineReader
+				= new ByteLineReader(channel, charset, Math.max(0, position - 1), bufferSize);
+		if (position > 0) {
+			// the line containing the byte before the position has already started
+			lineReader.skipLine();
+		}
+		return new CompoundLinesIterator(lineReader, appendToPreviousLine, position > 0);
 	}
 
 	private static class CompoundLinesIterator extends AbstractIterator<String> {
 		private String currentLine = null;
 
+		private long currentLineStart = -1;
+
+		private long recordStart = -1;
+
+		private int recordLineCount = 0;
+
 		private final List<String> lines = new ArrayList<>(1000);
 
-		private final BufferedReader reader;
+		private final LineSource reader;
 
 		private final Predicate<String> appendToPreviousLine;
 
-		private CompoundLinesIterator(final BufferedReader reader, final Predicate<String> appendToPreviousLine) {
+		/**
+		 * Whether to drop lines at the beginning of the input that would be appended
+		 * to a previous line. This is required if reading starts in the middle of a
+		 * compound line.
+		 */
+		private boolean skipLeadingContinuations;
+
+		private CompoundLinesIterator(final LineSource reader,
+				final Predicate<String> appendToPreviousLine,
+				final boolean skipLeadingContinuations) {
 			this.reader = reader;
 			this.appendToPreviousLine = appendToPreviousLine;
+			this.skipLeadingContinuations = skipLeadingContinuations;
+		}
+
+		/**
+		 * Returns the byte offset of the compound line read last. As
+		 * {@link #hasNext()} reads ahead this is the offset of the compound line that
+		 * will be returned by the next call to {@link #next()} if {@link #hasNext()}
+		 * has been called before.
+		 *
+		 * @return the byte offset or <code>-1</code> if unknown
+		 */
+		long getRecordStart() {
+			return recordStart;
+		}
+
+		/**
+		 * Returns the byte offset of the first compound line that has not been
+		 * returned by {@link #next()}.
+		 *
+		 * @param startPosition the position of the underlying source before the first
+		 *                      line has been read
+		 * @return the byte offset
+		 */
+		long getPosition(final long startPosition) {
+			if (isItemPending()) {
+				return recordStart;
+			}
+			if (recordStart < 0) {
+				// nothing read yet
+				return startPosition;
+			}
+			return currentLineStart;
+		}
+
+		/**
+		 * Returns the byte offset directly behind the compound line read last
+		 * including its line terminator. See {@link #getRecordStart()} for the
+		 * meaning of "read last".
+		 *
+		 * @return the byte offset or <code>-1</code> if unknown
+		 */
+		long getRecordEnd() {
+			return currentLineStart;
+		}
+
+		/**
+		 * Returns the number of lines the compound line read last consists of. See
+		 * {@link #getRecordStart()} for the meaning of "read last".
+		 *
+		 * @return the number of lines
+		 */
+		int getRecordLineCount() {
+			return recordLineCount;
 		}
 
 		@Override
 		protected String readItem() throws IOException {
 			if (currentLine != null) {
 				lines.add(currentLine);
+				recordStart = currentLineStart;
 				// currentLine will automatically be set to null below if the end of the stream
 				// is reached
 			} else {
-				final String readLine = reader.readLine();
+				String readLine = reader.readLine();
+				while (skipLeadingContinuations && readLine != null && appendToPreviousLine.test(readLine)) {
+					readLine = reader.readLine();
+				}
+				skipLeadingContinuations = false;
+				recordStart = reader.getLineStart();
 				if (readLine != null) {
 					lines.add(readLine);
 				} else {
@@ -144,10 +548,12 @@ public class LinesReader implements AutoCloseable {
 				lines.add(line);
 			}
 			currentLine = line;
+			currentLineStart = reader.getLineStart();
 
 			// return the correct lines
 			try {
 				final int lineCount = lines.size();
+				recordLineCount = lineCount;
 				if (lineCount == 1) {
 					return lines.get(0);
 				}
@@ -168,12 +574,379 @@ public class LinesReader implements AutoCloseable {
 	 *         the denoted {@link Predicate}
 	 */
 	public Stream<String> compoundLines(final Predicate<String> appendToPreviousLine) {
-		return StreamSupport.stream(//
-				// Spliterators.spliteratorUnknownSize(iter, Spliterator.ORDERED |
-				// Spliterator.NONNULL)//
-				Spliterators.spliterator(compoundLinesIterator(appendToPreviousLine), 100,
-						Spliterator.ORDERED | Spliterator.NONNULL)//
-				, true);
+		return stream(compoundLinesIterator(appendToPreviousLine));
+	}
+
+	/**
+	 * Copy all compound lines of the underlying file matching a filter to another
+	 * file. The compound lines are copied byte by byte including their original
+	 * line terminators. Consecutive matching compound lines are copied at once
+	 * using {@link FileChannel#transferTo(long, long, WritableByteChannel)}, so
+	 * the operating system may copy them without passing them through the Java
+	 * heap. Only the filter works on the decoded compound lines.<br>
+	 * This operation is only available for readers reading a file with a charset
+	 * that encodes line terminators as single bytes (e.g. UTF-8). It does not
+	 * affect the position of the other streams of this reader.
+	 *
+	 * @param out                  the file to write to. An existing file will be
+	 *                             replaced.
+	 * @param appendToPreviousLine whether of not to concatenate the tested line
+	 *                             with the previous one
+	 * @param filter               determine whether a compound line will be copied
+	 * @return the number of compound lines copied
+	 * @throws IOException           if an I/O error occurs
+	 * @throws IllegalStateException if this reader has not been created for a file
+	 */
+	public long copyMatching(final Path out,
+			final Predicate<String> appendToPreviousLine,
+			final Predicate<String> filter) throws IOException {
+		try (FileChannel outChannel = FileChannel.open(out, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			return copyMatching(outChannel, appendToPreviousLine, filter);
+		}
+	}
+
+	/**
+	 * Copy all compound lines of the underlying file matching a filter to a
+	 * channel. See {@link #copyMatching(Path, Predicate, Predicate)} for details.
+	 *
+	 * @param out                  the channel to write to. It will not be closed.
+	 * @param appendToPreviousLine whether of not to concatenate the tested line
+	 *                             with the previous one
+	 * @param filter               determine whether a compound line will be copied
+	 * @return the number of compound lines copied
+	 * @throws IOException           if an I/O error occurs
+	 * @throws IllegalStateException if this reader has not been created for a file
+	 */
+	public long copyMatching(final WritableByteChannel out,
+			final Predicate<String> appendToPreviousLine,
+			final Predicate<String> filter) throws IOException {
+		final FileChannel in = getFileChannel();
+		final Iterator<CompoundRecord> records = compoundRecordsIterator(appendToPreviousLine);
+		long count = 0;
+		long rangeStart = 0;
+		long rangeEnd = 0;
+		while (records.hasNext()) {
+			final CompoundRecord record = records.next();
+			if (filter.test(record.getText())) {
+				if (record.getStart() != rangeEnd) {
+					transfer(in, rangeStart, rangeEnd, out);
+					rangeStart = record.getStart();
+				}
+				rangeEnd = record.getEnd();
+				count += 1;
+			}
+		}
+		transfer(in, rangeStart, rangeEnd, out);
+		return count;
+	}
+
+	private static void transfer(final FileChannel in,
+			final long start,
+			final long end,
+			final WritableByteChannel out) throws IOException {
+		long position = start;
+		while (position < end) {
+			final long transferred = in.transferTo(position, end - position, out);
+			if (transferred == 0 && position >= in.size()) {
+				throw new EOFException("The file has been truncated while copying.");
+			}
+			position += transferred;
+		}
+	}
+
+	/**
+	 * Stream the compound lines of the underlying file whose timestamp is within
+	 * the given range. The file must be ordered by timestamp. The first compound
+	 * line of the range is found by a binary search over the byte offsets of the
+	 * file: every step reads a few bytes at the middle of the remaining part of
+	 * the file and skips to the next compound line. So only about
+	 * <code>log2(file size)</code> small reads plus the compound lines of the range
+	 * have to be read.<br>
+	 * Compound lines the timestamp extractor returns <code>null</code> for are
+	 * considered to belong to the preceding compound line.<br>
+	 * This operation is only available for readers reading a file with a charset
+	 * that encodes line terminators as single bytes (e.g. UTF-8). It does not
+	 * affect the position of the other streams of this reader.
+	 *
+	 * @param <T>                  the type of timestamps
+	 * @param appendToPreviousLine whether of not to concatenate the tested line
+	 *                             with the previous one
+	 * @param extractTimestamp     determine the timestamp of the tested compound
+	 *                             line or <code>null</code> if it does not have one
+	 * @param from                 the first timestamp of the range (inclusive)
+	 * @param to                   the end of the range (exclusive)
+	 * @return a {@link Stream} of the compound lines within the range
+	 * @throws IOException           if an I/O error occurs
+	 * @throws IllegalStateException if this reader has not been created for a file
+	 */
+	public <T extends Comparable<? super T>> Stream<String> compoundLinesBetween(
+			final Predicate<String> appendToPreviousLine,
+			final Function<String, T> extractTimestamp,
+			final T from,
+			final T to) throws IOException {
+		Objects.requireNonNull(from);
+		Objects.requireNonNull(to);
+		final long position = seek(appendToPreviousLine, extractTimestamp, from);
+		final Iterator<CompoundRecord> records = compoundRecordsIterator(appendToPreviousLine, position);
+		return stream(new AbstractIterator<String>() {
+			/** Whether a compound line with a timestamp has been found */
+			private boolean started = false;
+
+			private boolean finished = false;
+
+			@Override
+			protected String readItem() {
+				while (!finished && records.hasNext()) {
+					final String text = records.next().getText();
+					final T timestamp = extractTimestamp.apply(text);
+					if (timestamp != null && timestamp.compareTo(to) >= 0) {
+						finished = true;
+					} else if (started || timestamp != null) {
+						started = true;
+						return text;
+					}
+				}
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Finds the byte offset of the first compound line having a timestamp not
+	 * before the given one using a binary search.
+	 *
+	 * @return a byte offset; the first compound line starting at or behind it is
+	 *         the one searched for
+	 */
+	<T extends Comparable<? super T>> long seek(final Predicate<String> appendToPreviousLine,
+			final Function<String, T> extractTimestamp,
+			final T timestamp) throws IOException {
+		final FileChannel fileChannel = getFileChannel();
+		ByteLineReader.checkCharset(charset);
+		long low = 0;
+		long high = fileChannel.size();
+		while (low < high) {
+			final long middle = low + high >>> 1;
+			final CompoundLinesIterator records
+					= openCompoundLines(fileChannel, charset, appendToPreviousLine, middle, CHECKPOINT_BUFFER_SIZE);
+			T found = null;
+			while (found == null && records.hasNext()) {
+				found = extractTimestamp.apply(records.next());
+			}
+			if (found == null || found.compareTo(timestamp) >= 0) {
+				high = middle;
+			} else {
+				// the compound line found is before the range, so the range starts
+				// behind it
+				low = records.getRecordEnd();
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Stream a uniform random sample of the compound lines of the underlying
+	 * reader. Every compound line is contained in the sample with the given
+	 * probability. The same seed always results in the same sample.
+	 *
+	 * @param appendToPreviousLine whether of not to concatenate the tested line
+	 *                             with the previous one
+	 * @param fraction             the probability of a compound line to be part
+	 *                             of the sample (between 0 and 1)
+	 * @param seed                 the seed for the random number generator
+	 * @return a {@link Stream} of the sampled compound lines
+	 */
+	public Stream<String> sampledCompoundLines(final Predicate<String> appendToPreviousLine,
+			final double fraction,
+			final long seed) {
+		checkFraction(fraction);
+		return stream(new SamplingIterator<>(compoundLinesIterator(appendToPreviousLine), fraction, seed));
+	}
+
+	/**
+	 * Collect a random sample of a fixed size of the compound lines of the
+	 * underlying reader using reservoir sampling. Every compound line has the same
+	 * probability to be part of the sample. The same seed always results in the
+	 * same sample.
+	 *
+	 * @param appendToPreviousLine whether of not to concatenate the tested line
+	 *                             with the previous one
+	 * @param sampleSize           the maximum number of compound lines to return
+	 * @param seed                 the seed for the random number generator
+	 * @return a {@link List} containing the sample in the order of the input
+	 */
+	public List<String> reservoirSampledCompoundLines(final Predicate<String> appendToPreviousLine,
+			final int sampleSize,
+			final long seed) {
+		if (sampleSize < 0) {
+			throw new IllegalArgumentException("The sample size must not be negative, but is " + sampleSize);
+		}
+		final Random random = new Random(seed);
+		final String[] reservoir = new String[sampleSize];
+		final long[] indices = new long[sampleSize];
+		final Iterator<String> iterator = compoundLinesIterator(appendToPreviousLine);
+		long index = 0;
+		while (iterator.hasNext()) {
+			final String item = iterator.next();
+			final long slot = index < sampleSize ? index : (long) (random.nextDouble() * (index + 1));
+			if (slot < sampleSize) {
+				reservoir[(int) slot] = item;
+				indices[(int) slot] = index;
+			}
+			index += 1;
+		}
+
+		// restore input order
+		final int size = (int) Math.min(index, sampleSize);
+		final Integer[] order = new Integer[size];
+		for (int i = 0; i < size; i += 1) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> Long.compare(indices[a], indices[b]));
+		final List<String> sample = new ArrayList<>(size);
+		for (final Integer i : order) {
+			sample.add(reservoir[i]);
+		}
+		return sample;
+	}
+
+	/**
+	 * Stream a sample of the compound lines of the underlying file that is created
+	 * by reading only randomly chosen blocks of the file. The file is divided into
+	 * blocks of <code>blockSize</code> bytes and each block is chosen with the
+	 * given probability. Blocks that are not chosen will not be read at all, so
+	 * the I/O cost is about proportional to <code>fraction</code>.<br>
+	 * A compound line belongs to the block it starts in. A chosen block returns
+	 * all compound lines starting in it, even if they end in a following block.
+	 * Please note that this is a cluster sample: compound lines that are close to
+	 * each other in the file are likely to be sampled together.<br>
+	 * This operation is only available for readers reading a file with a charset
+	 * that encodes line terminators as single bytes (e.g. UTF-8). It does not
+	 * affect the position of the other streams of this reader.
+	 *
+	 * @param appendToPreviousLine whether of not to concatenate the tested line
+	 *                             with the previous one
+	 * @param fraction             the probability of a block to be read (between
+	 *                             0 and 1)
+	 * @param blockSize            the size of the blocks in bytes
+	 * @param seed                 the seed for the random number generator
+	 * @return a {@link Stream} of the compound lines of the chosen blocks
+	 * @throws IOException           if an I/O error occurs opening the file
+	 * @throws IllegalStateException if this reader has not been created for a file
+	 */
+	public Stream<String> blockSampledCompoundLines(final Predicate<String> appendToPreviousLine,
+			final double fraction,
+			final int blockSize,
+			final long seed) throws IOException {
+		checkFraction(fraction);
+		if (blockSize <= 0) {
+			throw new IllegalArgumentException("The block size must be positive, but is " + blockSize);
+		}
+		ByteLineReader.checkCharset(charset);
+		return stream(new BlockSamplingIterator(getFileChannel(), charset, appendToPreviousLine, fraction,
+				blockSize, seed));
+	}
+
+	private static class SamplingIterator<T> extends AbstractIterator<T> {
+		private final Iterator<T> iterator;
+
+		private final double fraction;
+
+		private final Random random;
+
+		private SamplingIterator(final Iterator<T> iterator, final double fraction, final long seed) {
+			this.iterator = iterator;
+			this.fraction = fraction;
+			random = new Random(seed);
+		}
+
+		@Override
+		protected T readItem() {
+			while (iterator.hasNext()) {
+				final T item = iterator.next();
+				if (random.nextDouble() < fraction) {
+					return item;
+				}
+			}
+			return null;
+		}
+	}
+
+	private static class BlockSamplingIterator extends AbstractIterator<String> {
+		private final FileChannel channel;
+
+		private final Charset charset;
+
+		private final Predicate<String> appendToPreviousLine;
+
+		private final double fraction;
+
+		private final int blockSize;
+
+		private final Random random;
+
+		private final long size;
+
+		private long blockIndex = -1;
+
+		private long blockEnd = 0;
+
+		private CompoundLinesIterator records = null;
+
+		private BlockSamplingIterator(final FileChannel channel,
+				final Charset charset,
+				final Predicate<String> appendToPreviousLine,
+				final double fraction,
+				final int blockSize,
+				final long seed) throws IOException {
+			this.channel = channel;
+			this.charset = charset;
+			this.appendToPreviousLine = appendToPreviousLine;
+			this.fraction = fraction;
+			this.blockSize = blockSize;
+			random = new Random(seed);
+			size = channel.size();
+		}
+
+		@Override
+		protected String readItem() throws IOException {
+			while (true) {
+				if (records != null) {
+					if (!records.hasNext()) {
+						// end of file
+						return null;
+					}
+					if (records.getRecordStart() < blockEnd) {
+						return records.next();
+					}
+				}
+				if (!nextBlock()) {
+					return null;
+				}
+			}
+		}
+
+		private boolean nextBlock() throws IOException {
+			long blockStart;
+			do {
+				blockIndex += 1;
+				blockStart = blockIndex * blockSize;
+				if (blockStart >= size) {
+					return false;
+				}
+			} while (random.nextDouble() >= fraction);
+			blockEnd = blockStart + blockSize;
+
+			// Continue reading if the previous block reached into the current one.
+			// Otherwise jump to the beginning of the block and find the next compound
+			// line.
+			if (records == null || records.getRecordStart() < blockStart) {
+				records = openCompoundLines(channel, charset, appendToPreviousLine, blockStart,
+						Math.min(blockSize, BUFFER_SIZE));
+			}
+			return true;
+		}
 	}
 
 	/**
@@ -191,55 +964,481 @@ public class LinesReader implements AutoCloseable {
 	public <G> Iterator<List<String>> groupsIterator(final Predicate<String> appendToPreviousLine,
 			final Function<String, G> determineGroup,
 			final Function<String, LineType> determineEntryType) {
-		final Iterator<String> linesIterator = compoundLinesIterator(appendToPreviousLine);
-		return new GroupedIterator(linesIterator, determineGroup, determineEntryType);
+		return createGroupsIterator(appendToPreviousLine, determineGroup, determineEntryType, null, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Iterate over the concatenated lines of the underlying reader grouped by a
+	 * user defined {@link Predicate}. If the groups that have not been finished yet
+	 * take more than the given amount of memory, their lines are moved to a
+	 * temporary file and read back when the group is returned. This allows
+	 * grouping inputs with more open groups than fit into memory.<br>
+	 * The memory taken by the lines and their byte offsets (needed for
+	 * {@link #checkpoint()}) is estimated; both are spilled together. The
+	 * temporary file is deleted when all groups have been returned or this reader
+	 * is closed. Its space is reused as soon as no spilled group is open anymore;
+	 * while spilled groups stay open, the file is compacted once most of it
+	 * belongs to groups that have been returned.<br>
+	 * A group that is spilled again and again is merged with its previously
+	 * spilled runs of no more lines, so it takes only a logarithmic number of
+	 * contiguous runs that are read back sequentially.
+	 *
+	 * @param <G>                  the type of group identifier
+	 * @param appendToPreviousLine whether of not to concatenate the tested line
+	 *                             with the previous one
+	 * @param determineGroup       determine the group id of the tested line
+	 * @param determineEntryType   determine the type of the tested line
+	 * @param memoryLimit          the estimated number of bytes the lines of open
+	 *                             groups may take before they are spilled to disk
+	 * @param spillDirectory       the directory to create the temporary file in
+	 * @return an {@link Iterator} of the concatenated lines of the underlying
+	 *         reader grouped by a user defined {@link Predicate}
+	 * @throws IOException if the temporary file cannot be created
+	 */
+	public <G> Iterator<List<String>> groupsIterator(final Predicate<String> appendToPreviousLine,
+			final Function<String, G> determineGroup,
+			final Function<String, LineType> determineEntryType,
+			final long memoryLimit,
+			final Path spillDirectory) throws IOException {
+		return createGroupsIterator(appendToPreviousLine, determineGroup, determineEntryType,
+				createSpill(memoryLimit, spillDirectory), memoryLimit);
+	}
+
+	private GroupSpill createSpill(final long memoryLimit, final Path spillDirectory) throws IOException {
+		if (memoryLimit < 0) {
+			throw new IllegalArgumentException("The memory limit must not be negative, but is " + memoryLimit);
+		}
+		final GroupSpill spill = new GroupSpill(spillDirectory);
+		spills.add(spill);
+		return spill;
+	}
+
+	private GroupedIterator createGroupsIterator(final Predicate<String> appendToPreviousLine,
+			final Function<String, ?> determineGroup,
+			final Function<String, LineType> determineEntryType,
+			@Nullable final GroupSpill spill,
+			final long memoryLimit) {
+		final Checkpoint checkpoint = resumeCheckpoint;
+		final long startPosition = getCheckpointStartPosition();
+		final CompoundLinesIterator linesIterator = new CompoundLinesIterator(source, appendToPreviousLine, false);
+		final GroupedIterator iterator = new GroupedIterator(linesIterator, determineGroup, determineEntryType,
+				groupId -> true, spill, memoryLimit);
+		if (checkpoint != null) {
+			restoreGroups(iterator, checkpoint, appendToPreviousLine);
+		}
+		checkpointSupplier = () -> iterator.checkpoint(linesIterator.getPosition(startPosition));
+		resumeCheckpoint = null;
+		return iterator;
+	}
+
+	private void restoreGroups(final GroupedIterator iterator,
+			final Checkpoint checkpoint,
+			final Predicate<String> appendToPreviousLine) {
+		for (final long[] offsets : checkpoint.getOpenGroups()) {
+			iterator.restoreOpenGroup(readGroup(offsets, appendToPreviousLine));
+		}
+		final long[] pendingGroup = checkpoint.getPendingGroup();
+		if (pendingGroup != null) {
+			iterator.restorePendingGroup(readGroup(pendingGroup, appendToPreviousLine));
+		}
+	}
+
+	private Group readGroup(final long[] offsets, final Predicate<String> appendToPreviousLine) {
+		final Group group = new Group();
+		for (final long offset : offsets) {
+			try {
+				final Iterator<CompoundRecord> records
+						= compoundRecordsIterator(appendToPreviousLine, offset, CHECKPOINT_BUFFER_SIZE);
+				group.add(records.next().getText(), offset);
+			} catch (final IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		return group;
+	}
+
+	/**
+	 * The lines of a group and the byte offset of each line if known. Lines and
+	 * offsets may have been moved to a {@link GroupSpill}; then {@link #lines} and
+	 * {@link #offsets} only contain the ones added afterwards.
+	 */
+	private static final class Group {
+		/** Estimated memory taken by a line in addition to its characters */
+		private static final int LINE_OVERHEAD = 64;
+
+		/** Index of the length in bytes in a segment of a {@link GroupSpill} */
+		private static final int SEGMENT_LENGTH = 1;
+
+		/** Index of the number of lines in a segment of a {@link GroupSpill} */
+		private static final int SEGMENT_LINE_COUNT = 2;
+
+		private List<String> lines = new LinkedList<>();
+
+		private long[] offsets = new long[4];
+
+		private int offsetCount = 0;
+
+		/** Estimated memory taken by {@link #lines} and {@link #offsets} */
+		private long memory = 0;
+
+		/**
+		 * Segments of the spill file containing the first lines of this group. Every
+		 * segment contains at least twice as many lines as the following one, so a
+		 * group has only a logarithmic number of segments.
+		 */
+		private final List<long[]> spilledSegments = new ArrayList<>(0);
+
+		private void add(final String line, final long offset) {
+			lines.add(line);
+			memory += LINE_OVERHEAD + 2L * line.length();
+			if (offset >= 0) {
+				if (offsetCount == offsets.length) {
+					offsets = Arrays.copyOf(offsets, offsetCount * 2);
+				}
+				offsets[offsetCount] = offset;
+				offsetCount += 1;
+				memory += Long.BYTES;
+			}
+		}
+
+		private long[] getOffsets(@Nullable final GroupSpill spill) throws IOException {
+			if (spilledSegments.isEmpty()) {
+				return Arrays.copyOf(offsets, offsetCount);
+			}
+			final List<long[]> parts = new ArrayList<>(spilledSegments.size() + 1);
+			int count = offsetCount;
+			for (final long[] segment : spilledSegments) {
+				final long[] part = spill.readOffsets(segment);
+				parts.add(part);
+				count += part.length;
+			}
+			parts.add(Arrays.copyOf(offsets, offsetCount));
+			return concat(parts, count);
+		}
+
+		private static long[] concat(final List<long[]> parts, final int count) {
+			final long[] result = new long[count];
+			int position = 0;
+			for (final long[] part : parts) {
+				System.arraycopy(part, 0, result, position, part.length);
+				position += part.length;
+			}
+			return result;
+		}
+
+		/**
+		 * @return the number of bytes of the spill file taken by this group
+		 */
+		private long getSpilledBytes() {
+			long bytes = 0;
+			for (final long[] segment : spilledSegments) {
+				bytes += segment[SEGMENT_LENGTH];
+			}
+			return bytes;
+		}
+
+		private boolean isEmpty() {
+			return lines.isEmpty() && spilledSegments.isEmpty();
+		}
+
+		/**
+		 * Moves the lines and offsets to the spill file. Trailing segments that
+		 * contain no more lines than the ones to write are read back and written
+		 * again as a single segment together with them, like the runs of a
+		 * log-structured merge. So reading the group back needs only a few reads and
+		 * the segment table does not grow with the number of spills.
+		 *
+		 * @return the change of the number of bytes of the spill file taken by this
+		 *         group. Merged segments are not taken anymore.
+		 */
+		private long spill(final GroupSpill spill) throws IOException {
+			int merged = spilledSegments.size();
+			long lineCount = lines.size();
+			while (merged > 0 && spilledSegments.get(merged - 1)[SEGMENT_LINE_COUNT] <= lineCount) {
+				merged -= 1;
+				lineCount += spilledSegments.get(merged)[SEGMENT_LINE_COUNT];
+			}
+			final List<long[]> mergedSegments = spilledSegments.subList(merged, spilledSegments.size());
+			long released = 0;
+			if (!mergedSegments.isEmpty()) {
+				final List<String> allLines = new LinkedList<>();
+				final long[] allOffsets = read(spill, mergedSegments, allLines);
+				allLines.addAll(lines);
+				lines = allLines;
+				offsets = allOffsets;
+				offsetCount = allOffsets.length;
+				for (final long[] segment : mergedSegments) {
+					released += segment[SEGMENT_LENGTH];
+				}
+				mergedSegments.clear();
+			}
+
+			final long[] segment = spill.write(lines, offsets, offsetCount);
+			spilledSegments.add(segment);
+			lines = new LinkedList<>();
+			offsets = new long[4];
+			offsetCount = 0;
+			memory = 0;
+			return segment[SEGMENT_LENGTH] - released;
+		}
+
+		/**
+		 * Reads the lines of the given segments and returns their offsets followed by
+		 * the offsets in {@link #offsets}.
+		 */
+		private long[] read(final GroupSpill spill, final List<long[]> segments, final List<String> target)
+				throws IOException {
+			final List<long[]> parts = new ArrayList<>(segments.size() + 1);
+			int count = offsetCount;
+			for (final long[] segment : segments) {
+				final long[] part = spill.read(segment, target);
+				parts.add(part);
+				count += part.length;
+			}
+			parts.add(Arrays.copyOf(offsets, offsetCount));
+			return concat(parts, count);
+		}
+
+		/**
+		 * Reads the spilled lines and offsets back into {@link #lines} and
+		 * {@link #offsets}.
+		 */
+		private void unspill(final GroupSpill spill) throws IOException {
+			final List<String> allLines = new LinkedList<>();
+			offsets = read(spill, spilledSegments, allLines);
+			offsetCount = offsets.length;
+			allLines.addAll(lines);
+			lines = allLines;
+			spilledSegments.clear();
+		}
 	}
 
 	private static class GroupedIterator extends AbstractIterator<List<String>> {
-		private Map<Object, List<String>> groups = new HashMap<>();
+		/**
+		 * Marker for groups whose lines will not be collected
+		 */
+		private static final Group DISCARDED = new Group();
+
+		/** Spill files smaller than this are never compacted */
+		private static final long MIN_COMPACT_SIZE = 1024 * 1024;
+
+		private Map<Object, Group> groups = new HashMap<>();
 
-		private final Iterator<String> linesIterator;
+		private final CompoundLinesIterator linesIterator;
 
 		private final Function<String, ?> determineGroup;
 
 		private final Function<String, LineType> determineEntryType;
 
-		private GroupedIterator(final Iterator<String> linesIterator,
+		private final Predicate<Object> acceptGroup;
+
+		/**
+		 * The group returned by {@link #readItem()} last
+		 */
+		@Nullable
+		private Group lastGroup = null;
+
+		/**
+		 * A finished group restored from a checkpoint that has to be returned first
+		 */
+		@Nullable
+		private Group pendingGroup = null;
+
+		/**
+		 * The file to move lines of open groups to if they take more than
+		 * {@link #memoryLimit}
+		 */
+		@Nullable
+		private final GroupSpill spill;
+
+		private final long memoryLimit;
+
+		/** Estimated memory taken by the lines of the open groups */
+		private long memory = 0;
+
+		/** Number of open groups having lines in {@link #spill} */
+		private int spilledGroups = 0;
+
+		/** Number of bytes of {@link #spill} taken by open groups */
+		private long spilledBytes = 0;
+
+		private GroupedIterator(final CompoundLinesIterator linesIterator,
+				final Function<String, ?> determineGroup,
+				final Function<String, LineType> determineEntryType,
+				final Predicate<Object> acceptGroup) {
+			this(linesIterator, determineGroup, determineEntryType, acceptGroup, null, Long.MAX_VALUE);
+		}
+
+		private GroupedIterator(final CompoundLinesIterator linesIterator,
 				final Function<String, ?> determineGroup,
-				final Function<String, LineType> determineEntryType) {
+				final Function<String, LineType> determineEntryType,
+				final Predicate<Object> acceptGroup,
+				@Nullable final GroupSpill spill,
+				final long memoryLimit) {
 			this.linesIterator = linesIterator;
 			this.determineGroup = determineGroup;
 			this.determineEntryType = determineEntryType;
+			this.acceptGroup = acceptGroup;
+			this.spill = spill;
+			this.memoryLimit = memoryLimit;
+		}
+
+		private void restoreOpenGroup(final Group group) {
+			groups.put(determineGroup.apply(group.lines.get(0)), group);
+			memory += group.memory;
+		}
+
+		private void restorePendingGroup(final Group group) {
+			pendingGroup = group;
+		}
+
+		/**
+		 * Creates a checkpoint describing the groups that have not been returned by
+		 * {@link #next()} yet.
+		 *
+		 * @param position the position of the next compound line
+		 * @return the checkpoint
+		 */
+		private Checkpoint checkpoint(final long position) {
+			final List<long[]> openGroups = new ArrayList<>(groups.size());
+			for (final Group group : groups.values()) {
+				if (group == DISCARDED) {
+					throw new IllegalStateException("Checkpoints are not supported for sampled groups.");
+				}
+				openGroups.add(getOffsets(group));
+			}
+			final Group pending = pendingGroup != null ? pendingGroup : isItemPending() ? lastGroup : null;
+			return new Checkpoint(position, openGroups, pending == null ? null : getOffsets(pending));
+		}
+
+		private long[] getOffsets(final Group group) {
+			try {
+				return group.getOffsets(spill);
+			} catch (final IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private List<String> returnGroup(final Group group) {
+			lastGroup = group;
+			return group.lines;
+		}
+
+		/**
+		 * Must be called for every group that has been removed from {@link #groups}.
+		 * Reads the lines of the group back if they have been spilled.
+		 */
+		private void release(final Group group) throws IOException {
+			memory -= group.memory;
+			if (!group.spilledSegments.isEmpty()) {
+				spilledBytes -= group.getSpilledBytes();
+				group.unspill(spill);
+				spilledGroups -= 1;
+				if (spilledGroups == 0) {
+					spill.clear();
+				} else {
+					compactIfNeeded();
+				}
+			}
+		}
+
+		/**
+		 * Removes the lines of groups that have been returned and segments that have
+		 * been merged from the spill file, so it does not grow with the input while
+		 * spilled groups stay open.
+		 */
+		private void compactIfNeeded() throws IOException {
+			if (spill.size() > MIN_COMPACT_SIZE && spill.size() > 2 * spilledBytes) {
+				final List<long[]> segments = new ArrayList<>();
+				for (final Group group : groups.values()) {
+					segments.addAll(group.spilledSegments);
+				}
+				spill.compact(segments);
+			}
+		}
+
+		/**
+		 * Moves the lines of all open groups to the spill file. The lines of every
+		 * group are written one after the other, so every segment can be read back
+		 * using a single read.
+		 */
+		private void spill() throws IOException {
+			for (final Group group : groups.values()) {
+				if (!group.lines.isEmpty()) {
+					if (group.spilledSegments.isEmpty()) {
+						spilledGroups += 1;
+					}
+					spilledBytes += group.spill(spill);
+				}
+			}
+			spill.flush();
+			memory = 0;
+			compactIfNeeded();
 		}
 
 		@Override
-		protected List<String> readItem() {
+		protected List<String> readItem() throws IOException {
+			final List<String> item = readGroup();
+			if (item == null && spill != null) {
+				spill.close();
+			}
+			return item;
+		}
+
+		private List<String> readGroup() throws IOException {
+			if (pendingGroup != null) {
+				final Group group = pendingGroup;
+				pendingGroup = null;
+				return returnGroup(group);
+			}
+
 			while (linesIterator.hasNext()) {
 				final String line = linesIterator.next();
 				final Object groupId = determineGroup.apply(line);
 				final LineType lineType = determineEntryType.apply(line);
 
-				List<String> groupOfCurrentLine = groups.computeIfAbsent(groupId, key -> new LinkedList<>());
+				Group groupOfCurrentLine = groups.get(groupId);
+				Group previousGroup = null;
+				if (groupOfCurrentLine == null
+						|| lineType == LineType.Start
+								&& (groupOfCurrentLine == DISCARDED || !groupOfCurrentLine.isEmpty())) {
+					previousGroup = groupOfCurrentLine;
+					groupOfCurrentLine = acceptGroup.test(groupId) ? new Group() : DISCARDED;
+					groups.put(groupId, groupOfCurrentLine);
+					if (previousGroup != null) {
+						release(previousGroup);
+					}
+				}
 
+				if (groupOfCurrentLine != DISCARDED) {
+					final long previousMemory = groupOfCurrentLine.memory;
+					groupOfCurrentLine.add(line, linesIterator.getRecordStart());
+					memory += groupOfCurrentLine.memory - previousMemory;
+				}
 				if (lineType == LineType.End) {
-					groupOfCurrentLine.add(line);
-					return groups.remove(groupId);
+					groups.remove(groupId);
+					release(groupOfCurrentLine);
+					if (groupOfCurrentLine != DISCARDED) {
+						return returnGroup(groupOfCurrentLine);
+					}
+				} else if (memory > memoryLimit && spill != null) {
+					spill();
 				}
-				if (lineType == LineType.Start && !groupOfCurrentLine.isEmpty()) {
-					groupOfCurrentLine = new LinkedList<>();
-					groupOfCurrentLine.add(line);
-					return groups.put(groupId, groupOfCurrentLine);
+				if (lineType != LineType.End && previousGroup != null && previousGroup != DISCARDED) {
+					return returnGroup(previousGroup);
 				}
-
-				groupOfCurrentLine.add(line);
 			}
 
-			return groups//
-					.keySet()
-					.stream()
-					.findFirst()
-					.map(groups::remove)
-					.orElse(null);
+			final Iterator<Group> remainingGroups = groups.values().iterator();
+			while (remainingGroups.hasNext()) {
+				final Group group = remainingGroups.next();
+				remainingGroups.remove();
+				release(group);
+				if (group != DISCARDED) {
+					return returnGroup(group);
+				}
+			}
+			return null;
 		}
 	}
 
@@ -258,9 +1457,112 @@ public class LinesReader implements AutoCloseable {
 	public <G> Stream<List<String>> groups(final Predicate<String> appendToPreviousLine,
 			final Function<String, G> determineGroup,
 			final Function<String, LineType> determineEntryType) {
-		return StreamSupport.stream(
-				Spliterators.spliterator(groupsIterator(appendToPreviousLine, determineGroup, determineEntryType), 100,
-						Spliterator.ORDERED | Spliterator.NONNULL),
-				true);
+		return stream(groupsIterator(appendToPreviousLine, determineGroup, determineEntryType));
+	}
+
+	/**
+	 * Stream the concatenated lines of the underlying reader grouped by a user
+	 * defined {@link Predicate}. Lines of open groups are spilled to a temporary
+	 * file if they take more than the given amount of memory, see
+	 * {@link #groupsIterator(Predicate, Function, Function, long, Path)}. The
+	 * temporary file is deleted when the stream is closed.
+	 *
+	 * @param <G>                  the type of group identifier
+	 * @param appendToPreviousLine whether of not to concatenate the tested line
+	 *                             with the previous one
+	 * @param determineGroup       determine the group id of the tested line
+	 * @param determineEntryType   determine the type of the tested line
+	 * @param memoryLimit          the estimated number of bytes the lines of open
+	 *                             groups may take before they are spilled to disk
+	 * @param spillDirectory       the directory to create the temporary file in
+	 * @return a {@link Stream} of the concatenated lines of the underlying reader
+	 *         grouped by a user defined {@link Predicate}
+	 * @throws IOException if the temporary file cannot be created
+	 */
+	public <G> Stream<List<String>> groups(final Predicate<String> appendToPreviousLine,
+			final Function<String, G> determineGroup,
+			final Function<String, LineType> determineEntryType,
+			final long memoryLimit,
+			final Path spillDirectory) throws IOException {
+		final GroupSpill spill = createSpill(memoryLimit, spillDirectory);
+		final Stream<List<String>> stream = stream(
+				createGroupsIterator(appendToPreviousLine, determineGroup, determineEntryType, spill, memoryLimit));
+		return stream.onClose(() -> {
+			try {
+				spill.close();
+			} catch (final IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
+	/**
+	 * Stream a sample of the groups of the underlying reader stratified by group
+	 * id. The decision whether a group will be part of the sample is made when the
+	 * group starts, so lines of groups that are not sampled will not be collected
+	 * at all.<br>
+	 * Every group id (the stratum) gets its own quota: of the first
+	 * <code>n</code> groups of a group id, <code>max(1, floor(fraction * n +
+	 * u))</code> are sampled, where <code>u</code> is a random offset between 0
+	 * and 1 chosen per group id. So every group id is represented by at least one
+	 * group and otherwise exactly proportionally to its number of groups. Within
+	 * a group id the groups are chosen systematically, every
+	 * <code>1 / fraction</code>th group starting at a random position. The same
+	 * seed always results in the same sample.
+	 *
+	 * @param <G>                  the type of group identifier
+	 * @param appendToPreviousLine whether of not to concatenate the tested line
+	 *                             with the previous one
+	 * @param determineGroup       determine the group id of the tested line
+	 * @param determineEntryType   determine the type of the tested line
+	 * @param fraction             the probability of a group to be part of the
+	 *                             sample (between 0 and 1)
+	 * @param seed                 the seed for the random number generator
+	 * @return a {@link Stream} of the sampled groups
+	 */
+	public <G> Stream<List<String>> sampledGroups(final Predicate<String> appendToPreviousLine,
+			final Function<String, G> determineGroup,
+			final Function<String, LineType> determineEntryType,
+			final double fraction,
+			final long seed) {
+		checkFraction(fraction);
+		checkpointSupplier = null;
+		resumeCheckpoint = null;
+		return stream(new GroupedIterator(new CompoundLinesIterator(source, appendToPreviousLine, false),
+				determineGroup, determineEntryType, new StratifiedSampler(fraction, seed)));
+	}
+
+	/**
+	 * Decides whether a group is part of a sample using a separate quota per group
+	 * id. See {@link LinesReader#sampledGroups(Predicate, Function, Function, double, long)}.
+	 */
+	private static final class StratifiedSampler implements Predicate<Object> {
+		private final double fraction;
+
+		private final Random random;
+
+		/** Per group id: the random offset, the number of groups and of sampled groups */
+		private final Map<Object, double[]> strata = new HashMap<>();
+
+		private StratifiedSampler(final double fraction, final long seed) {
+			this.fraction = fraction;
+			random = new Random(seed);
+		}
+
+		@Override
+		public boolean test(final Object groupId) {
+			double[] stratum = strata.get(groupId);
+			if (stratum == null) {
+				stratum = new double[] { random.nextDouble(), 0, 0 };
+				strata.put(groupId, stratum);
+			}
+			stratum[1] += 1;
+			final double quota = Math.max(1, Math.floor(fraction * stratum[1] + stratum[0]));
+			if (stratum[2] < quota) {
+				stratum[2] += 1;
+				return true;
+			}
+			return false;
+		}
 	}
 }
@@ -0,0 +1,441 @@
+package org.olafneumann.files;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.Nullable;
+
+/**
+ * A writer for compound lines and groups, the counterpart of
+ * {@link LinesReader}. Every record is written followed by a line separator;
+ * the lines of a group are written one after the other.<br>
+ * Records are encoded on the calling thread into a small pool of direct
+ * buffers. Full buffers are written by a background thread, which writes all
+ * buffers available at once, so the calling thread does not wait for the disk
+ * unless all buffers are full. Optionally the output is compressed using gzip
+ * and forced to the storage device after every batch or when the writer is
+ * closed.<br>
+ * All methods may be called from any thread. Errors of the background thread
+ * are reported by the next call. The writer must be closed in order to write
+ * all records.
+ *
+ * @author noxone
+ *
+ */
+public class LinesWriter implements AutoCloseable {
+	private static final int BUFFER_SIZE = 1 * 1024 * 1024; // 1 MB
+
+	private static final int BUFFER_COUNT = 4;
+
+	/** Time to wait for a free buffer before checking for errors again */
+	private static final long POLL_MILLIS = 100;
+
+	/** Marks the end of output for the background thread */
+	private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+	/**
+	 * When to force written data to the storage device.
+	 */
+	public enum SyncPolicy {
+		/** Leave it to the operating system */
+		NEVER,
+		/** When the writer is closed */
+		ON_CLOSE,
+		/** After every batch of buffers written by the background thread */
+		EVERY_BATCH;
+	}
+
+	private final CharsetEncoder encoder;
+
+	private final String lineSeparator = System.lineSeparator();
+
+	private final WritableByteChannel channel;
+
+	/** The file if writing to a file. Used for forcing data to the device. */
+	@Nullable
+	private final FileChannel fileChannel;
+
+	@Nullable
+	private final GZIPOutputStream gzip;
+
+	private final SyncPolicy syncPolicy;
+
+	private final BlockingQueue<ByteBuffer> freeBuffers;
+
+	private final BlockingQueue<ByteBuffer> fullBuffers = new LinkedBlockingQueue<>();
+
+	/** The buffer records are encoded into. Guarded by <code>this</code>. */
+	private ByteBuffer current;
+
+	/**
+	 * A high surrogate at the end of the text encoded last, waiting for its low
+	 * surrogate; <code>0</code> if there is none. Guarded by <code>this</code>.
+	 */
+	private char pendingSurrogate = 0;
+
+	/** Guards {@link #submitted} and {@link #written} */
+	private final Object progress = new Object();
+
+	private long submitted = 0;
+
+	private long written = 0;
+
+	@Nullable
+	private volatile IOException failure = null;
+
+	private boolean closed = false;
+
+	private final Thread thread;
+
+	/**
+	 * Creates a writer replacing the content of the given file.
+	 *
+	 * @param path    the file to write
+	 * @param charset the charset to use for encoding
+	 * @throws IOException if the file cannot be opened
+	 */
+	public LinesWriter(final Path path, final Charset charset) throws IOException {
+		this(path, charset, false, SyncPolicy.NEVER);
+	}
+
+	/**
+	 * Creates a writer replacing the content of the given file.
+	 *
+	 * @param path       the file to write
+	 * @param charset    the charset to use for encoding
+	 * @param gzip       whether to compress the output using gzip
+	 * @param syncPolicy when to force the written data to the storage device
+	 * @throws IOException if the file cannot be opened
+	 */
+	public LinesWriter(final Path path, final Charset charset, final boolean gzip, final SyncPolicy syncPolicy)
+			throws IOException {
+		this(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE), charset, gzip, syncPolicy, BUFFER_SIZE);
+	}
+
+	/**
+	 * Creates a writer for an {@link OutputStream}. The stream will be closed
+	 * together with this writer.
+	 *
+	 * @param out     the stream to write to
+	 * @param charset the charset to use for encoding
+	 */
+	public LinesWriter(final OutputStream out, final Charset charset) {
+		this(Channels.newChannel(out), null, null, charset, SyncPolicy.NEVER, BUFFER_SIZE);
+	}
+
+	/**
+	 * Creates a writer for a file channel using buffers of the given size.
+	 */
+	LinesWriter(final FileChannel fileChannel,
+			final Charset charset,
+			final boolean gzip,
+			final SyncPolicy syncPolicy,
+			final int bufferSize) throws IOException {
+		this(fileChannel, fileChannel, gzip ? createGzip(fileChannel) : null, charset, syncPolicy, bufferSize);
+	}
+
+	private LinesWriter(final WritableByteChannel channel,
+			@Nullable final FileChannel fileChannel,
+			@Nullable final GZIPOutputStream gzip,
+			final Charset charset,
+			final SyncPolicy syncPolicy,
+			final int bufferSize) {
+		this.channel = gzip == null ? channel : Channels.newChannel(gzip);
+		this.fileChannel = fileChannel;
+		this.gzip = gzip;
+		this.syncPolicy = Objects.requireNonNull(syncPolicy);
+		encoder = charset.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		freeBuffers = new ArrayBlockingQueue<>(BUFFER_COUNT);
+		for (int i = 1; i < BUFFER_COUNT; i += 1) {
+			freeBuffers.add(ByteBuffer.allocateDirect(bufferSize));
+		}
+		current = ByteBuffer.allocateDirect(bufferSize);
+		thread = new Thread(this::run, "LinesWriter");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private static GZIPOutputStream createGzip(final FileChannel fileChannel) throws IOException {
+		try {
+			return new GZIPOutputStream(Channels.newOutputStream(fileChannel), 64 * 1024, true);
+		} catch (final IOException e) {
+			fileChannel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Writes a record followed by a line separator.
+	 *
+	 * @param record the record to write, e.g. a compound line
+	 * @throws IOException           if writing a previous record failed
+	 * @throws IllegalStateException if the writer has been closed
+	 */
+	public synchronized void write(final CharSequence record) throws IOException {
+		checkOpen();
+		encode(record);
+		encode(lineSeparator);
+	}
+
+	/**
+	 * Writes all lines of a group, each followed by a line separator.
+	 *
+	 * @param group the lines of the group, e.g. a group returned by
+	 *              {@link LinesReader}
+	 * @throws IOException           if writing a previous record failed
+	 * @throws IllegalStateException if the writer has been closed
+	 */
+	public synchronized void write(final List<? extends CharSequence> group) throws IOException {
+		checkOpen();
+		for (final CharSequence line : group) {
+			encode(line);
+			encode(lineSeparator);
+		}
+	}
+
+	private void checkOpen() throws IOException {
+		if (closed) {
+			throw new IllegalStateException("The writer has been closed.");
+		}
+		checkFailure();
+	}
+
+	private void checkFailure() throws IOException {
+		final IOException exception = failure;
+		if (exception != null) {
+			throw new IOException("Writing failed.", exception);
+		}
+	}
+
+	/**
+	 * Encodes text into the current buffer. The encoder is reset only once for
+	 * the whole output, so stateful charsets like UTF-16 write their byte order
+	 * mark only once.
+	 */
+	private void encode(final CharSequence text) throws IOException {
+		CharSequence input = text;
+		if (pendingSurrogate != 0) {
+			input = new StringBuilder(text.length() + 1).append(pendingSurrogate).append(text);
+			pendingSurrogate = 0;
+		}
+		final CharBuffer chars = CharBuffer.wrap(input);
+		CoderResult result;
+		while ((result = encoder.encode(chars, current, false)).isOverflow()) {
+			submit();
+		}
+		if (result.isError()) {
+			result.throwException();
+		}
+		if (chars.hasRemaining()) {
+			pendingSurrogate = chars.get();
+		}
+	}
+
+	/**
+	 * Ends the encoded output, e.g. returns to the initial shift state.
+	 */
+	private void finishEncoding() throws IOException {
+		final CharBuffer chars
+				= pendingSurrogate == 0 ? CharBuffer.allocate(0) : CharBuffer.wrap(new char[] { pendingSurrogate });
+		CoderResult result;
+		while ((result = encoder.encode(chars, current, true)).isOverflow()) {
+			submit();
+		}
+		if (result.isError()) {
+			result.throwException();
+		}
+		while (encoder.flush(current).isOverflow()) {
+			submit();
+		}
+	}
+
+	/**
+	 * Passes the current buffer to the background thread and takes a free one.
+	 */
+	private void submit() throws IOException {
+		current.flip();
+		synchronized (progress) {
+			submitted += 1;
+		}
+		fullBuffers.add(current);
+		current = takeFreeBuffer();
+	}
+
+	private ByteBuffer takeFreeBuffer() throws IOException {
+		try {
+			ByteBuffer buffer;
+			while ((buffer = freeBuffers.poll(POLL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+				checkFailure();
+			}
+			return buffer;
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a free buffer.");
+		}
+	}
+
+	/**
+	 * Writes all records written so far and waits until they have been passed to
+	 * the operating system.
+	 *
+	 * @throws IOException           if writing failed
+	 * @throws IllegalStateException if the writer has been closed
+	 */
+	public synchronized void flush() throws IOException {
+		checkOpen();
+		if (current.position() > 0) {
+			submit();
+		}
+		awaitWritten();
+		checkFailure();
+		if (gzip != null) {
+			// the background thread is idle until the next buffer is submitted
+			gzip.flush();
+		}
+	}
+
+	private void awaitWritten() throws InterruptedIOException {
+		synchronized (progress) {
+			while (written < submitted && failure == null) {
+				try {
+					progress.wait();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted while waiting for the output.");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes all remaining records and closes the output.
+	 *
+	 * @throws IOException if writing failed
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			try {
+				if (failure == null) {
+					finishEncoding();
+				}
+				if (current.position() > 0 && failure == null) {
+					submit();
+				}
+			} finally {
+				// stop the background thread in any case
+				fullBuffers.add(END);
+			}
+			thread.join();
+			checkFailure();
+			if (gzip != null) {
+				gzip.finish();
+			}
+			if (syncPolicy != SyncPolicy.NEVER && fileChannel != null) {
+				fileChannel.force(true);
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while closing the writer.");
+		} finally {
+			if (gzip != null) {
+				gzip.close();
+			}
+			channel.close();
+		}
+	}
+
+	/**
+	 * The loop of the background thread. Writes batches of buffers until
+	 * {@link #END} has been received.
+	 */
+	private void run() {
+		final List<ByteBuffer> batch = new ArrayList<>(BUFFER_COUNT + 1);
+		boolean end = false;
+		while (!end) {
+			try {
+				batch.add(fullBuffers.take());
+			} catch (@SuppressWarnings("unused") final InterruptedException ignore) {
+				continue;
+			}
+			fullBuffers.drainTo(batch);
+			if (batch.get(batch.size() - 1) == END) {
+				batch.remove(batch.size() - 1);
+				end = true;
+			}
+
+			if (failure == null) {
+				try {
+					writeBatch(batch);
+				} catch (final IOException | RuntimeException e) {
+					failure = e instanceof IOException ? (IOException) e : new IOException(e);
+				}
+			}
+
+			for (final ByteBuffer buffer : batch) {
+				buffer.clear();
+				freeBuffers.add(buffer);
+			}
+			synchronized (progress) {
+				written += batch.size();
+				progress.notifyAll();
+			}
+			batch.clear();
+		}
+	}
+
+	private void writeBatch(final List<ByteBuffer> batch) throws IOException {
+		if (batch.isEmpty()) {
+			return;
+		}
+		if (channel instanceof GatheringByteChannel) {
+			final ByteBuffer[] buffers = batch.toArray(new ByteBuffer[0]);
+			final GatheringByteChannel gathering = (GatheringByteChannel) channel;
+			for (final ByteBuffer buffer : buffers) {
+				while (buffer.hasRemaining()) {
+					gathering.write(buffers);
+				}
+			}
+		} else {
+			for (final ByteBuffer buffer : batch) {
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			}
+		}
+		if (syncPolicy == SyncPolicy.EVERY_BATCH && fileChannel != null) {
+			if (gzip != null) {
+				gzip.flush();
+			}
+			fileChannel.force(false);
+		}
+	}
+}
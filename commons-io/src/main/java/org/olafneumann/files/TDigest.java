@@ -0,0 +1,260 @@
+package org.olafneumann.files;
+
+import java.util.Arrays;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collector;
+
+/**
+ * Estimates quantiles of a distribution in fixed memory, e.g. the median or the
+ * 99th percentile of the sizes of the groups of a huge file. Values are
+ * summarized by a limited number of centroids; centroids near the extreme
+ * quantiles are smaller, so the tails are estimated more accurately than the
+ * middle. The number of centroids is about the compression (e.g. 100).<br>
+ * Digests of different threads, files or processes can be combined using
+ * {@link #merge(TDigest)}. Use {@link #collector(double, ToDoubleFunction)} to
+ * fill a digest from a (parallel) stream. Instances are not thread-safe.
+ *
+ * @author noxone
+ *
+ */
+public final class TDigest {
+	private final double compression;
+
+	/** Means of the centroids in ascending order */
+	private double[] means = new double[0];
+
+	private double[] weights = new double[0];
+
+	/** Values and weights that have not been merged into the centroids yet */
+	private final double[] bufferMeans;
+
+	private final double[] bufferWeights;
+
+	private int bufferSize = 0;
+
+	private double totalWeight = 0;
+
+	private double min = Double.POSITIVE_INFINITY;
+
+	private double max = Double.NEGATIVE_INFINITY;
+
+	/**
+	 * Creates an empty digest.
+	 *
+	 * @param compression the accuracy of the digest; higher values result in
+	 *                    more centroids (e.g. 100)
+	 */
+	public TDigest(final double compression) {
+		if (!(compression >= 10)) {
+			throw new IllegalArgumentException("The compression must be at least 10, but is " + compression);
+		}
+		this.compression = compression;
+		final int bufferCapacity = (int) (5 * compression);
+		bufferMeans = new double[bufferCapacity];
+		bufferWeights = new double[bufferCapacity];
+	}
+
+	/**
+	 * Creates a collector estimating the distribution of a value of the stream's
+	 * elements, e.g. <code>collector(100, List::size)</code> for the sizes of
+	 * groups.
+	 *
+	 * @param <T>         the type of the stream's elements
+	 * @param compression the accuracy of the digest (e.g. 100)
+	 * @param value       determine the value of an element
+	 * @return the collector
+	 */
+	public static <T> Collector<T, TDigest, TDigest> collector(final double compression,
+			final ToDoubleFunction<? super T> value) {
+		return Collector.of(() -> new TDigest(compression),
+				(digest, element) -> digest.add(value.applyAsDouble(element)),
+				(left, right) -> {
+					left.merge(right);
+					return left;
+				}, Collector.Characteristics.UNORDERED, Collector.Characteristics.IDENTITY_FINISH);
+	}
+
+	/**
+	 * Adds a value.
+	 *
+	 * @param value the value
+	 */
+	public void add(final double value) {
+		add(value, 1);
+	}
+
+	private void add(final double mean, final double weight) {
+		if (Double.isNaN(mean)) {
+			throw new IllegalArgumentException("Cannot add NaN.");
+		}
+		if (bufferSize == bufferMeans.length) {
+			compress();
+		}
+		bufferMeans[bufferSize] = mean;
+		bufferWeights[bufferSize] = weight;
+		bufferSize += 1;
+		totalWeight += weight;
+		min = Math.min(min, mean);
+		max = Math.max(max, mean);
+	}
+
+	/**
+	 * Adds all values of another digest to this one.
+	 *
+	 * @param other the digest to add
+	 */
+	public void merge(final TDigest other) {
+		if (other == this) {
+			throw new IllegalArgumentException("A digest cannot be merged with itself.");
+		}
+		other.compress();
+		for (int i = 0; i < other.means.length; i += 1) {
+			add(other.means[i], other.weights[i]);
+		}
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+	}
+
+	/**
+	 * Merges the buffered values into the centroids.
+	 */
+	private void compress() {
+		if (bufferSize == 0) {
+			return;
+		}
+		final int count = means.length + bufferSize;
+		final double[] allMeans = Arrays.copyOf(means, count);
+		final double[] allWeights = Arrays.copyOf(weights, count);
+		System.arraycopy(bufferMeans, 0, allMeans, means.length, bufferSize);
+		System.arraycopy(bufferWeights, 0, allWeights, weights.length, bufferSize);
+		bufferSize = 0;
+		sort(allMeans, allWeights);
+
+		final double[] newMeans = new double[count];
+		final double[] newWeights = new double[count];
+		int size = 0;
+		double weightSoFar = 0;
+		double currentMean = allMeans[0];
+		double currentWeight = allWeights[0];
+		double weightLimit = totalWeight * maxQuantile(0);
+		for (int i = 1; i < count; i += 1) {
+			if (weightSoFar + currentWeight + allWeights[i] <= weightLimit) {
+				currentWeight += allWeights[i];
+				currentMean += (allMeans[i] - currentMean) * allWeights[i] / currentWeight;
+			} else {
+				newMeans[size] = currentMean;
+				newWeights[size] = currentWeight;
+				size += 1;
+				weightSoFar += currentWeight;
+				weightLimit = totalWeight * maxQuantile(weightSoFar / totalWeight);
+				currentMean = allMeans[i];
+				currentWeight = allWeights[i];
+			}
+		}
+		newMeans[size] = currentMean;
+		newWeights[size] = currentWeight;
+		size += 1;
+		means = Arrays.copyOf(newMeans, size);
+		weights = Arrays.copyOf(newWeights, size);
+	}
+
+	/**
+	 * Returns the largest quantile a centroid starting at the given quantile may
+	 * reach. Uses the scale function <code>k(q) = compression / (2 pi) * asin(2q
+	 * - 1)</code>: a centroid may span one unit of <code>k</code>.
+	 */
+	private double maxQuantile(final double quantile) {
+		final double k = compression / (2 * Math.PI) * Math.asin(2 * quantile - 1) + 1;
+		if (k >= compression / 4) {
+			return 1;
+		}
+		return (Math.sin(k * 2 * Math.PI / compression) + 1) / 2;
+	}
+
+	/**
+	 * Sorts both arrays by the values of the first one.
+	 */
+	private static void sort(final double[] keys, final double[] values) {
+		final Integer[] order = new Integer[keys.length];
+		for (int i = 0; i < order.length; i += 1) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> Double.compare(keys[a], keys[b]));
+		final double[] sortedKeys = new double[keys.length];
+		final double[] sortedValues = new double[keys.length];
+		for (int i = 0; i < order.length; i += 1) {
+			sortedKeys[i] = keys[order[i]];
+			sortedValues[i] = values[order[i]];
+		}
+		System.arraycopy(sortedKeys, 0, keys, 0, keys.length);
+		System.arraycopy(sortedValues, 0, values, 0, values.length);
+	}
+
+	/**
+	 * Estimates a quantile.
+	 *
+	 * @param quantile the quantile (between 0 and 1), e.g. 0.5 for the median
+	 * @return the estimated value at the quantile or {@link Double#NaN} if the
+	 *         digest is empty
+	 */
+	public double quantile(final double quantile) {
+		if (quantile < 0 || quantile > 1) {
+			throw new IllegalArgumentException("The quantile must be between 0 and 1, but is " + quantile);
+		}
+		compress();
+		if (means.length == 0) {
+			return Double.NaN;
+		}
+		if (means.length == 1) {
+			return means[0];
+		}
+
+		// every centroid is assumed to be centered at its cumulative weight
+		final double index = quantile * totalWeight;
+		if (index < weights[0] / 2) {
+			return min + (means[0] - min) * index / (weights[0] / 2);
+		}
+		double weightSoFar = weights[0] / 2;
+		for (int i = 0; i < means.length - 1; i += 1) {
+			final double step = (weights[i] + weights[i + 1]) / 2;
+			if (index < weightSoFar + step) {
+				return means[i] + (means[i + 1] - means[i]) * (index - weightSoFar) / step;
+			}
+			weightSoFar += step;
+		}
+		final double last = weights[means.length - 1] / 2;
+		return means[means.length - 1]
+				+ (max - means[means.length - 1]) * Math.min(1, (index - weightSoFar) / last);
+	}
+
+	/**
+	 * @return the number of values added
+	 */
+	public long getCount() {
+		return Math.round(totalWeight);
+	}
+
+	/**
+	 * @return the smallest value added or {@link Double#POSITIVE_INFINITY} if the
+	 *         digest is empty
+	 */
+	public double getMin() {
+		return min;
+	}
+
+	/**
+	 * @return the largest value added or {@link Double#NEGATIVE_INFINITY} if the
+	 *         digest is empty
+	 */
+	public double getMax() {
+		return max;
+	}
+
+	/**
+	 * @return the current number of centroids
+	 */
+	public int getCentroidCount() {
+		compress();
+		return means.length;
+	}
+}
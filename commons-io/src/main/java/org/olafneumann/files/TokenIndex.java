@@ -0,0 +1,585 @@
+package org.olafneumann.files;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.annotation.Nullable;
+
+/**
+ * An inverted index of the tokens contained in the compound lines of a file.
+ * The index maps each token to the byte offsets of the compound lines
+ * containing it, so a query only has to read the matching compound lines.<br>
+ * The offsets are stored delta and variable length encoded. Tokens that are
+ * contained in too many compound lines do not get such a list because it would
+ * not help much. Queries for them use a Bloom filter that is kept for every
+ * block of compound lines in order to skip blocks not containing the token.
+ * <br>
+ * Tokens are created by {@link #tokenize(String)}. Queries must use the same
+ * file and the same predicate for compound lines as used for building the
+ * index.
+ *
+ * @author noxone
+ *
+ */
+public final class TokenIndex {
+	private static final int MAGIC = 0x4C525449; // "LRTI"
+
+	private static final int RECORDS_PER_BLOCK = 1024;
+
+	private static final int BLOOM_BITS_PER_TOKEN = 10;
+
+	private static final int BLOOM_HASHES = 7;
+
+	private static final int SEEK_BUFFER_SIZE = 8 * 1024;
+
+	private static final int BLOCK_BUFFER_SIZE = 64 * 1024;
+
+	private final long recordCount;
+
+	/** Byte offset of the end of the last compound line */
+	private final long endOffset;
+
+	/** Delta and variable length encoded offsets for each token */
+	private final Map<String, byte[]> postings;
+
+	/** Number of offsets in each entry of {@link #postings} */
+	private final Map<String, Integer> postingsSizes;
+
+	/** Tokens that are too frequent to have postings */
+	private final Set<String> frequentTokens;
+
+	private final long[] blockStarts;
+
+	private final long[][] blockFilters;
+
+	private TokenIndex(final long recordCount,
+			final long endOffset,
+			final Map<String, byte[]> postings,
+			final Map<String, Integer> postingsSizes,
+			final Set<String> frequentTokens,
+			final long[] blockStarts,
+			final long[][] blockFilters) {
+		this.recordCount = recordCount;
+		this.endOffset = endOffset;
+		this.postings = postings;
+		this.postingsSizes = postingsSizes;
+		this.frequentTokens = frequentTokens;
+		this.blockStarts = blockStarts;
+		this.blockFilters = blockFilters;
+	}
+
+	/**
+	 * Splits a text into tokens. A token is a sequence of letters, digits and the
+	 * characters <code>_ $ - .</code>, so class names like
+	 * <code>java.lang.IllegalStateException</code> or request ids are tokens. For
+	 * dotted tokens each part is a token as well.
+	 *
+	 * @param text the text to split
+	 * @return the distinct tokens of the text
+	 */
+	public static Set<String> tokenize(final String text) {
+		final Set<String> tokens = new HashSet<>();
+		int start = -1;
+		for (int i = 0; i < text.length(); i += 1) {
+			if (isTokenCharacter(text.charAt(i))) {
+				if (start < 0) {
+					start = i;
+				}
+			} else if (start >= 0) {
+				addToken(tokens, text, start, i);
+				start = -1;
+			}
+		}
+		if (start >= 0) {
+			addToken(tokens, text, start, text.length());
+		}
+		return tokens;
+	}
+
+	private static boolean isTokenCharacter(final char c) {
+		return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '-' || c == '.';
+	}
+
+	private static void addToken(final Set<String> tokens, final String text, final int from, final int to) {
+		int start = from;
+		int end = to;
+		while (start < end && (text.charAt(start) == '.' || text.charAt(start) == '-')) {
+			start += 1;
+		}
+		while (end > start && (text.charAt(end - 1) == '.' || text.charAt(end - 1) == '-')) {
+			end -= 1;
+		}
+		if (start < end) {
+			final String token = text.substring(start, end);
+			tokens.add(token);
+			if (token.indexOf('.') >= 0) {
+				for (final String part : token.split("\\.")) {
+					if (!part.isEmpty()) {
+						tokens.add(part);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Builds an index for all compound lines of the file read by the given reader.
+	 * Tokens contained in more than 5 % of all compound lines will be queried using
+	 * the Bloom filters only.
+	 *
+	 * @param reader               the reader to index. It must have been created
+	 *                             for a file. Indexing does not affect the other
+	 *                             streams of the reader.
+	 * @param appendToPreviousLine whether of not to concatenate the tested line
+	 *                             with the previous one
+	 * @return the index
+	 * @throws IOException if an I/O error occurs reading the file
+	 */
+	public static TokenIndex build(final LinesReader reader, final Predicate<String> appendToPreviousLine)
+			throws IOException {
+		return build(reader, appendToPreviousLine, 0.05);
+	}
+
+	/**
+	 * Builds an index for all compound lines of the file read by the given reader.
+	 *
+	 * @param reader               the reader to index. It must have been created
+	 *                             for a file. Indexing does not affect the other
+	 *                             streams of the reader.
+	 * @param appendToPreviousLine whether of not to concatenate the tested line
+	 *                             with the previous one
+	 * @param maxTokenFrequency    the fraction of compound lines a token may be
+	 *                             contained in to get its own list of offsets
+	 * @return the index
+	 * @throws IOException if an I/O error occurs reading the file
+	 */
+	public static TokenIndex build(final LinesReader reader,
+			final Predicate<String> appendToPreviousLine,
+			final double maxTokenFrequency) throws IOException {
+		final Map<String, PostingsBuilder> builders = new HashMap<>();
+		final List<Long> blockStarts = new ArrayList<>();
+		final List<long[]> blockFilters = new ArrayList<>();
+		final Set<String> blockTokens = new HashSet<>();
+
+		long recordCount = 0;
+		long endOffset = 0;
+		final Iterator<CompoundRecord> records = reader.compoundRecordsIterator(appendToPreviousLine);
+		while (records.hasNext()) {
+			final CompoundRecord record = records.next();
+			if (recordCount % RECORDS_PER_BLOCK == 0) {
+				if (!blockStarts.isEmpty()) {
+					blockFilters.add(createFilter(blockTokens));
+					blockTokens.clear();
+				}
+				blockStarts.add(record.getStart());
+			}
+			for (final String token : tokenize(record.getText())) {
+				builders.computeIfAbsent(token, key -> new PostingsBuilder()).add(record.getStart());
+				blockTokens.add(token);
+			}
+			recordCount += 1;
+			endOffset = record.getEnd();
+		}
+		if (!blockStarts.isEmpty()) {
+			blockFilters.add(createFilter(blockTokens));
+		}
+
+		final long maxPostingsSize = (long) (maxTokenFrequency * recordCount);
+		final Map<String, byte[]> postings = new HashMap<>();
+		final Map<String, Integer> postingsSizes = new HashMap<>();
+		final Set<String> frequentTokens = new HashSet<>();
+		for (final Map.Entry<String, PostingsBuilder> entry : builders.entrySet()) {
+			final PostingsBuilder builder = entry.getValue();
+			if (builder.count > maxPostingsSize) {
+				frequentTokens.add(entry.getKey());
+			} else {
+				postings.put(entry.getKey(), Arrays.copyOf(builder.bytes, builder.size));
+				postingsSizes.put(entry.getKey(), builder.count);
+			}
+		}
+		return new TokenIndex(recordCount, endOffset, postings, postingsSizes, frequentTokens,
+				blockStarts.stream().mapToLong(Long::longValue).toArray(), blockFilters.toArray(new long[0][]));
+	}
+
+	/**
+	 * @return the number of indexed compound lines
+	 */
+	public long getRecordCount() {
+		return recordCount;
+	}
+
+	/**
+	 * Returns the byte offsets of all compound lines containing all the given
+	 * tokens. Only tokens having their own list of offsets are considered, so the
+	 * result might contain compound lines not containing frequent tokens.
+	 *
+	 * @param tokens the tokens to look for
+	 * @return the sorted byte offsets or <code>null</code> if all tokens are
+	 *         frequent tokens
+	 */
+	@Nullable
+	long[] lookup(final Collection<String> tokens) {
+		final List<String> indexed = new ArrayList<>();
+		for (final String token : tokens) {
+			if (postings.containsKey(token)) {
+				indexed.add(token);
+			} else if (!frequentTokens.contains(token)) {
+				return new long[0];
+			}
+		}
+		if (indexed.isEmpty()) {
+			return null;
+		}
+
+		indexed.sort(Comparator.comparing(postingsSizes::get));
+		long[] result = decode(indexed.get(0));
+		for (int i = 1; i < indexed.size() && result.length > 0; i += 1) {
+			result = intersect(result, decode(indexed.get(i)));
+		}
+		return result;
+	}
+
+	/**
+	 * Streams all compound lines containing all of the given tokens. Only the
+	 * matching compound lines and blocks that might contain frequent tokens will
+	 * be read from the file.
+	 *
+	 * @param reader               the reader for the indexed file
+	 * @param appendToPreviousLine whether of not to concatenate the tested line
+	 *                             with the previous one. Must be the same as the
+	 *                             one used for building the index.
+	 * @param tokens               the tokens to look for
+	 * @return a {@link Stream} of the matching compound lines
+	 * @throws IOException if an I/O error occurs opening the file
+	 */
+	public Stream<String> find(final LinesReader reader,
+			final Predicate<String> appendToPreviousLine,
+			final String... tokens) throws IOException {
+		if (tokens.length == 0) {
+			throw new IllegalArgumentException("At least one token is required.");
+		}
+		final List<String> query = Arrays.asList(tokens);
+		final List<String> frequent = new ArrayList<>();
+		for (final String token : query) {
+			if (frequentTokens.contains(token)) {
+				frequent.add(token);
+			}
+		}
+		final long[] offsets = lookup(query);
+		final Iterator<String> iterator = new MatchIterator(reader, appendToPreviousLine, offsets, frequent);
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+				Spliterator.ORDERED | Spliterator.NONNULL), false);
+	}
+
+	private boolean mightContainAll(final int block, final List<String> tokens) {
+		for (final String token : tokens) {
+			if (!mightContain(blockFilters[block], token)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int getBlock(final long offset) {
+		final int index = Arrays.binarySearch(blockStarts, offset);
+		return index >= 0 ? index : -index - 2;
+	}
+
+	private long getBlockEnd(final int block) {
+		return block + 1 < blockStarts.length ? blockStarts[block + 1] : endOffset;
+	}
+
+	private final class MatchIterator extends AbstractIterator<String> {
+		private final LinesReader reader;
+
+		private final Predicate<String> appendToPreviousLine;
+
+		@Nullable
+		private final long[] offsets;
+
+		private final List<String> frequent;
+
+		private int nextOffset = 0;
+
+		private int nextBlock = 0;
+
+		@Nullable
+		private Iterator<CompoundRecord> records = null;
+
+		private long recordsEnd = 0;
+
+		private MatchIterator(final LinesReader reader,
+				final Predicate<String> appendToPreviousLine,
+				@Nullable final long[] offsets,
+				final List<String> frequent) {
+			this.reader = reader;
+			this.appendToPreviousLine = appendToPreviousLine;
+			this.offsets = offsets;
+			this.frequent = frequent;
+		}
+
+		@Override
+		protected String readItem() throws IOException {
+			while (true) {
+				if (records != null && records.hasNext()) {
+					final CompoundRecord record = records.next();
+					if (record.getStart() >= recordsEnd) {
+						records = null;
+					} else if (frequent.isEmpty() || tokenize(record.getText()).containsAll(frequent)) {
+						return record.getText();
+					}
+				} else if (!openNext()) {
+					return null;
+				}
+			}
+		}
+
+		private boolean openNext() throws IOException {
+			if (offsets != null) {
+				// seek to single compound lines
+				while (nextOffset < offsets.length) {
+					final long offset = offsets[nextOffset];
+					nextOffset += 1;
+					if (mightContainAll(getBlock(offset), frequent)) {
+						records = reader.compoundRecordsIterator(appendToPreviousLine, offset, SEEK_BUFFER_SIZE);
+						recordsEnd = offset + 1;
+						return true;
+					}
+				}
+				return false;
+			}
+
+			// scan blocks that might contain the frequent tokens
+			while (nextBlock < blockStarts.length) {
+				final int block = nextBlock;
+				nextBlock += 1;
+				if (mightContainAll(block, frequent)) {
+					records = reader.compoundRecordsIterator(appendToPreviousLine, blockStarts[block],
+							BLOCK_BUFFER_SIZE);
+					recordsEnd = getBlockEnd(block);
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Writes this index to a file.
+	 *
+	 * @param path the file to write
+	 * @throws IOException if an I/O error occurs writing the file
+	 */
+	public void write(final Path path) throws IOException {
+		try (DataOutputStream out
+				= new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 64 * 1024))) {
+			out.writeInt(MAGIC);
+			out.writeLong(recordCount);
+			out.writeLong(endOffset);
+			out.writeInt(blockStarts.length);
+			for (int i = 0; i < blockStarts.length; i += 1) {
+				out.writeLong(blockStarts[i]);
+				out.writeInt(blockFilters[i].length);
+				for (final long bits : blockFilters[i]) {
+					out.writeLong(bits);
+				}
+			}
+			out.writeInt(frequentTokens.size());
+			for (final String token : frequentTokens) {
+				writeString(out, token);
+			}
+			out.writeInt(postings.size());
+			for (final Map.Entry<String, byte[]> entry : postings.entrySet()) {
+				writeString(out, entry.getKey());
+				out.writeInt(postingsSizes.get(entry.getKey()));
+				out.writeInt(entry.getValue().length);
+				out.write(entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Reads an index previously written using {@link #write(Path)}.
+	 *
+	 * @param path the file to read
+	 * @return the index
+	 * @throws IOException if an I/O error occurs reading the file or the file does
+	 *                     not contain an index
+	 */
+	public static TokenIndex read(final Path path) throws IOException {
+		try (DataInputStream in
+				= new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 64 * 1024))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Not a token index: " + path);
+			}
+			final long recordCount = in.readLong();
+			final long endOffset = in.readLong();
+			final int blockCount = in.readInt();
+			final long[] blockStarts = new long[blockCount];
+			final long[][] blockFilters = new long[blockCount][];
+			for (int i = 0; i < blockCount; i += 1) {
+				blockStarts[i] = in.readLong();
+				blockFilters[i] = new long[in.readInt()];
+				for (int j = 0; j < blockFilters[i].length; j += 1) {
+					blockFilters[i][j] = in.readLong();
+				}
+			}
+			final int frequentCount = in.readInt();
+			final Set<String> frequentTokens = new HashSet<>();
+			for (int i = 0; i < frequentCount; i += 1) {
+				frequentTokens.add(readString(in));
+			}
+			final int postingsCount = in.readInt();
+			final Map<String, byte[]> postings = new HashMap<>();
+			final Map<String, Integer> postingsSizes = new HashMap<>();
+			for (int i = 0; i < postingsCount; i += 1) {
+				final String token = readString(in);
+				postingsSizes.put(token, in.readInt());
+				final byte[] bytes = new byte[in.readInt()];
+				in.readFully(bytes);
+				postings.put(token, bytes);
+			}
+			return new TokenIndex(recordCount, endOffset, postings, postingsSizes, frequentTokens, blockStarts,
+					blockFilters);
+		}
+	}
+
+	private static void writeString(final DataOutputStream out, final String string) throws IOException {
+		final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(final DataInputStream in) throws IOException {
+		final byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private long[] decode(final String token) {
+		final byte[] bytes = postings.get(token);
+		final long[] offsets = new long[postingsSizes.get(token)];
+		long value = 0;
+		int position = 0;
+		for (int i = 0; i < offsets.length; i += 1) {
+			long delta = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = bytes[position];
+				position += 1;
+				delta |= (long) (b & 0x7F) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			value += delta;
+			offsets[i] = value;
+		}
+		return offsets;
+	}
+
+	private static long[] intersect(final long[] a, final long[] b) {
+		final long[] result = new long[Math.min(a.length, b.length)];
+		int size = 0;
+		int i = 0;
+		int j = 0;
+		while (i < a.length && j < b.length) {
+			if (a[i] < b[j]) {
+				i += 1;
+			} else if (a[i] > b[j]) {
+				j += 1;
+			} else {
+				result[size] = a[i];
+				size += 1;
+				i += 1;
+				j += 1;
+			}
+		}
+		return Arrays.copyOf(result, size);
+	}
+
+	private static long[] createFilter(final Set<String> tokens) {
+		final int words = Math.max(1, (tokens.size() * BLOOM_BITS_PER_TOKEN + 63) / 64);
+		final long[] filter = new long[words];
+		for (final String token : tokens) {
+			final long bits = (long) words * 64;
+			final int hash1 = token.hashCode();
+			final int hash2 = mix(hash1);
+			for (int i = 0; i < BLOOM_HASHES; i += 1) {
+				final long bit = ((hash1 + (long) i * hash2) & Long.MAX_VALUE) % bits;
+				filter[(int) (bit >>> 6)] |= 1L << bit;
+			}
+		}
+		return filter;
+	}
+
+	private static boolean mightContain(final long[] filter, final String token) {
+		final long bits = (long) filter.length * 64;
+		final int hash1 = token.hashCode();
+		final int hash2 = mix(hash1);
+		for (int i = 0; i < BLOOM_HASHES; i += 1) {
+			final long bit = ((hash1 + (long) i * hash2) & Long.MAX_VALUE) % bits;
+			if ((filter[(int) (bit >>> 6)] & 1L << bit) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int mix(final int value) {
+		int hash = value * 0x9E3779B9;
+		hash ^= hash >>> 16;
+		hash *= 0x85EBCA6B;
+		hash ^= hash >>> 13;
+		return hash | 1;
+	}
+
+	/**
+	 * Collects the delta and variable length encoded offsets of one token.
+	 */
+	private static final class PostingsBuilder {
+		private byte[] bytes = new byte[8];
+
+		private int size = 0;
+
+		private int count = 0;
+
+		private long last = 0;
+
+		private void add(final long offset) {
+			long delta = offset - last;
+			last = offset;
+			count += 1;
+			if (bytes.length - size < 10) {
+				bytes = Arrays.copyOf(bytes, bytes.length * 2);
+			}
+			while ((delta & ~0x7FL) != 0) {
+				bytes[size] = (byte) (delta & 0x7F | 0x80);
+				size += 1;
+				delta >>>= 7;
+			}
+			bytes[size] = (byte) delta;
+			size += 1;
+		}
+	}
+}
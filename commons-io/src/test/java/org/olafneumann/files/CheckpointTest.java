@@ -0,0 +1,129 @@
+package org.olafneumann.files;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@SuppressWarnings("javadoc")
+public class CheckpointTest {
+	@TempDir
+	Path tempDir;
+
+	private Path createLog() throws IOException {
+		final Path log = tempDir.resolve("test.log");
+		Files.write(log, TestLogs.createLog(1000, "\r\n").getBytes(StandardCharsets.UTF_8));
+		return log;
+	}
+
+	private static Checkpoint copy(final Checkpoint checkpoint) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		checkpoint.write(new DataOutputStream(bytes));
+		return Checkpoint.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+	}
+
+	private static <T> List<T> collect(final Iterator<T> iterator) {
+		final List<T> list = new ArrayList<>();
+		iterator.forEachRemaining(list::add);
+		return list;
+	}
+
+	@Test
+	public void resumeCompoundLines() throws IOException {
+		final Path log = createLog();
+		List<String> expected;
+		try (LinesReader reader = new LinesReader(log, StandardCharsets.UTF_8)) {
+			expected = reader.compoundLines(TestLogs::isContinuation).collect(toList());
+		}
+
+		for (final int stop : new int[] { 0, 1, 17, 500, expected.size() }) {
+			for (final boolean callHasNext : new boolean[] { false, true }) {
+				Checkpoint checkpoint;
+				try (LinesReader reader = new LinesReader(log, StandardCharsets.UTF_8)) {
+					final Iterator<String> iterator
+							= reader.compoundLinesIterator(TestLogs::isContinuation);
+					for (int i = 0; i < stop; i += 1) {
+						iterator.next();
+					}
+					if (callHasNext) {
+						iterator.hasNext();
+					}
+					checkpoint = copy(reader.checkpoint());
+				}
+				try (LinesReader reader = new LinesReader(log, StandardCharsets.UTF_8, checkpoint)) {
+					assertThat(reader.compoundLines(TestLogs::isContinuation).collect(toList()))
+							.isEqualTo(expected.subList(stop, expected.size()));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void resumeGroups() throws IOException {
+		final Path log = createLog();
+		List<List<String>> expected;
+		try (LinesReader reader = new LinesReader(log, StandardCharsets.UTF_8)) {
+			expected = collect(reader.groupsIterator(TestLogs::isContinuation,
+					TestLogs::getThreadName, TestLogs::getLineType));
+		}
+
+		for (final int stop : new int[] { 0, 1, 10, 150, expected.size() - 3, expected.size() }) {
+			for (final boolean callHasNext : new boolean[] { false, true }) {
+				Checkpoint checkpoint;
+				try (LinesReader reader = new LinesReader(log, StandardCharsets.UTF_8)) {
+					final Iterator<List<String>> iterator = reader.groupsIterator(
+							TestLogs::isContinuation, TestLogs::getThreadName,
+							TestLogs::getLineType);
+					for (int i = 0; i < stop; i += 1) {
+						iterator.next();
+					}
+					if (callHasNext) {
+						iterator.hasNext();
+					}
+					checkpoint = copy(reader.checkpoint());
+				}
+				try (LinesReader reader = new LinesReader(log, StandardCharsets.UTF_8, checkpoint)) {
+					final List<List<String>> rest = collect(reader.groupsIterator(
+							TestLogs::isContinuation, TestLogs::getThreadName,
+							TestLogs::getLineType));
+					assertThat(rest).as("stop at %s", stop)
+							.containsExactlyInAnyOrderElementsOf(expected.subList(stop, expected.size()));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void checkpointRequiresFile() {
+		final LinesReader reader = new LinesReader(new ByteArrayInputStream(new byte[0]), StandardCharsets.UTF_8);
+		assertThatThrownBy(reader::checkpoint).isInstanceOf(IllegalStateException.class);
+	}
+
+	@Test
+	public void malformedInputIsReported() throws IOException {
+		final Path file = tempDir.resolve("malformed.txt");
+		Files.write(file, new byte[] { 'a', '\n', (byte) 0xC3, '\n', (byte) 0xEF, (byte) 0xBF, (byte) 0xBD, '\n' });
+		try (LinesReader reader = new LinesReader(file, StandardCharsets.UTF_8)) {
+			assertThatThrownBy(() -> reader.lines().count()).isInstanceOf(UncheckedIOException.class);
+		}
+		Files.write(file, new byte[] { 'a', '\n', (byte) 0xEF, (byte) 0xBF, (byte) 0xBD, '\n' });
+		try (LinesReader reader = new LinesReader(file, StandardCharsets.UTF_8)) {
+			assertThat(reader.lines().collect(toList())).containsExactly("a", "�");
+		}
+	}
+}
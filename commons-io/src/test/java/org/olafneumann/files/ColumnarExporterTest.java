@@ -0,0 +1,109 @@
+package org.olafneumann.files;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@SuppressWarnings("javadoc")
+public class ColumnarExporterTest {
+	@TempDir
+	Path tempDir;
+
+	@Test
+	public void exportAndReadBack() throws IOException {
+		final String content = TestLogs.createLog(1000, "\n");
+		final Path log = tempDir.resolve("test.log");
+		Files.write(log, content.getBytes(StandardCharsets.UTF_8));
+		final Path columnar = tempDir.resolve("test.lrc");
+
+		List<String> records;
+		List<List<String>> groups;
+		try (LinesReader reader = new LinesReader(log, StandardCharsets.UTF_8)) {
+			records = reader.compoundLines(TestLogs::isContinuation).collect(toList());
+		}
+		try (LinesReader reader = new LinesReader(log, StandardCharsets.UTF_8)) {
+			groups = reader
+					.groups(TestLogs::isContinuation, TestLogs::getThreadName,
+							TestLogs::getLineType)
+					.collect(toList());
+		}
+		try (LinesReader reader = new LinesReader(log, StandardCharsets.UTF_8)) {
+			new ColumnarExporter(TestLogs::isContinuation, TestLogs::getThreadName,
+					TestLogs::getLineType)//
+							.addField("exception", line -> line.contains("Exception") ? "yes" : null)
+							.export(reader, columnar);
+		}
+
+		try (ColumnarFile file = new ColumnarFile(columnar)) {
+			assertThat(file.getRecordCount()).isEqualTo(records.size());
+			assertThat(file.getGroupCount()).isEqualTo(groups.size());
+			assertThat(file.getDictionary("key")).hasSize(7);
+
+			for (int i = 0; i < records.size(); i += 1) {
+				final String text = new String(content.getBytes(StandardCharsets.UTF_8), (int) file.getRecordStart(i),
+						(int) (file.getRecordEnd(i) - file.getRecordStart(i) - 1), StandardCharsets.UTF_8);
+				assertThat(text.replace("\n", System.lineSeparator())).isEqualTo(records.get(i));
+				assertThat(file.getRecordLineCount(i)).isEqualTo(records.get(i).split(System.lineSeparator()).length);
+				assertThat(file.getRecordKey(i)).isEqualTo(TestLogs.getThreadName(records.get(i)));
+			}
+
+			final int yes = file.getCode("exception", "yes");
+			final IntBuffer exceptions = file.getIntColumn("field.exception");
+			int count = 0;
+			while (exceptions.hasRemaining()) {
+				if (exceptions.get() == yes) {
+					count += 1;
+				}
+			}
+			assertThat(count).isEqualTo(200);
+
+			final long groupedRecords = groups.stream().mapToLong(List::size).sum();
+			long exportedGroupedRecords = 0;
+			for (int i = 0; i < file.getGroupCount(); i += 1) {
+				exportedGroupedRecords += file.getGroupRecordCount(i);
+				assertThat(file.getGroupEnd(i)).isGreaterThan(file.getGroupStart(i));
+			}
+			assertThat(exportedGroupedRecords).isEqualTo(groupedRecords);
+		}
+	}
+
+	@Test
+	public void readColumnsMappedInChunks() throws IOException {
+		final Path log = tempDir.resolve("test.log");
+		Files.write(log, TestLogs.createLog(1000, "\n").getBytes(StandardCharsets.UTF_8));
+		final Path columnar = tempDir.resolve("test.lrc");
+		try (LinesReader reader = new LinesReader(log, StandardCharsets.UTF_8)) {
+			new ColumnarExporter(TestLogs::isContinuation, TestLogs::getThreadName, TestLogs::getLineType)
+					.addField("exception", line -> line.contains("Exception") ? "yes" : null)
+					.export(reader, columnar);
+		}
+
+		// chunks of 64 bytes hold 8 long or 16 int values
+		try (ColumnarFile file = new ColumnarFile(columnar);
+				ColumnarFile chunked = new ColumnarFile(columnar, 64)) {
+			for (long i = 0; i < file.getRecordCount(); i += 1) {
+				assertThat(chunked.getRecordStart(i)).isEqualTo(file.getRecordStart(i));
+				assertThat(chunked.getRecordEnd(i)).isEqualTo(file.getRecordEnd(i));
+				assertThat(chunked.getRecordLineCount(i)).isEqualTo(file.getRecordLineCount(i));
+				assertThat(chunked.getRecordKey(i)).isEqualTo(file.getRecordKey(i));
+				assertThat(chunked.getRecordField("exception", i)).isEqualTo(file.getRecordField("exception", i));
+			}
+			for (long i = 0; i < file.getGroupCount(); i += 1) {
+				assertThat(chunked.getGroupStart(i)).isEqualTo(file.getGroupStart(i));
+				assertThat(chunked.getGroupEnd(i)).isEqualTo(file.getGroupEnd(i));
+				assertThat(chunked.getGroupKey(i)).isEqualTo(file.getGroupKey(i));
+			}
+			assertThatThrownBy(() -> chunked.getLongColumn("record.start")).isInstanceOf(IllegalStateException.class);
+		}
+	}
+}
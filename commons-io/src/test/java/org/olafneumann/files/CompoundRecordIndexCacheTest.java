@@ -0,0 +1,228 @@
+package org.olafneumann.files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.olafneumann.files.TestLogs.readAll;
+import static org.olafneumann.files.TestLogs.readCompoundLines;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@SuppressWarnings("javadoc")
+public class CompoundRecordIndexCacheTest {
+	private static final Predicate<String> CONTINUATION = TestLogs::isContinuation;
+
+	@TempDir
+	Path tempDir;
+
+	private Path createLog(final String content) throws IOException {
+		final Path log = tempDir.resolve("test.log");
+		Files.write(log, content.getBytes(StandardCharsets.UTF_8));
+		return log;
+	}
+
+	private static void append(final Path log, final byte[] bytes) throws IOException {
+		Files.write(log, bytes, StandardOpenOption.APPEND);
+	}
+
+	private static List<String> readWithCache(final CompoundRecordIndexCache cache, final Path log)
+			throws IOException {
+		try (LinesReader reader = new LinesReader(log, StandardCharsets.UTF_8)) {
+			return readAll(cache.getIndex(reader, CONTINUATION));
+		}
+	}
+
+	private static long[] getStarts(final CompoundRecordIndex index) {
+		final long[] starts = new long[index.size()];
+		for (int i = 0; i < starts.length; i += 1) {
+			starts[i] = index.getStart(i);
+		}
+		return starts;
+	}
+
+	@Test
+	public void reuseIndex() throws IOException {
+		final Path log = createLog(TestLogs.createLog(1000, "\n"));
+		final List<String> expected = readCompoundLines(log);
+		final CompoundRecordIndexCache cache = new CompoundRecordIndexCache(1024 * 1024);
+
+		assertThat(readWithCache(cache, log)).isEqualTo(expected);
+		assertThat(cache.getMissCount()).isEqualTo(1);
+		assertThat(cache.getHitCount()).isEqualTo(0);
+		assertThat(cache.getBytes()).isPositive();
+
+		assertThat(readWithCache(cache, log)).isEqualTo(expected);
+		assertThat(cache.getMissCount()).isEqualTo(1);
+		assertThat(cache.getHitCount()).isEqualTo(1);
+
+		// another predicate or charset is another entry
+		try (LinesReader reader = new LinesReader(log, StandardCharsets.UTF_8)) {
+			assertThat(cache.getIndex(reader, line -> false).size()).isEqualTo(Files.readAllLines(log).size());
+		}
+		try (LinesReader reader = new LinesReader(log, StandardCharsets.ISO_8859_1)) {
+			cache.getIndex(reader, CONTINUATION);
+		}
+		assertThat(cache.getMissCount()).isEqualTo(3);
+	}
+
+	@Test
+	public void indexAppendedPartOnly() throws IOException {
+		final String content = TestLogs.createLog(1000, "\n");
+		// split inside the stack trace of a compound line
+		final int split = content.indexOf("\tat", content.length() / 2);
+		final Path log = createLog(content.substring(0, split));
+		final AtomicInteger testedLines = new AtomicInteger();
+		final Predicate<String> continuation = line -> {
+			testedLines.incrementAndGet();
+			return TestLogs.isContinuation(line);
+		};
+		final CompoundRecordIndexCache cache = new CompoundRecordIndexCache(1024 * 1024);
+
+		final long[] cachedStarts;
+		try (LinesReader reader = new LinesReader(log, StandardCharsets.UTF_8)) {
+			cachedStarts = getStarts(cache.getIndex(reader, continuation));
+		}
+		final int linesOfHead = testedLines.getAndSet(0);
+
+		append(log, content.substring(split).getBytes(StandardCharsets.UTF_8));
+		try (LinesReader reader = new LinesReader(log, StandardCharsets.UTF_8)) {
+			final CompoundRecordIndex index = cache.getIndex(reader, continuation);
+			// only the lines of the appended part and of the last compound line are tested
+			assertThat(testedLines.get()).isLessThan(Files.readAllLines(log).size() - linesOfHead / 2);
+			assertThat(readAll(index)).isEqualTo(readCompoundLines(log));
+			// the last compound line might have been continued, so it is read again
+			assertThat(Arrays.copyOf(getStarts(index), cachedStarts.length - 1))
+					.isEqualTo(Arrays.copyOf(cachedStarts, cachedStarts.length - 1));
+		}
+		assertThat(cache.getMissCount()).isEqualTo(2);
+	}
+
+	@Test
+	public void rebuildModifiedGrowingFile() throws IOException {
+		final String content = TestLogs.createLog(1000, "\n");
+		final int split = content.indexOf("\tat", content.length() / 2);
+		final Path log = createLog(content.substring(0, split));
+		final CompoundRecordIndexCache cache = new CompoundRecordIndexCache(1024 * 1024);
+		assertThat(readWithCache(cache, log)).isEqualTo(readCompoundLines(log));
+
+		// join the first two compound lines in place and append the rest
+		final byte[] head = content.substring(0, split).getBytes(StandardCharsets.UTF_8);
+		head[content.indexOf("\n[")] = ' ';
+		Files.write(log, head, StandardOpenOption.TRUNCATE_EXISTING);
+		append(log, content.substring(split).getBytes(StandardCharsets.UTF_8));
+
+		final List<String> expected = readCompoundLines(log);
+		assertThat(expected).hasSize(999);
+		assertThat(readWithCache(cache, log)).isEqualTo(expected);
+	}
+
+	@Test
+	public void rebuildReplacedFile() throws IOException {
+		final String content = TestLogs.createLog(1000, "\n");
+		final Path log = createLog(content.substring(0, content.length() / 2));
+		final CompoundRecordIndexCache cache = new CompoundRecordIndexCache(1024 * 1024);
+		assertThat(readWithCache(cache, log)).isEqualTo(readCompoundLines(log));
+
+		// replace the file by a longer one with the same beginning and a different end
+		final Path replacement = tempDir.resolve("replacement.log");
+		Files.write(replacement, TestLogs.createLog(1000, "\r\n").getBytes(StandardCharsets.UTF_8));
+		Files.move(replacement, log, StandardCopyOption.REPLACE_EXISTING);
+
+		assertThat(readWithCache(cache, log)).isEqualTo(readCompoundLines(log));
+	}
+
+	@Test
+	public void rebuildTruncatedFile() throws IOException {
+		final String content = TestLogs.createLog(1000, "\n");
+		final Path log = createLog(content);
+		final CompoundRecordIndexCache cache = new CompoundRecordIndexCache(1024 * 1024);
+		assertThat(readWithCache(cache, log)).hasSize(1000);
+
+		Files.write(log, content.substring(0, 100).getBytes(StandardCharsets.UTF_8),
+				StandardOpenOption.TRUNCATE_EXISTING);
+		assertThat(readWithCache(cache, log)).isEqualTo(readCompoundLines(log));
+	}
+
+	@Test
+	public void readPages() throws IOException {
+		final Path log = createLog(TestLogs.createLog(1000, "\r\n"));
+		final List<String> expected = readCompoundLines(log);
+		final CompoundRecordIndexCache cache = new CompoundRecordIndexCache(10 * 1024 * 1024, 64);
+
+		try (LinesReader reader = new LinesReader(log, StandardCharsets.UTF_8)) {
+			assertThat(cache.getRecords(reader, CONTINUATION, 100, 300)).isEqualTo(expected.subList(100, 300));
+			final long bytes = cache.getBytes();
+			assertThat(cache.getRecords(reader, CONTINUATION, 150, 250)).isEqualTo(expected.subList(150, 250));
+			assertThat(cache.getBytes()).isEqualTo(bytes);
+			assertThat(cache.getRecords(reader, CONTINUATION, 900, 1000)).isEqualTo(expected.subList(900, 1000));
+			assertThat(cache.getRecords(reader, CONTINUATION, 0, 1000)).isEqualTo(expected);
+			assertThat(cache.getRecords(reader, CONTINUATION, 5, 5)).isEmpty();
+		}
+	}
+
+	@Test
+	public void readPagesOfGrowingFile() throws IOException {
+		final String content = TestLogs.createLog(1000, "\n");
+		final Path log = createLog(content);
+		final int split;
+		try (LinesReader reader = new LinesReader(log, StandardCharsets.UTF_8)) {
+			final CompoundRecordIndex index = new CompoundRecordIndex(reader, CONTINUATION);
+			index.update();
+			// split inside compound line 499, so the first part ends with a page
+			split = (int) (index.getStart(499) + index.getEnd(499)) / 2;
+		}
+		final byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+		Files.write(log, Arrays.copyOf(bytes, split), StandardOpenOption.TRUNCATE_EXISTING);
+		final CompoundRecordIndexCache cache = new CompoundRecordIndexCache(10 * 1024 * 1024, 10);
+
+		try (LinesReader reader = new LinesReader(log, StandardCharsets.UTF_8)) {
+			assertThat(cache.getRecords(reader, CONTINUATION, 0, 500)).isEqualTo(readCompoundLines(log));
+		}
+
+		append(log, Arrays.copyOfRange(bytes, split, bytes.length));
+		final List<String> expected = readCompoundLines(log);
+		try (LinesReader reader = new LinesReader(log, StandardCharsets.UTF_8)) {
+			// the page that ended with the incomplete compound line is read again
+			assertThat(cache.getRecords(reader, CONTINUATION, 490, 500)).isEqualTo(expected.subList(490, 500));
+			assertThat(cache.getRecords(reader, CONTINUATION, 0, 1000)).isEqualTo(expected);
+		}
+	}
+
+	@Test
+	public void evictLeastRecentlyUsed() throws IOException {
+		final List<Path> logs = new ArrayList<>();
+		for (int i = 0; i < 3; i += 1) {
+			final Path log = tempDir.resolve("test" + i + ".log");
+			Files.write(log, TestLogs.createLog(1000, "\n").getBytes(StandardCharsets.UTF_8));
+			logs.add(log);
+		}
+		// the offsets of 1000 compound lines take 8 KB
+		final CompoundRecordIndexCache cache = new CompoundRecordIndexCache(20 * 1024);
+
+		readWithCache(cache, logs.get(0));
+		readWithCache(cache, logs.get(1));
+		readWithCache(cache, logs.get(0));
+		readWithCache(cache, logs.get(2));
+		assertThat(cache.getBytes()).isLessThanOrEqualTo(20 * 1024);
+		assertThat(cache.getHitCount()).isEqualTo(1);
+
+		readWithCache(cache, logs.get(0));
+		assertThat(cache.getHitCount()).isEqualTo(2);
+		readWithCache(cache, logs.get(1));
+		assertThat(cache.getHitCount()).isEqualTo(2);
+
+		cache.clear();
+		assertThat(cache.getBytes()).isEqualTo(0);
+	}
+}
@@ -0,0 +1,66 @@
+package org.olafneumann.files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@SuppressWarnings("javadoc")
+public class CompoundRecordIndexTest {
+	@TempDir
+	Path tempDir;
+
+	@Test
+	public void readByIndex() throws IOException {
+		final Path log = tempDir.resolve("test.log");
+		Files.write(log, TestLogs.createLog(1000, "\r\n").getBytes(StandardCharsets.UTF_8));
+		final List<String> expected = TestLogs.readCompoundLines(log);
+
+		try (LinesReader reader = new LinesReader(log, StandardCharsets.UTF_8)) {
+			final CompoundRecordIndex index = new CompoundRecordIndex(reader, TestLogs::isContinuation);
+			final List<String> listened = new ArrayList<>();
+			assertThat(index.update((i, text) -> listened.add(i, text))).isEqualTo(expected.size());
+
+			assertThat(listened).isEqualTo(expected);
+			assertThat(TestLogs.readAll(index)).isEqualTo(expected);
+			assertThat(index.read(500)).isEqualTo(expected.get(500));
+			assertThat(index.getStart(0)).isEqualTo(0);
+			assertThat(index.getEnd(expected.size() - 1)).isEqualTo(Files.size(log));
+			assertThat(index.getIndexedLength()).isEqualTo(Files.size(log));
+		}
+	}
+
+	@Test
+	public void updateGrowingFile() throws IOException {
+		final Path log = tempDir.resolve("test.log");
+		final String content = TestLogs.createLog(1000, "\n");
+		// split inside the stack trace of a compound line
+		final int split = content.indexOf("\tat", content.length() / 2);
+		Files.write(log, content.substring(0, split).getBytes(StandardCharsets.UTF_8));
+
+		try (LinesReader reader = new LinesReader(log, StandardCharsets.UTF_8)) {
+			final CompoundRecordIndex index = new CompoundRecordIndex(reader, TestLogs::isContinuation);
+			index.update();
+			assertThat(TestLogs.readAll(index)).isEqualTo(TestLogs.readCompoundLines(log));
+
+			Files.write(log, content.substring(split).getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+			index.update();
+			assertThat(TestLogs.readAll(index)).isEqualTo(TestLogs.readCompoundLines(log));
+			assertThat(index.size()).isEqualTo(1000);
+
+			// a truncated file is indexed again
+			Files.write(log, content.substring(0, 100).getBytes(StandardCharsets.UTF_8),
+					StandardOpenOption.TRUNCATE_EXISTING);
+			index.update();
+			assertThat(TestLogs.readAll(index)).isEqualTo(TestLogs.readCompoundLines(log));
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package org.olafneumann.files;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings("javadoc")
+public class FingerprintCounterTest {
+	private static final String TRACE_1 = "java.lang.IllegalStateException: failure 17\n"
+			+ "\tat org.olafneumann.Some.method(Some.java:42)\n"
+			+ "\tat org.olafneumann.Other$1.run(Other.java:12)";
+
+	private static final String TRACE_2 = "java.lang.IllegalStateException: failure 4711\r\n"
+			+ "\tat org.olafneumann.Some.method(Some.java:43)\r\n"
+			+ "\tat org.olafneumann.Other$2.run(Other.java:12)";
+
+	@Test
+	public void normalizeVolatileParts() {
+		assertThat(Fingerprinter.EXACT.fingerprint(TRACE_1)).isNotEqualTo(Fingerprinter.EXACT.fingerprint(TRACE_2));
+		assertThat(Fingerprinter.NORMALIZING.fingerprint(TRACE_1))
+				.isEqualTo(Fingerprinter.NORMALIZING.fingerprint(TRACE_2));
+		assertThat(Fingerprinter.NORMALIZING.fingerprint("object@1a2b3c at 0xCAFE"))
+				.isEqualTo(Fingerprinter.NORMALIZING.fingerprint("object@7f00 at 0xbeef"));
+		assertThat(Fingerprinter.NORMALIZING.fingerprint("java.lang.IllegalStateException"))
+				.isNotEqualTo(Fingerprinter.NORMALIZING.fingerprint("java.lang.IllegalArgumentException"));
+		assertThat(Fingerprinter.NORMALIZING.fingerprint("log4j")).isNotEqualTo(
+				Fingerprinter.NORMALIZING.fingerprint("log5j"));
+
+		final long[] fingerprint = Fingerprinter.EXACT.fingerprint128(TRACE_1);
+		assertThat(fingerprint).hasSize(2);
+		assertThat(fingerprint[0]).isEqualTo(Fingerprinter.EXACT.fingerprint(TRACE_1));
+	}
+
+	@Test
+	public void countLikeHashMap() throws IOException {
+		final String log = TestLogs.createLog(5000, "\n");
+		final Map<String, Long> expected = new HashMap<>();
+		try (LinesReader reader = new LinesReader(new BufferedReader(new StringReader(log)))) {
+			reader.compoundLines(TestLogs::isContinuation)
+					.sequential()
+					.forEach(line -> expected.merge(line.substring(0, line.indexOf(':', line.indexOf(']'))), 1L,
+							Long::sum));
+		}
+
+		final FingerprintCounter exact = new FingerprintCounter(Fingerprinter.EXACT);
+		try (LinesReader reader = new LinesReader(new BufferedReader(new StringReader(log)))) {
+			reader.compoundLines(TestLogs::isContinuation)
+					.sequential()
+					.forEach(line -> exact.add(line.substring(0, line.indexOf(':', line.indexOf(']')))));
+		}
+		assertThat(exact.size()).isEqualTo(expected.size());
+		for (final FingerprintCounter.Entry entry : exact.getMostFrequent(Integer.MAX_VALUE)) {
+			assertThat(entry.getCount()).isEqualTo(expected.get(entry.getExemplar()));
+		}
+
+		final FingerprintCounter normalized;
+		try (LinesReader reader = new LinesReader(new BufferedReader(new StringReader(log)))) {
+			normalized = FingerprintCounter.count(reader, TestLogs::isContinuation,
+					Fingerprinter.NORMALIZING);
+		}
+		assertThat(normalized.getTotal()).isEqualTo(5000);
+		// dates, thread numbers, message numbers and line numbers are ignored
+		assertThat(normalized.size()).isEqualTo(2);
+
+		final List<FingerprintCounter.Entry> top = normalized.getMostFrequent(3);
+		assertThat(top).hasSize(2);
+		assertThat(top.get(0).getCount()).isEqualTo(4000);
+		assertThat(top.get(1).getCount()).isEqualTo(1000);
+		assertThat(top.get(1).getExemplar()).contains("IllegalStateException");
+		assertThat(normalized.getCount(top.get(0).getFingerprint())).isEqualTo(4000);
+		assertThat(normalized.getExemplar(top.get(0).getFingerprint())).isEqualTo(top.get(0).getExemplar());
+	}
+
+	@Test
+	public void distinctAndMerge() {
+		final FingerprintCounter counter = new FingerprintCounter(Fingerprinter.EXACT);
+		final List<String> distinct = Stream.of("a", "b", "a", "c", "b", "a")
+				.sequential()
+				.filter(counter::add)
+				.collect(toList());
+		assertThat(distinct).containsExactly("a", "b", "c");
+
+		final FingerprintCounter other = new FingerprintCounter(Fingerprinter.EXACT);
+		for (int i = 0; i < 1000; i += 1) {
+			other.add(Integer.toString(i % 100));
+		}
+		other.add("a");
+		counter.merge(other);
+		assertThat(counter.size()).isEqualTo(103);
+		assertThat(counter.getTotal()).isEqualTo(1007);
+		assertThat(counter.getCount(Fingerprinter.EXACT.fingerprint("a"))).isEqualTo(4);
+		assertThat(counter.getCount(Fingerprinter.EXACT.fingerprint("42"))).isEqualTo(10);
+		assertThat(counter.getCount(Fingerprinter.EXACT.fingerprint("x"))).isZero();
+		assertThat(counter.getExemplar(Fingerprinter.EXACT.fingerprint("x"))).isNull();
+	}
+}
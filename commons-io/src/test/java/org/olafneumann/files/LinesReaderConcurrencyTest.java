@@ -0,0 +1,111 @@
+package org.olafneumann.files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Reads many files concurrently, one {@link LinesReader} per task. On Java 21
+ * and later every task runs in its own virtual thread.
+ */
+@SuppressWarnings("javadoc")
+public class LinesReaderConcurrencyTest {
+	private static final int READERS = 1_000;
+
+	private static final int FILES = 20;
+
+	private static final int RECORDS_PER_FILE = 2_000;
+
+	@TempDir
+	Path tempDir;
+
+	private interface ReaderFactory {
+		LinesReader create(Path path) throws IOException;
+	}
+
+	private static ExecutorService createExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (final ReflectiveOperationException e) {
+			// virtual threads are not available before Java 21
+			return Executors.newFixedThreadPool(256);
+		}
+	}
+
+	private List<Path> createFiles() throws IOException {
+		final byte[] content = TestLogs.createLog(RECORDS_PER_FILE, "\n").getBytes(StandardCharsets.UTF_8);
+		final List<Path> files = new ArrayList<>();
+		for (int i = 0; i < FILES; i += 1) {
+			files.add(Files.write(tempDir.resolve("tenant" + i + ".log"), content));
+		}
+		return files;
+	}
+
+	private static long run(final List<Path> files, final ReaderFactory factory)
+			throws InterruptedException, ExecutionException {
+		final ExecutorService executor = createExecutor();
+		try {
+			final List<Future<Long>> results = new ArrayList<>();
+			for (int i = 0; i < READERS; i += 1) {
+				final Path file = files.get(i % files.size());
+				results.add(executor.submit(() -> {
+					// iterate within the task, the parallel stream would hand the work to the common pool
+					try (LinesReader reader = factory.create(file)) {
+						final Iterator<String> lines
+								= reader.compoundLinesIterator(TestLogs::isContinuation);
+						long count = 0;
+						while (lines.hasNext()) {
+							lines.next();
+							count += 1;
+						}
+						return count;
+					}
+				}));
+			}
+			long count = 0;
+			for (final Future<Long> result : results) {
+				count += result.get();
+			}
+			return count;
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static void measure(final String name, final List<Path> files, final ReaderFactory factory)
+			throws InterruptedException, ExecutionException {
+		final long start = System.nanoTime();
+		final long count = run(files, factory);
+		final long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+		System.out.println(String.format("%s: %d readers, %d compound lines in %d ms (%d compound lines/s)", name,
+				READERS, count, millis, count * 1000 / millis));
+		assertThat(count).isEqualTo((long) READERS * RECORDS_PER_FILE);
+	}
+
+	@Test
+	public void speed_concurrentReaders() throws IOException, InterruptedException, ExecutionException {
+		final List<Path> files = createFiles();
+		// warm up
+		run(files, path -> new LinesReader(path, StandardCharsets.UTF_8));
+
+		measure("file", files, path -> new LinesReader(path, StandardCharsets.UTF_8));
+		measure("stream", files, path -> new LinesReader(Files.newInputStream(path), StandardCharsets.UTF_8));
+		measure("BufferedReader", files, path -> new LinesReader(new BufferedReader(
+				new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8))));
+	}
+}
@@ -0,0 +1,64 @@
+package org.olafneumann.files;
+
+import static java.util.stream.Collectors.joining;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@SuppressWarnings("javadoc")
+public class LinesReaderCopyTest {
+	@TempDir
+	Path tempDir;
+
+	private String copy(final String content, final Predicate<String> filter, final long expectedCount)
+			throws IOException {
+		final Path in = tempDir.resolve("in.log");
+		final Path out = tempDir.resolve("out.log");
+		Files.write(in, content.getBytes(StandardCharsets.UTF_8));
+		try (LinesReader reader = new LinesReader(in, StandardCharsets.UTF_8)) {
+			assertThat(reader.copyMatching(out, TestLogs::isContinuation, filter))
+					.isEqualTo(expectedCount);
+		}
+		return new String(Files.readAllBytes(out), StandardCharsets.UTF_8);
+	}
+
+	private static String filter(final String content, final String separator, final Predicate<String> filter)
+			throws IOException {
+		try (LinesReader reader = new LinesReader(new BufferedReader(new StringReader(content)))) {
+			return reader.compoundLines(TestLogs::isContinuation)
+					.sequential()
+					.filter(filter)
+					.map(line -> line.replace(System.lineSeparator(), separator) + separator)
+					.collect(joining());
+		}
+	}
+
+	@Test
+	public void copyMatchingCompoundLines() throws IOException {
+		for (final String separator : new String[] { "\n", "\r\n" }) {
+			final String content = TestLogs.createLog(1000, separator);
+			final Predicate<String> filter = line -> line.contains("thread-3") || line.contains("Exception");
+			final String expected = filter(content, separator, filter);
+			// 143 lines of thread-3, 200 exceptions, 29 of them both
+			assertThat(copy(content, filter, 314)).isEqualTo(expected);
+		}
+	}
+
+	@Test
+	public void copyAllOrNothing() throws IOException {
+		final String content = TestLogs.createLog(100, "\n") + "[2019-12-01] thread-1: no terminator";
+		assertThat(copy(content, line -> true, 101)).isEqualTo(content);
+		assertThat(copy(content, line -> false, 0)).isEmpty();
+		assertThat(copy(content, line -> line.endsWith("terminator"), 1))
+				.isEqualTo("[2019-12-01] thread-1: no terminator");
+	}
+}
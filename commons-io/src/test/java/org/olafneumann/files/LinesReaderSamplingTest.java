@@ -0,0 +1,140 @@
+package org.olafneumann.files;
+
+import static java.util.stream.Collectors.counting;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@SuppressWarnings("javadoc")
+public class LinesReaderSamplingTest {
+	@TempDir
+	Path tempDir;
+
+	private Path write(final String content) throws IOException {
+		final Path path = tempDir.resolve("test.log");
+		Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+		return path;
+	}
+
+	private static List<String> allCompoundLines(final String content) throws IOException {
+		try (LinesReader reader = new LinesReader(new BufferedReader(new StringReader(content)))) {
+			return reader.compoundLines(TestLogs::isContinuation).collect(toList());
+		}
+	}
+
+	@Test
+	public void blockSamplingWithFractionOneReadsEverything() throws IOException {
+		for (final String separator : new String[] { "\n", "\r\n", "\r" }) {
+			final String content = TestLogs.createLog(500, separator);
+			final List<String> expected = allCompoundLines(content);
+			for (final int blockSize : new int[] { 1, 7, 64, 100_000 }) {
+				try (LinesReader reader = new LinesReader(write(content), StandardCharsets.UTF_8)) {
+					final List<String> lines = reader
+							.blockSampledCompoundLines(TestLogs::isContinuation, 1, blockSize, 1)
+							.collect(toList());
+					assertThat(lines).isEqualTo(expected);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void blockSamplingReturnsCompleteRecordsInOrder() throws IOException {
+		final String content = TestLogs.createLog(2000, "\n");
+		final List<String> expected = allCompoundLines(content);
+		List<String> lines;
+		try (LinesReader reader = new LinesReader(write(content), StandardCharsets.UTF_8)) {
+			lines = reader.blockSampledCompoundLines(TestLogs::isContinuation, 0.1, 256, 42)
+					.collect(toList());
+		}
+
+		assertThat(lines).isNotEmpty().hasSizeLessThan(expected.size() / 3).isSubsetOf(expected);
+		assertThat(lines.stream().mapToInt(expected::indexOf).toArray()).isSorted();
+	}
+
+	@Test
+	public void sampledCompoundLinesAreReproducible() throws IOException {
+		final String content = TestLogs.createLog(1000, "\n");
+		final List<String> expected = allCompoundLines(content);
+		List<String> first;
+		List<String> second;
+		try (LinesReader reader = new LinesReader(write(content), StandardCharsets.UTF_8)) {
+			first = reader.sampledCompoundLines(TestLogs::isContinuation, 0.2, 7).collect(toList());
+		}
+		try (LinesReader reader = new LinesReader(write(content), StandardCharsets.UTF_8)) {
+			second = reader.sampledCompoundLines(TestLogs::isContinuation, 0.2, 7).collect(toList());
+		}
+
+		assertThat(first).isEqualTo(second).isSubsetOf(expected);
+		assertThat(first.size()).isBetween(100, 300);
+	}
+
+	@Test
+	public void reservoirSampleHasFixedSize() throws IOException {
+		final String content = TestLogs.createLog(1000, "\n");
+		final List<String> expected = allCompoundLines(content);
+		try (LinesReader reader = new LinesReader(write(content), StandardCharsets.UTF_8)) {
+			final List<String> sample
+					= reader.reservoirSampledCompoundLines(TestLogs::isContinuation, 50, 3);
+			assertThat(sample).hasSize(50).doesNotHaveDuplicates().isSubsetOf(expected);
+			assertThat(sample.stream().mapToInt(expected::indexOf).toArray()).isSorted();
+		}
+		try (LinesReader reader = new LinesReader(write(content), StandardCharsets.UTF_8)) {
+			assertThat(reader.reservoirSampledCompoundLines(TestLogs::isContinuation, 5000, 3))
+					.isEqualTo(expected);
+		}
+	}
+
+	@Test
+	public void sampledGroupsAreCompleteGroups() throws IOException {
+		final String content = TestLogs.createLog(1000, "\n");
+		List<List<String>> groups;
+		List<List<String>> sample;
+		try (LinesReader reader = new LinesReader(write(content), StandardCharsets.UTF_8)) {
+			groups = reader.groups(TestLogs::isContinuation, TestLogs::getThreadName,
+					TestLogs::getLineType).collect(toList());
+		}
+		try (LinesReader reader = new LinesReader(write(content), StandardCharsets.UTF_8)) {
+			sample = reader
+					.sampledGroups(TestLogs::isContinuation, TestLogs::getThreadName,
+							TestLogs::getLineType, 0.5, 11)
+					.collect(toList());
+		}
+
+		assertThat(sample).isNotEmpty().hasSizeLessThan(groups.size()).isSubsetOf(groups);
+	}
+
+	@Test
+	public void sampledGroupsAreStratified() throws IOException {
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 1000; i += 1) {
+			sb.append("[").append(i).append("] common: message ").append(i).append('\n');
+			if (i % 400 == 0) {
+				sb.append("[").append(i).append("] rare: message ").append(i).append('\n');
+			}
+		}
+		final List<List<String>> sample;
+		try (LinesReader reader = new LinesReader(write(sb.toString()), StandardCharsets.UTF_8)) {
+			// every line is a group of its own
+			sample = reader.sampledGroups(TestLogs::isContinuation,
+					TestLogs::getThreadName, line -> LineType.End, 0.01, 5).collect(toList());
+		}
+
+		final Map<String, Long> counts = sample.stream()
+				.collect(groupingBy(group -> TestLogs.getThreadName(group.get(0)), counting()));
+		assertThat(counts.get("common")).isBetween(10L, 11L);
+		assertThat(counts.get("rare")).isEqualTo(1L);
+	}
+}
@@ -0,0 +1,98 @@
+package org.olafneumann.files;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@SuppressWarnings("javadoc")
+public class LinesReaderSeekTest {
+	@TempDir
+	Path tempDir;
+
+	/**
+	 * Creates a log with a timestamp (seconds since midnight) for every compound
+	 * line. Some seconds have several compound lines, some none at all.
+	 */
+	private static String createLog(final int records) {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("header without timestamp\n");
+		for (int i = 0; i < records; i += 1) {
+			final int second = i / 3 * 2;
+			sb.append(String.format("[%02d:%02d:%02d] message %d", second / 3600, second / 60 % 60, second % 60, i));
+			if (i % 5 == 0) {
+				sb.append("\njava.lang.IllegalStateException: failure ").append(i);
+				sb.append("\n\tat org.olafneumann.Some.method(Some.java:").append(i).append(')');
+			}
+			sb.append('\n');
+			if (i % 11 == 0) {
+				sb.append("-- marker without timestamp ").append(i).append('\n');
+			}
+		}
+		return sb.toString();
+	}
+
+	private static boolean isContinuation(final String line) {
+		return !line.startsWith("[") && !line.startsWith("--") && !line.startsWith("header");
+	}
+
+	@Nullable
+	private static String getTimestamp(final String line) {
+		return line.startsWith("[") ? line.substring(1, 9) : null;
+	}
+
+	private static List<String> expected(final List<String> all, final String from, final String to) {
+		final List<String> result = new ArrayList<>();
+		String current = null;
+		for (final String line : all) {
+			final String timestamp = getTimestamp(line);
+			if (timestamp != null) {
+				current = timestamp;
+			}
+			if (current != null && current.compareTo(from) >= 0 && current.compareTo(to) < 0) {
+				result.add(line);
+			}
+		}
+		return result;
+	}
+
+	@Test
+	public void findTimeRanges() throws IOException {
+		final Path log = tempDir.resolve("test.log");
+		Files.write(log, createLog(20_000).getBytes(StandardCharsets.UTF_8));
+		final List<String> all;
+		try (LinesReader reader = new LinesReader(log, StandardCharsets.UTF_8)) {
+			all = reader.compoundLines(LinesReaderSeekTest::isContinuation).collect(toList());
+		}
+
+		final String[][] ranges = {
+				{ "00:00:00", "99:00:00" },
+				{ "00:00:00", "00:00:10" },
+				{ "03:02:00", "03:05:00" },
+				{ "03:02:01", "03:02:03" },
+				{ "03:02:01", "03:02:01" },
+				{ "03:42:00", "99:00:00" },
+				{ "50:00:00", "99:00:00" } };
+		try (LinesReader reader = new LinesReader(log, StandardCharsets.UTF_8)) {
+			for (final String[] range : ranges) {
+				final List<String> actual = reader
+						.compoundLinesBetween(LinesReaderSeekTest::isContinuation, LinesReaderSeekTest::getTimestamp,
+								range[0], range[1])
+						.collect(toList());
+				final List<String> expected = expected(all, range[0], range[1]);
+				assertThat(actual).as(range[0] + " - " + range[1]).isEqualTo(expected);
+				assertThat(expected.isEmpty()).isEqualTo(range[0].equals(range[1]) || range[0].startsWith("50"));
+			}
+		}
+	}
+}
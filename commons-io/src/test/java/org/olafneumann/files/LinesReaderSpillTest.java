@@ -0,0 +1,172 @@
+package org.olafneumann.files;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@SuppressWarnings("javadoc")
+public class LinesReaderSpillTest {
+	@TempDir
+	Path tempDir;
+
+	private Path write(final String content) throws IOException {
+		final Path path = tempDir.resolve("test.log");
+		Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+		return path;
+	}
+
+	/**
+	 * Creates a log with many groups that are open at the same time. Every group
+	 * starts with "start" and ends with "end".
+	 */
+	private static String createInterleavedLog(final int groups, final int linesPerGroup) {
+		final StringBuilder sb = new StringBuilder();
+		for (int line = 0; line < linesPerGroup; line += 1) {
+			for (int group = 0; group < groups; group += 1) {
+				final String type = line == 0 ? "start" : line == linesPerGroup - 1 ? "end" : "middle";
+				sb.append("[").append(line).append("] group-").append(group).append(": ").append(type);
+				if (line % 3 == 0) {
+					sb.append("\n\tcontinued ").append(line);
+				}
+				sb.append('\n');
+			}
+		}
+		// groups that are not finished at the end of the file
+		sb.append("[x] group-0: start\n[x] group-1: start\n[x] group-0: middle\n");
+		return sb.toString();
+	}
+
+	private static LineType getLineType(final String line) {
+		return line.contains(": start") ? LineType.Start : line.contains(": end") ? LineType.End : LineType.Middle;
+	}
+
+	private List<List<String>> groups(final Path log, final long memoryLimit) throws IOException {
+		try (LinesReader reader = new LinesReader(log, StandardCharsets.UTF_8);
+				Stream<List<String>> groups = reader.groups(TestLogs::isContinuation,
+						TestLogs::getThreadName, LinesReaderSpillTest::getLineType, memoryLimit,
+						tempDir)) {
+			return groups.collect(toList());
+		}
+	}
+
+	private List<Path> listSpillFiles() throws IOException {
+		try (Stream<Path> files = Files.list(tempDir)) {
+			return files.filter(file -> file.toString().endsWith(".spill")).collect(toList());
+		}
+	}
+
+	@Test
+	public void spilledGroupsAreEqual() throws IOException {
+		final Path log = write(createInterleavedLog(200, 10));
+		List<List<String>> expected;
+		try (LinesReader reader = new LinesReader(log, StandardCharsets.UTF_8)) {
+			expected = reader.groups(TestLogs::isContinuation, TestLogs::getThreadName,
+					LinesReaderSpillTest::getLineType).collect(toList());
+		}
+		assertThat(expected).hasSize(202);
+
+		for (final long memoryLimit : new long[] { 0, 1000, 50_000, Long.MAX_VALUE }) {
+			assertThat(groups(log, memoryLimit)).isEqualTo(expected);
+		}
+		assertThat(listSpillFiles()).isEmpty();
+	}
+
+	@Test
+	public void spillFileIsDeleted() throws IOException {
+		final Path log = write(TestLogs.createLog(1000, "\n"));
+		try (LinesReader reader = new LinesReader(log, StandardCharsets.UTF_8)) {
+			final Iterator<List<String>> iterator = reader.groupsIterator(TestLogs::isContinuation,
+					TestLogs::getThreadName, TestLogs::getLineType, 0, tempDir);
+			assertThat(iterator.next()).isNotEmpty();
+		}
+		assertThat(listSpillFiles()).isEmpty();
+
+		try (LinesReader reader = new LinesReader(log, StandardCharsets.UTF_8)) {
+			final Iterator<List<String>> iterator = reader.groupsIterator(TestLogs::isContinuation,
+					TestLogs::getThreadName, TestLogs::getLineType, 0, tempDir);
+			final List<List<String>> groups = new ArrayList<>();
+			iterator.forEachRemaining(groups::add);
+			assertThat(listSpillFiles()).isEmpty();
+			assertThat(groups.stream().mapToInt(List::size).sum()).isEqualTo(1000);
+		}
+	}
+
+	@Test
+	public void resumeSpilledGroups() throws IOException {
+		final Path log = write(createInterleavedLog(50, 6));
+		final List<List<String>> expected = groups(log, Long.MAX_VALUE);
+
+		Checkpoint checkpoint;
+		final List<List<String>> actual = new ArrayList<>();
+		try (LinesReader reader = new LinesReader(log, StandardCharsets.UTF_8)) {
+			final Iterator<List<String>> iterator = reader.groupsIterator(TestLogs::isContinuation,
+					TestLogs::getThreadName, LinesReaderSpillTest::getLineType, 100, tempDir);
+			for (int i = 0; i < 20; i += 1) {
+				actual.add(iterator.next());
+			}
+			checkpoint = reader.checkpoint();
+		}
+		try (LinesReader reader = new LinesReader(log, StandardCharsets.UTF_8, checkpoint)) {
+			final Iterator<List<String>> iterator = reader.groupsIterator(TestLogs::isContinuation,
+					TestLogs::getThreadName, LinesReaderSpillTest::getLineType, 100, tempDir);
+			iterator.forEachRemaining(actual::add);
+		}
+		assertThat(actual).isEqualTo(expected);
+	}
+
+	@Test
+	public void compactSpillFileOfLongLivedGroups() throws IOException {
+		// one group stays open during the whole file, so the spill file is never
+		// cleared but has to be compacted
+		final StringBuilder sb = new StringBuilder("[0] group-long: start\n");
+		final String padding = String.join("", Collections.nCopies(400, "."));
+		for (int group = 0; group < 3000; group += 1) {
+			sb.append("[").append(group).append("] group-").append(group).append(": start ").append(padding).append('\n');
+			sb.append("[").append(group).append("] group-long: middle\n");
+			sb.append("[").append(group).append("] group-").append(group).append(": middle ").append(padding)
+					.append("\n\tcontinued\n");
+			sb.append("[").append(group).append("] group-").append(group).append(": end ").append(padding).append('\n');
+		}
+		sb.append("[0] group-long: end\n");
+		final Path log = write(sb.toString());
+
+		final List<List<String>> expected = groups(log, Long.MAX_VALUE);
+		assertThat(expected.get(expected.size() - 1)).hasSize(3002);
+
+		final List<List<String>> actual = new ArrayList<>();
+		long maxSize = 0;
+		int shrinks = 0;
+		try (LinesReader reader = new LinesReader(log, StandardCharsets.UTF_8)) {
+			final Iterator<List<String>> iterator = reader.groupsIterator(TestLogs::isContinuation,
+					TestLogs::getThreadName, LinesReaderSpillTest::getLineType, 2000, tempDir);
+			long previousSize = 0;
+			while (iterator.hasNext()) {
+				actual.add(iterator.next());
+				final long size = reader.getSpillSize();
+				maxSize = Math.max(maxSize, size);
+				// the file is cleared when the long group is returned last
+				if (size < previousSize && actual.size() < expected.size()) {
+					shrinks += 1;
+				}
+				previousSize = size;
+			}
+		}
+		assertThat(actual).isEqualTo(expected);
+		// more than 3 MB are spilled in total, but the file is compacted as soon as
+		// it takes more than 1 MB and is mostly unused
+		assertThat(shrinks).isPositive();
+		assertThat(maxSize).isLessThan(2 * 1024 * 1024);
+	}
+}
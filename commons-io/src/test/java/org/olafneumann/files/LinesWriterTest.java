@@ -0,0 +1,164 @@
+package org.olafneumann.files;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@SuppressWarnings("javadoc")
+public class LinesWriterTest {
+	@TempDir
+	Path tempDir;
+
+	private Path createLog() throws IOException {
+		final Path log = tempDir.resolve("in.log");
+		Files.write(log, TestLogs.createLog(10_000, System.lineSeparator())
+				.getBytes(StandardCharsets.UTF_8));
+		return log;
+	}
+
+	private static List<String> readCompoundLines(final Path path) throws IOException {
+		try (LinesReader reader = new LinesReader(path, StandardCharsets.UTF_8)) {
+			return reader.compoundLines(TestLogs::isContinuation).collect(toList());
+		}
+	}
+
+	@Test
+	public void writeCompoundLines() throws IOException {
+		final List<String> expected = readCompoundLines(createLog());
+		final Path out = tempDir.resolve("out.log");
+		// small buffers, so records span several buffers
+		try (LinesWriter writer = new LinesWriter(FileChannel.open(out, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE), StandardCharsets.UTF_8, false, LinesWriter.SyncPolicy.EVERY_BATCH, 100)) {
+			for (final String record : expected) {
+				writer.write(record);
+			}
+			writer.flush();
+			assertThat(readCompoundLines(out)).isEqualTo(expected);
+			writer.write("[2019-12-01] thread-1: äöü €");
+		}
+		final List<String> actual = readCompoundLines(out);
+		assertThat(actual.subList(0, expected.size())).isEqualTo(expected);
+		assertThat(actual.get(expected.size())).isEqualTo("[2019-12-01] thread-1: äöü €");
+	}
+
+	@Test
+	public void writeGroupsGzip() throws IOException {
+		final Path log = createLog();
+		final Path out = tempDir.resolve("out.log.gz");
+		final List<List<String>> groups;
+		try (LinesReader reader = new LinesReader(log, StandardCharsets.UTF_8);
+				LinesWriter writer = new LinesWriter(out, StandardCharsets.UTF_8, true,
+						LinesWriter.SyncPolicy.ON_CLOSE)) {
+			groups = reader
+					.groups(TestLogs::isContinuation, TestLogs::getThreadName,
+							TestLogs::getLineType)
+					.sequential()
+					.collect(toList());
+			for (final List<String> group : groups) {
+				writer.write(group);
+			}
+		}
+
+		final List<String> expected = groups.stream().flatMap(List::stream).collect(toList());
+		try (InputStream in = new GZIPInputStream(Files.newInputStream(out));
+				LinesReader reader = new LinesReader(in, StandardCharsets.UTF_8)) {
+			assertThat(reader.compoundLines(TestLogs::isContinuation).collect(toList()))
+					.isEqualTo(expected);
+		}
+	}
+
+	@Test
+	public void writeFromSeveralThreads() throws Exception {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final ExecutorService executor = Executors.newFixedThreadPool(8);
+		try (LinesWriter writer = new LinesWriter(bytes, StandardCharsets.UTF_8)) {
+			final List<Future<?>> futures = new ArrayList<>();
+			for (int thread = 0; thread < 8; thread += 1) {
+				final int threadNumber = thread;
+				futures.add(executor.submit(() -> {
+					for (int i = 0; i < 10_000; i += 1) {
+						try {
+							writer.write("thread " + threadNumber + " record " + i);
+						} catch (final IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					}
+				}));
+			}
+			for (final Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		final String[] lines = new String(bytes.toByteArray(), StandardCharsets.UTF_8).split(System.lineSeparator());
+		assertThat(lines).hasSize(80_000);
+		assertThat(lines).filteredOn(line -> line.startsWith("thread 3 ")).hasSize(10_000);
+	}
+
+	@Test
+	public void failAfterClose() throws IOException {
+		final LinesWriter writer = new LinesWriter(tempDir.resolve("out.log"), StandardCharsets.UTF_8);
+		writer.close();
+		writer.close();
+		assertThatThrownBy(() -> writer.write("record")).isInstanceOf(IllegalStateException.class);
+	}
+
+	@Test
+	public void writeByteOrderMarkOnce() throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (LinesWriter writer = new LinesWriter(bytes, StandardCharsets.UTF_16)) {
+			writer.write("first");
+			writer.write(Arrays.asList("second", "third \uD83D\uDE00"));
+		}
+		final String separator = System.lineSeparator();
+		assertThat(new String(bytes.toByteArray(), StandardCharsets.UTF_16))
+				.isEqualTo("first" + separator + "second" + separator + "third \uD83D\uDE00" + separator);
+	}
+
+	@Test
+	public void stopThreadIfCloseFails() throws Exception {
+		final LinesWriter writer = new LinesWriter(new ByteArrayOutputStream(), StandardCharsets.UTF_8);
+		writer.write("record");
+		// waiting for a free buffer fails
+		Thread.currentThread().interrupt();
+		try {
+			assertThatThrownBy(writer::close).isInstanceOf(InterruptedIOException.class);
+		} finally {
+			Thread.interrupted();
+		}
+
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (isWriterThreadAlive() && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(isWriterThreadAlive()).isFalse();
+	}
+
+	private static boolean isWriterThreadAlive() {
+		return Thread.getAllStackTraces().keySet().stream().anyMatch(thread -> thread.getName().equals("LinesWriter"));
+	}
+}
@@ -0,0 +1,107 @@
+package org.olafneumann.files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings("javadoc")
+public class SketchesTest {
+	@Test
+	public void hyperLogLog() {
+		for (final int distinct : new int[] { 0, 10, 1000, 100_000 }) {
+			final HyperLogLog sketch = IntStream.range(0, distinct * 3)
+					.parallel()
+					.boxed()
+					.collect(HyperLogLog.collector(14, i -> "key " + i % Math.max(1, distinct)));
+			assertThat((double) sketch.estimate()).isCloseTo(distinct, within(distinct * 0.03 + 1));
+		}
+
+		final HyperLogLog left = new HyperLogLog(12);
+		final HyperLogLog right = new HyperLogLog(12);
+		IntStream.range(0, 5000).forEach(i -> left.add(i));
+		IntStream.range(2500, 7500).forEach(i -> right.add(i));
+		left.merge(right);
+		assertThat((double) left.estimate()).isCloseTo(7500, within(7500 * 0.06));
+	}
+
+	@Test
+	public void hyperLogLogOverGroups() throws IOException {
+		final String log = TestLogs.createLog(10_000, "\n");
+		try (LinesReader reader = new LinesReader(new BufferedReader(new StringReader(log)))) {
+			final HyperLogLog threads = reader.compoundLines(TestLogs::isContinuation)
+					.collect(HyperLogLog.collector(10, TestLogs::getThreadName));
+			assertThat(threads.estimate()).isEqualTo(7);
+		}
+	}
+
+	@Test
+	public void countMinAndTopK() {
+		// key i occurs i times, key 0 never
+		final CountMinSketch sketch = IntStream.range(0, 500)
+				.parallel()
+				.boxed()
+				.flatMap(i -> IntStream.range(0, i).mapToObj(j -> "key " + i))
+				.collect(CountMinSketch.collector(2000, 5, 5, key -> key));
+		assertThat(sketch.getTotal()).isEqualTo(499 * 500 / 2);
+		for (final int i : new int[] { 1, 10, 100, 499 }) {
+			final long estimate = sketch.estimate("key " + i);
+			assertThat(estimate).isGreaterThanOrEqualTo(i);
+			assertThat((double) estimate).isCloseTo(i, within(Math.E / 2000 * sketch.getTotal()));
+		}
+		final Map<String, Long> topK = sketch.getTopK();
+		assertThat(topK.keySet()).containsExactly("key 499", "key 498", "key 497", "key 496", "key 495");
+		assertThat(topK.get("key 499")).isGreaterThanOrEqualTo(499);
+
+		final CountMinSketch other = new CountMinSketch(2000, 5, 5);
+		other.add("key 1", 10_000);
+		sketch.merge(other);
+		assertThat(sketch.getTopK().keySet()).startsWith("key 1", "key 499").hasSize(5);
+	}
+
+	@Test
+	public void tDigest() {
+		final Random random = new Random(42);
+		final double[] values = new double[100_000];
+		for (int i = 0; i < values.length; i += 1) {
+			values[i] = Math.exp(random.nextGaussian());
+		}
+		final TDigest digest = Arrays.stream(values).boxed().parallel().collect(TDigest.collector(100, v -> v));
+		Arrays.sort(values);
+		assertThat(digest.getCount()).isEqualTo(values.length);
+		assertThat(digest.getMin()).isEqualTo(values[0]);
+		assertThat(digest.getMax()).isEqualTo(values[values.length - 1]);
+		assertThat(digest.getCentroidCount()).isLessThan(200);
+		for (final double q : new double[] { 0.001, 0.01, 0.1, 0.5, 0.9, 0.99, 0.999 }) {
+			final double actual = values[(int) (q * values.length)];
+			// compare the ranks, which is how the accuracy of t-digests is defined
+			final int rank = Math.abs(Arrays.binarySearch(values, digest.quantile(q)));
+			assertThat((double) rank / values.length).as("quantile " + q)
+					.isCloseTo(q, within(0.01 * Math.sqrt(q * (1 - q)) + 0.0005));
+			assertThat(digest.quantile(q)).isCloseTo(actual, within(actual * 0.1));
+		}
+		assertThat(new TDigest(100).quantile(0.5)).isNaN();
+	}
+
+	@Test
+	public void tDigestOverGroups() throws IOException {
+		final String log = TestLogs.createLog(7000, "\n");
+		try (LinesReader reader = new LinesReader(new BufferedReader(new StringReader(log)))) {
+			final TDigest sizes = reader
+					.groups(TestLogs::isContinuation, TestLogs::getThreadName,
+							TestLogs::getLineType)
+					.collect(TDigest.collector(100, List::size));
+			assertThat(sizes.getMin()).isGreaterThanOrEqualTo(1);
+			assertThat(sizes.quantile(0.5)).isBetween(sizes.getMin(), sizes.getMax());
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package org.olafneumann.files;
+
+import static java.util.stream.Collectors.toList;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generated log files shared by the tests of this package. Every compound line
+ * starts with a date and a thread name in brackets; every fifth one contains a
+ * stack trace.
+ */
+@SuppressWarnings("javadoc")
+final class TestLogs {
+	static String createLog(final int records, final String lineSeparator) {
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < records; i += 1) {
+			sb.append("[2019-12-0").append(i % 10).append("] thread-").append(i % 7).append(": message ").append(i);
+			if (i % 5 == 0) {
+				sb.append(lineSeparator).append("java.lang.IllegalStateException: failure ").append(i);
+				sb.append(lineSeparator).append("\tat org.olafneumann.Some.method(Some.java:").append(i).append(')');
+				sb.append(lineSeparator).append("\tat org.olafneumann.Other.method(Other.java:12)");
+			}
+			sb.append(lineSeparator);
+		}
+		return sb.toString();
+	}
+
+	static boolean isContinuation(final String line) {
+		return !line.startsWith("[");
+	}
+
+	static String getThreadName(final String line) {
+		final int start = line.indexOf("] ") + 2;
+		return line.substring(start, line.indexOf(':', start));
+	}
+
+	static LineType getLineType(final String line) {
+		return line.contains("Exception") ? LineType.End : LineType.Middle;
+	}
+
+	/**
+	 * Reads all compound lines of a log written by {@link #createLog(int, String)}.
+	 */
+	static List<String> readCompoundLines(final Path log) throws IOException {
+		try (LinesReader reader = new LinesReader(log, StandardCharsets.UTF_8)) {
+			return reader.compoundLines(TestLogs::isContinuation).collect(toList());
+		}
+	}
+
+	static List<String> readAll(final CompoundRecordIndex index) throws IOException {
+		final List<String> lines = new ArrayList<>();
+		for (int i = 0; i < index.size(); i += 1) {
+			lines.add(index.read(i));
+		}
+		return lines;
+	}
+
+	private TestLogs() {
+		throw new RuntimeException();
+	}
+}
@@ -0,0 +1,82 @@
+package org.olafneumann.files;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@SuppressWarnings("javadoc")
+public class TokenIndexTest {
+	@TempDir
+	Path tempDir;
+
+	private Path log;
+
+	private List<String> records;
+
+	private void createLog() throws IOException {
+		log = tempDir.resolve("test.log");
+		Files.write(log, TestLogs.createLog(5000, "\n").getBytes(StandardCharsets.UTF_8));
+		try (LinesReader reader = new LinesReader(log, StandardCharsets.UTF_8)) {
+			records = reader.compoundLines(TestLogs::isContinuation).collect(toList());
+		}
+	}
+
+	private List<String> expected(final String... tokens) {
+		return records.stream()
+				.filter(record -> TokenIndex.tokenize(record).containsAll(Arrays.asList(tokens)))
+				.collect(toList());
+	}
+
+	private static List<String> find(final TokenIndex index, final Path log, final String... tokens)
+			throws IOException {
+		try (LinesReader reader = new LinesReader(log, StandardCharsets.UTF_8)) {
+			return index.find(reader, TestLogs::isContinuation, tokens).collect(toList());
+		}
+	}
+
+	@Test
+	public void tokenize() {
+		assertThat(TokenIndex.tokenize("Caused by: java.lang.IllegalStateException: id=ab-12."))
+				.containsExactlyInAnyOrder("Caused", "by", "java.lang.IllegalStateException", "java", "lang",
+						"IllegalStateException", "id", "ab-12");
+	}
+
+	@Test
+	public void findRecords() throws IOException {
+		createLog();
+		TokenIndex index;
+		try (LinesReader reader = new LinesReader(log, StandardCharsets.UTF_8)) {
+			index = TokenIndex.build(reader, TestLogs::isContinuation);
+		}
+		assertThat(index.getRecordCount()).isEqualTo(records.size());
+
+		for (final String[] tokens : new String[][] { { "1234" }, { "message", "15" }, { "IllegalStateException" },
+				{ "IllegalStateException", "thread-3", "2019-12-05" }, { "unknown" }, { "failure", "1235" } }) {
+			assertThat(find(index, log, tokens)).as(Arrays.toString(tokens)).isEqualTo(expected(tokens));
+		}
+		assertThat(find(index, log, "IllegalStateException", "4995")).hasSize(1);
+	}
+
+	@Test
+	public void writeAndRead() throws IOException {
+		createLog();
+		final Path indexFile = tempDir.resolve("test.idx");
+		try (LinesReader reader = new LinesReader(log, StandardCharsets.UTF_8)) {
+			TokenIndex.build(reader, TestLogs::isContinuation).write(indexFile);
+		}
+		final TokenIndex index = TokenIndex.read(indexFile);
+
+		assertThat(index.getRecordCount()).isEqualTo(records.size());
+		assertThat(find(index, log, "thread-6", "2019-12-01")).isEqualTo(expected("thread-6", "2019-12-01"));
+		assertThat(find(index, log, "777")).isEqualTo(expected("777"));
+	}
+}